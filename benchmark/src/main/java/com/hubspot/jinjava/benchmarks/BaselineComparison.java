@@ -0,0 +1,143 @@
+package com.hubspot.jinjava.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Compares a JMH JSON result file against a recorded baseline, reporting benchmarks whose score,
+ * or normalized allocation rate from the GC profiler, got worse by more than a threshold. A missing
+ * or empty baseline, or a benchmark without an allocation rate on either side, fails the comparison,
+ * so that a run can't pass without having checked anything.
+ *
+ *     java -cp target/benchmarks.jar com.hubspot.jinjava.benchmarks.BaselineComparison baseline.json target/jmh-result.json [0.10]
+ */
+public class BaselineComparison {
+
+  // reported by GCProfiler as "·gc.alloc.rate.norm", in bytes per operation
+  private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+  public static void main(String[] args) throws IOException {
+    if(args.length < 2) {
+      System.err.println("usage: BaselineComparison <baseline.json> <result.json> [threshold]");
+      System.exit(2);
+    }
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : SuiteRunner.DEFAULT_THRESHOLD;
+    int regressions = compare(new File(args[0]), new File(args[1]), threshold);
+    System.exit(regressions > 0 ? 1 : 0);
+  }
+
+  /**
+   * @return the number of regressions and missing figures found, each of which is printed to stdout
+   */
+  public static int compare(File baselineFile, File resultFile, double threshold) throws IOException {
+    Map<String, Map<String, Object>> baseline = baselineFile.isFile() ? load(baselineFile) : Collections.<String, Map<String, Object>> emptyMap();
+    Map<String, Map<String, Object>> results = load(resultFile);
+
+    if(baseline.isEmpty()) {
+      System.out.println("No baseline recorded in " + baselineFile + "; run SuiteRunner with -Drecord=true to record one.");
+      return 1;
+    }
+
+    int regressions = 0;
+    for(Map.Entry<String, Map<String, Object>> result : results.entrySet()) {
+      Map<String, Object> base = baseline.get(result.getKey());
+      if(base == null) {
+        System.out.println("NEW        " + result.getKey());
+        continue;
+      }
+
+      Map<String, Object> primary = metric(result.getValue(), "primaryMetric");
+      Map<String, Object> basePrimary = metric(base, "primaryMetric");
+      boolean higherIsBetter = String.valueOf(primary.get("scoreUnit")).startsWith("ops/");
+      regressions += check(result.getKey(), "score", number(basePrimary.get("score")), number(primary.get("score")),
+          higherIsBetter, threshold);
+
+      Map<String, Object> allocation = allocationMetric(result.getValue());
+      Map<String, Object> baseAllocation = allocationMetric(base);
+      if(allocation == null || baseAllocation == null) {
+        System.out.println("MISSING    " + result.getKey() + " allocation: no " + ALLOCATION_METRIC + " in "
+            + (allocation == null ? resultFile + "; run with the GC profiler" : baselineFile + "; record it again"));
+        regressions++;
+        continue;
+      }
+      regressions += check(result.getKey(), "allocation", number(baseAllocation.get("score")), number(allocation.get("score")),
+          false, threshold);
+    }
+
+    System.out.println(regressions + " regression(s) or missing figure(s) beyond " + Math.round(threshold * 100) + "% against " + baselineFile);
+    return regressions;
+  }
+
+  private static int check(String name, String what, double base, double current, boolean higherIsBetter, double threshold) {
+    if(Double.isNaN(base) || Double.isNaN(current) || base == 0) {
+      return 0;
+    }
+
+    double change = (current - base) / base;
+    boolean regressed = higherIsBetter ? change < -threshold : change > threshold;
+    System.out.println(String.format("%-10s %s %s: %.3f -> %.3f (%+.1f%%)", regressed ? "REGRESSION" : "ok", name, what,
+        base, current, change * 100));
+    return regressed ? 1 : 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Map<String, Object>> load(File file) throws IOException {
+    List<Map<String, Object>> runs;
+    try (InputStream in = new FileInputStream(file)) {
+      runs = (List<Map<String, Object>>) new Yaml().load(in);
+    }
+
+    Map<String, Map<String, Object>> byKey = new LinkedHashMap<>();
+    for(Map<String, Object> run : runs == null ? Collections.<Map<String, Object>> emptyList() : runs) {
+      byKey.put(key(run), run);
+    }
+    return byKey;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static String key(Map<String, Object> run) {
+    String key = run.get("benchmark") + " " + run.get("mode");
+    Map<String, Object> params = (Map<String, Object>) run.get("params");
+    if(params != null && !params.isEmpty()) {
+      key += " " + new TreeMap<>(params);
+    }
+    return key;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> metric(Map<String, Object> run, String name) {
+    Map<String, Object> metric = (Map<String, Object>) run.get(name);
+    return metric == null ? Collections.<String, Object> emptyMap() : metric;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> allocationMetric(Map<String, Object> run) {
+    for(Map.Entry<String, Object> secondary : metric(run, "secondaryMetrics").entrySet()) {
+      if(secondary.getKey().contains(ALLOCATION_METRIC)) {
+        return (Map<String, Object>) secondary.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static double number(Object value) {
+    if(value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    try {
+      return Double.parseDouble(String.valueOf(value));
+    } catch(NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+}
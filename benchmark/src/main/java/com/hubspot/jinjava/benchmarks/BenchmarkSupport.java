@@ -0,0 +1,172 @@
+package com.hubspot.jinjava.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.loader.ResourceLocator;
+import com.hubspot.jinjava.loader.ResourceNotFoundException;
+
+/**
+ * Templates and data shared by the benchmark suite. Templates are bundled under
+ * src/main/resources/templates, so the suite doesn't depend on any external checkout.
+ */
+public final class BenchmarkSupport {
+
+  private BenchmarkSupport() {}
+
+  public static void quietLogging() {
+    ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+    logger.setLevel(Level.WARN);
+  }
+
+  public static String template(String name) {
+    try {
+      return Resources.toString(Resources.getResource("templates/" + name), StandardCharsets.UTF_8);
+    } catch(IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * A locator serving the bundled templates from memory, so that include and extends benchmarks
+   * measure template handling rather than disk access.
+   */
+  public static ResourceLocator bundledTemplates(String... names) {
+    final Map<String, String> templates = new HashMap<>();
+    for(String name : names) {
+      templates.put(name, template(name));
+    }
+    return new ResourceLocator() {
+      @Override
+      public String getString(String fullName, Charset encoding, JinjavaInterpreter interpreter) throws IOException {
+        String template = templates.get(fullName);
+        if(template == null) {
+          throw new ResourceNotFoundException("Couldn't find resource: " + fullName);
+        }
+        return template;
+      }
+    };
+  }
+
+  public static List<Integer> numbers(int size) {
+    List<Integer> numbers = new ArrayList<>(size);
+    for(int i = 0; i < size; i++) {
+      numbers.add(i);
+    }
+    return numbers;
+  }
+
+  public static List<Author> authors() {
+    List<Author> authors = new ArrayList<>();
+    for(String name : new String[] {"John Doe", "Jane Doe", "Peter Somewhat", "Anna Other"}) {
+      authors.add(new Author(name));
+    }
+    return authors;
+  }
+
+  public static List<Post> posts(List<Author> authors, int count) {
+    List<Post> posts = new ArrayList<>(count);
+    for(int i = 0; i < count; i++) {
+      posts.add(new Post(i, authors.get(i % authors.size())));
+    }
+    return posts;
+  }
+
+  /**
+   * Bindings for the bundled page.jinja, layout.jinja and header.jinja templates.
+   */
+  public static Map<String, Object> pageBindings(int postCount) {
+    List<Author> authors = authors();
+
+    List<Map<String, String>> navigation = new ArrayList<>();
+    for(String item : new String[] {"index", "about", "archive", "contact", "feeds", "search"}) {
+      navigation.add(ImmutableMap.of("href", "/" + item, "caption", item));
+    }
+
+    Map<String, Object> bindings = new HashMap<>();
+    bindings.put("site", ImmutableMap.of("name", "Benchmark Weekly", "description", "News & notes <from> the suite"));
+    bindings.put("navigation", navigation);
+    bindings.put("current", "/archive");
+    bindings.put("page_title", "Recent posts");
+    bindings.put("authors", authors);
+    bindings.put("posts", posts(authors, postCount));
+    return bindings;
+  }
+
+  public static class Author {
+    private final String username;
+    private final String href;
+
+    public Author(String username) {
+      this.username = username;
+      this.href = "/user/" + username.toLowerCase().replace(' ', '-');
+    }
+
+    public String getUsername() {
+      return username;
+    }
+
+    public String getHref() {
+      return href;
+    }
+  }
+
+  public static class Post {
+    private static final String BODY = "<p>Lorem ipsum dolor sit amet, <b>consectetur</b> adipiscing elit, sed do eiusmod "
+        + "tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud exercitation "
+        + "ullamco laboris nisi ut aliquip ex ea commodo consequat, see http://example.com/docs.</p><p>Duis aute irure dolor in reprehenderit in "
+        + "voluptate velit esse cillum dolore eu fugiat nulla pariatur.</p>";
+
+    private final int id;
+    private final String title;
+    private final String href;
+    private final Author author;
+    private final List<String> tags;
+
+    public Post(int id, Author author) {
+      this.id = id;
+      this.title = "post number " + id + " about templates";
+      this.href = "/post/" + id;
+      this.author = author;
+      this.tags = ImmutableList.of("java", "tag" + (id % 5), "templates");
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public String getTitle() {
+      return title;
+    }
+
+    public String getHref() {
+      return href;
+    }
+
+    public Author getAuthor() {
+      return author;
+    }
+
+    public String getBody() {
+      return BODY;
+    }
+
+    public List<String> getTags() {
+      return tags;
+    }
+  }
+
+}
@@ -0,0 +1,55 @@
+package com.hubspot.jinjava.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the self-contained benchmark suite with the GC profiler, writes the results as JSON, and
+ * compares them against the recorded baseline, exiting non-zero on a regression or if there's no
+ * baseline to compare against.
+ *
+ *     java -cp target/benchmarks.jar com.hubspot.jinjava.benchmarks.SuiteRunner [include regex]
+ *
+ * System properties: {@code baseline} (default baseline.json), {@code result} (default
+ * target/jmh-result.json), {@code threshold} (default 0.10, i.e. 10%) and {@code record} (default
+ * false; if true, the results are written over the baseline instead of being compared with it).
+ */
+public class SuiteRunner {
+
+  public static final String SUITE = "com\\.hubspot\\.jinjava\\.benchmarks\\.(tokenizer|expression|filter|loop|macro|include|inheritance|scope|page)\\..*";
+  public static final double DEFAULT_THRESHOLD = 0.10;
+
+  public static void main(String[] args) throws Exception {
+    String result = System.getProperty("result", "target/jmh-result.json");
+    File baseline = new File(System.getProperty("baseline", "baseline.json"));
+    double threshold = Double.parseDouble(System.getProperty("threshold", String.valueOf(DEFAULT_THRESHOLD)));
+    boolean record = Boolean.getBoolean("record");
+
+    new File(result).getAbsoluteFile().getParentFile().mkdirs();
+
+    Options options = new OptionsBuilder()
+        .include(args.length > 0 ? args[0] : SUITE)
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(result)
+        .build();
+    new Runner(options).run();
+
+    if(record) {
+      Files.copy(Paths.get(result), baseline.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      System.out.println("Recorded " + result + " as the baseline in " + baseline);
+    }
+    else if(BaselineComparison.compare(baseline, new File(result), threshold) > 0) {
+      System.exit(1);
+    }
+  }
+
+}
@@ -0,0 +1,60 @@
+package com.hubspot.jinjava.benchmarks.expression;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.benchmarks.BenchmarkSupport;
+import com.hubspot.jinjava.el.CompiledExpression;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+
+/**
+ * Evaluates single expressions against a context holding the page bindings, both from source
+ * (as tags which parse their helpers at render time do) and precompiled.
+ */
+@State(Scope.Benchmark)
+public class ExpressionBenchmark {
+
+  @Param({
+    "page_title",
+    "posts[3].author.username",
+    "site.name ~ ' - ' ~ page_title",
+    "(posts|length) * 2 + 1 > 10 and current == '/archive'",
+    "posts[1].title|upper",
+    "[1, 2, 3, 'four']"
+  })
+  public String expression;
+
+  public JinjavaInterpreter interpreter;
+  public CompiledExpression compiled;
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.quietLogging();
+
+    Jinjava jinjava = new Jinjava();
+    Context context = new Context(jinjava.getGlobalContext());
+    for(Map.Entry<String, Object> binding : BenchmarkSupport.pageBindings(10).entrySet()) {
+      context.put(binding.getKey(), binding.getValue());
+    }
+    interpreter = new JinjavaInterpreter(jinjava, context, jinjava.getGlobalConfig());
+    compiled = interpreter.compileELExpression(expression);
+  }
+
+  @Benchmark
+  public Object resolveSource() {
+    return interpreter.resolveELExpression(expression, 1);
+  }
+
+  @Benchmark
+  public Object resolveCompiled() {
+    return interpreter.resolveELExpression(compiled, 1);
+  }
+
+}
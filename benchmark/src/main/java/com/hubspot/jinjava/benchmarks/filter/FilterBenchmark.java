@@ -0,0 +1,54 @@
+package com.hubspot.jinjava.benchmarks.filter;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.Template;
+import com.hubspot.jinjava.benchmarks.BenchmarkSupport;
+
+/**
+ * Renders a template applying one of the heavier filters to each of 50 posts.
+ */
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+
+  @Param({
+    "post.body|striptags",
+    "post.body|truncatehtml(60)",
+    "post.body|truncate(60)",
+    "post.body|wordwrap(40)",
+    "post.body|escape",
+    "post.body|urlize",
+    "post.body|md5",
+    "post.title|title",
+    "post.title|replace('templates', 'filters')",
+    "post.tags|join(', ')",
+    "post.tags|sort|first",
+    "'%s by %s'|format(post.title, post.author.username)"
+  })
+  public String filterExpression;
+
+  public Template template;
+  public Map<String, Object> bindings;
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.quietLogging();
+
+    Jinjava jinjava = new Jinjava();
+    template = jinjava.compile("{% for post in posts %}{{ " + filterExpression + " }}\n{% endfor %}");
+    bindings = BenchmarkSupport.pageBindings(50);
+  }
+
+  @Benchmark
+  public String renderFilter() {
+    return template.render(bindings);
+  }
+
+}
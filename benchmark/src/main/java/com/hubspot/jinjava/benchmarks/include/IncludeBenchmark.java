@@ -0,0 +1,46 @@
+package com.hubspot.jinjava.benchmarks.include;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.Template;
+import com.hubspot.jinjava.benchmarks.BenchmarkSupport;
+
+/**
+ * Includes the bundled header partial, once per render and once per item of a loop.
+ */
+@State(Scope.Benchmark)
+public class IncludeBenchmark {
+
+  public Template includeOnce;
+  public Template includeInLoop;
+  public Map<String, Object> bindings;
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.quietLogging();
+
+    Jinjava jinjava = new Jinjava();
+    jinjava.setResourceLocator(BenchmarkSupport.bundledTemplates("header.jinja"));
+
+    includeOnce = jinjava.compile("<body>{% include \"header.jinja\" %}</body>");
+    includeInLoop = jinjava.compile("{% for post in posts %}{% include \"header.jinja\" %}{% endfor %}");
+    bindings = BenchmarkSupport.pageBindings(20);
+  }
+
+  @Benchmark
+  public String includeOnce() {
+    return includeOnce.render(bindings);
+  }
+
+  @Benchmark
+  public String includeInLoop() {
+    return includeInLoop.render(bindings);
+  }
+
+}
@@ -0,0 +1,96 @@
+package com.hubspot.jinjava.benchmarks.inheritance;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+
+import com.google.common.collect.ImmutableMap;
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.loader.ResourceNotFoundException;
+import com.hubspot.jinjava.loader.ResourceLocator;
+
+/**
+ * Renders a template at the bottom of a chain of templates, each extending the one above and
+ * overriding some of its blocks, with a large body of text around the blocks in the base layout.
+ */
+@State(Scope.Benchmark)
+public class ExtendsChainBenchmark {
+
+  @Param({"2", "8", "16"})
+  public int depth;
+  
+  @Param({"20"})
+  public int blocks;
+  
+  public Jinjava jinjava;
+  public String leafTemplate;
+  public Map<String, ?> bindings;
+  
+  @Setup
+  public void setup() {
+    ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+    logger.setLevel(Level.WARN);
+    
+    final Map<String, String> templates = new HashMap<>();
+    
+    StringBuilder base = new StringBuilder("<html><body>\n");
+    for(int b = 0; b < blocks; b++) {
+      base.append("<div class=\"section-").append(b).append("\">\n");
+      for(int line = 0; line < 20; line++) {
+        base.append("  <p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor.</p>\n");
+      }
+      base.append("  {% block block").append(b).append(" %}base content ").append(b).append("{% endblock %}\n</div>\n");
+    }
+    base.append("</body></html>\n");
+    templates.put("level0.jinja", base.toString());
+    
+    for(int level = 1; level <= depth; level++) {
+      StringBuilder child = new StringBuilder("{% extends \"level").append(level - 1).append(".jinja\" %}\n");
+      for(int b = level % 2; b < blocks; b += 2) {
+        child.append("{% block block").append(b).append(" %}<span>{{ title }} level ").append(level)
+          .append("</span>{% endblock %}\n");
+      }
+      templates.put("level" + level + ".jinja", child.toString());
+    }
+    
+    jinjava = new Jinjava();
+    jinjava.setResourceLocator(new ResourceLocator() {
+      @Override
+      public String getString(String fullName, Charset encoding, JinjavaInterpreter interpreter) throws IOException {
+        String template = templates.get(fullName);
+        if(template == null) {
+          throw new ResourceNotFoundException("Couldn't find resource: " + fullName);
+        }
+        return template;
+      }
+    });
+    
+    leafTemplate = templates.get("level" + depth + ".jinja");
+    bindings = ImmutableMap.of("title", "Hello");
+  }
+  
+  @Benchmark
+  public String renderExtendsChain() {
+    return jinjava.render(leafTemplate, bindings);
+  }
+  
+  public static void main(String[] args) {
+    ExtendsChainBenchmark b = new ExtendsChainBenchmark();
+    b.depth = 8;
+    b.blocks = 20;
+    b.setup();
+    System.out.println(b.renderExtendsChain());
+  }
+  
+}
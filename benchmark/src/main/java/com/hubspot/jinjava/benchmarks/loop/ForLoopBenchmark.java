@@ -0,0 +1,72 @@
+package com.hubspot.jinjava.benchmarks.loop;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.collect.ImmutableMap;
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.Template;
+import com.hubspot.jinjava.benchmarks.BenchmarkSupport;
+
+/**
+ * For loops over large lists: a plain loop printing each item, one using the loop variable and a
+ * condition, one reading bean properties off each item, and one reading lists, maps and dates
+ * which templates see in their python-wrapped form.
+ */
+@State(Scope.Benchmark)
+public class ForLoopBenchmark {
+
+  @Param({"100", "10000"})
+  public int size;
+
+  public Template plainLoop;
+  public Template conditionalLoop;
+  public Template propertyLoop;
+  public Template wrappedValueLoop;
+  public Map<String, ?> bindings;
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.quietLogging();
+
+    Jinjava jinjava = new Jinjava();
+    plainLoop = jinjava.compile("{% for i in items %}{{ i }},{% endfor %}");
+    conditionalLoop = jinjava.compile("{% for i in items %}{% if loop.index is even %}<b>{{ i }}</b>{% else %}{{ i }}{% endif %}{% endfor %}");
+    propertyLoop = jinjava.compile("{% for post in posts %}<a href=\"{{ post.href }}\">{{ post.title }}</a> by {{ post.author.username }}\n{% endfor %}");
+
+    wrappedValueLoop = jinjava.compile("{% for post in posts %}{{ site.name }}: {{ post.tags|length }} {{ post.tags[0] }} {{ published.year }}\n{% endfor %}");
+
+    bindings = ImmutableMap.of(
+        "items", BenchmarkSupport.numbers(size),
+        "posts", BenchmarkSupport.posts(BenchmarkSupport.authors(), size),
+        "site", ImmutableMap.of("name", "benchmarks"),
+        "published", new Date(0));
+  }
+
+  @Benchmark
+  public String plainLoop() {
+    return plainLoop.render(bindings);
+  }
+
+  @Benchmark
+  public String conditionalLoop() {
+    return conditionalLoop.render(bindings);
+  }
+
+  @Benchmark
+  public String propertyLoop() {
+    return propertyLoop.render(bindings);
+  }
+
+  @Benchmark
+  public String wrappedValueLoop() {
+    return wrappedValueLoop.render(bindings);
+  }
+
+}
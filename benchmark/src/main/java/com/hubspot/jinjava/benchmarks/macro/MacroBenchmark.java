@@ -0,0 +1,45 @@
+package com.hubspot.jinjava.benchmarks.macro;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.Template;
+import com.hubspot.jinjava.benchmarks.BenchmarkSupport;
+
+/**
+ * Calls the macros from the bundled macros.jinja once per post, and a trivial macro in a tight loop.
+ */
+@State(Scope.Benchmark)
+public class MacroBenchmark {
+
+  public Template postMacros;
+  public Template smallMacro;
+  public Map<String, Object> bindings;
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.quietLogging();
+
+    Jinjava jinjava = new Jinjava();
+    postMacros = jinjava.compile(BenchmarkSupport.template("macros.jinja")
+        + "{% for post in posts %}{{ render_post(post, loop.index is odd) }}{% endfor %}");
+    smallMacro = jinjava.compile("{% macro item(x) %}<li>{{ x }}</li>{% endmacro %}{% for post in posts %}{{ item(post.id) }}{% endfor %}");
+    bindings = BenchmarkSupport.pageBindings(100);
+  }
+
+  @Benchmark
+  public String renderPostMacros() {
+    return postMacros.render(bindings);
+  }
+
+  @Benchmark
+  public String smallMacroCalls() {
+    return smallMacro.render(bindings);
+  }
+
+}
@@ -0,0 +1,78 @@
+package com.hubspot.jinjava.benchmarks.page;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.interpret.RenderResult;
+import com.hubspot.jinjava.benchmarks.BenchmarkSupport;
+
+/**
+ * Renders the bundled page.jinja end to end: it extends a layout which includes a header, imports
+ * macros, and loops over posts applying filters. The batch benchmarks render it for several sets of
+ * bindings, one render call each or through a single renderAll.
+ */
+@State(Scope.Benchmark)
+public class PageBenchmark {
+
+  @Param({"20"})
+  public int posts;
+
+  public Jinjava jinjava;
+  public String page;
+  public Map<String, Object> bindings;
+  public List<Map<String, Object>> batch;
+
+  private static final int BATCH_SIZE = 10;
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.quietLogging();
+
+    jinjava = new Jinjava();
+    jinjava.setResourceLocator(BenchmarkSupport.bundledTemplates("layout.jinja", "header.jinja", "macros.jinja"));
+
+    page = BenchmarkSupport.template("page.jinja");
+    bindings = BenchmarkSupport.pageBindings(posts);
+    batch = Collections.nCopies(BATCH_SIZE, bindings);
+  }
+
+  @Benchmark
+  public String renderPage() {
+    return jinjava.render(page, bindings);
+  }
+
+  @Benchmark
+  public int renderPagesInLoop() {
+    int length = 0;
+    for(Map<String, Object> pageBindings : batch) {
+      length += jinjava.render(page, pageBindings).length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public int renderPagesInBatch() {
+    int length = 0;
+    for(Iterator<RenderResult> results = jinjava.renderAll(page, batch); results.hasNext();) {
+      length += results.next().getOutput().length();
+    }
+    return length;
+  }
+
+  public static void main(String[] args) {
+    PageBenchmark b = new PageBenchmark();
+    b.posts = 3;
+    b.setup();
+    System.out.println(b.renderPage());
+  }
+
+}
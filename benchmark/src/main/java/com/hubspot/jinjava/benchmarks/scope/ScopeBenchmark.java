@@ -0,0 +1,74 @@
+package com.hubspot.jinjava.benchmarks.scope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+
+import com.google.common.collect.ImmutableMap;
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+
+/**
+ * Measures the cost of entering scopes, which for loops, macro calls, call and autoescape blocks
+ * all do. Run with the GC profiler to see allocation per operation:
+ * 
+ *     java -jar target/benchmarks.jar ScopeBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+public class ScopeBenchmark {
+
+  public Jinjava jinjava;
+  public JinjavaInterpreter interpreter;
+  
+  public String macroLoopTemplate;
+  public Map<String, ?> bindings;
+  
+  @Setup
+  public void setup() {
+    ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+    logger.setLevel(Level.WARN);
+    
+    jinjava = new Jinjava();
+    interpreter = new JinjavaInterpreter(jinjava, new Context(jinjava.getGlobalContext()), jinjava.getGlobalConfig());
+    
+    macroLoopTemplate = "{% macro item(x) %}<li>{{ x }}</li>{% endmacro %}<ul>{% for i in items %}{{ item(i) }}{% endfor %}</ul>";
+    
+    List<Integer> items = new ArrayList<>();
+    for(int i = 0; i < 100; i++) {
+      items.add(i);
+    }
+    bindings = ImmutableMap.of("items", items);
+  }
+  
+  @Benchmark
+  public Context enterAndLeaveScope() {
+    interpreter.enterScope();
+    Context scope = interpreter.getContext();
+    interpreter.leaveScope();
+    return scope;
+  }
+  
+  /**
+   * 100 macro calls inside a for loop; each call enters a scope.
+   */
+  @Benchmark
+  public String macroCallsInLoop() {
+    return jinjava.render(macroLoopTemplate, bindings);
+  }
+  
+  public static void main(String[] args) {
+    ScopeBenchmark b = new ScopeBenchmark();
+    b.setup();
+    System.out.println(b.macroCallsInLoop());
+  }
+  
+}
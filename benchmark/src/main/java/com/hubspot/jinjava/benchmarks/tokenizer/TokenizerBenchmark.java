@@ -0,0 +1,79 @@
+package com.hubspot.jinjava.benchmarks.tokenizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.JinjavaConfig;
+import com.hubspot.jinjava.benchmarks.BenchmarkSupport;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.parse.Token;
+import com.hubspot.jinjava.parse.Tokenizer;
+import com.hubspot.jinjava.tree.EditableTree;
+import com.hubspot.jinjava.tree.Node;
+
+/**
+ * Splits the bundled templates into tokens, copying each token's text or referring to the template,
+ * and parses them into trees, in full or again after a one character edit, without rendering.
+ */
+@State(Scope.Benchmark)
+public class TokenizerBenchmark {
+
+  @Param({"page.jinja", "layout.jinja", "macros.jinja"})
+  public String templateName;
+
+  public String template;
+  public Tokenizer tokenizer;
+  public Tokenizer referencingTokenizer;
+  public JinjavaInterpreter interpreter;
+  public EditableTree editableTree;
+  public int editOffset;
+
+  @Setup
+  public void setup() {
+    BenchmarkSupport.quietLogging();
+
+    template = BenchmarkSupport.template(templateName);
+    tokenizer = new Tokenizer();
+    referencingTokenizer = new Tokenizer(true);
+
+    Jinjava jinjava = new Jinjava(JinjavaConfig.newBuilder().withTemplateCacheSize(0).build());
+    interpreter = new JinjavaInterpreter(jinjava, new Context(jinjava.getGlobalContext()), jinjava.getGlobalConfig());
+    editableTree = EditableTree.parse(interpreter, template);
+    editOffset = template.length() / 2;
+  }
+
+  @Benchmark
+  public void tokenize(Blackhole bh) {
+    tokenizer.init(template);
+    Token token;
+    while((token = tokenizer.getNextToken()) != null) {
+      bh.consume(token);
+    }
+  }
+
+  @Benchmark
+  public void tokenizeReferencingSource(Blackhole bh) {
+    referencingTokenizer.init(template);
+    Token token;
+    while((token = referencingTokenizer.getNextToken()) != null) {
+      bh.consume(token);
+    }
+  }
+
+  @Benchmark
+  public Node parse() {
+    return interpreter.parse(template);
+  }
+
+  @Benchmark
+  public EditableTree reparseAfterEdit() {
+    return editableTree.edit(interpreter, editOffset, 1, template.substring(editOffset, editOffset + 1));
+  }
+
+}
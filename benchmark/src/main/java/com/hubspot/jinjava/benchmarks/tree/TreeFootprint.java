@@ -0,0 +1,85 @@
+package com.hubspot.jinjava.benchmarks.tree;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.JinjavaConfig;
+import com.hubspot.jinjava.benchmarks.BenchmarkSupport;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.tree.Node;
+
+/**
+ * Measures the heap taken by the tree of each bundled template as parsed, and once compact as kept
+ * by the template cache, by holding many copies of each and comparing the heap in use before and
+ * after. The template source is shared by all copies, so it isn't counted. JMH has no measure of
+ * retained memory, so this runs on its own:
+ *
+ *     java -cp target/benchmarks.jar com.hubspot.jinjava.benchmarks.tree.TreeFootprint [template ...]
+ *
+ * Set {@code -Dcopies=N} to change the number of copies held (default 10000). Figures are only
+ * comparable on the same JVM and heap settings, e.g. between jinjava versions; the serial collector
+ * ({@code -XX:+UseSerialGC}) gives the steadiest figures.
+ */
+public class TreeFootprint {
+
+  private static final String[] TEMPLATES = {"page.jinja", "layout.jinja", "macros.jinja", "header.jinja"};
+
+  // kept in a field, as a local no longer used would be collected before the heap is measured
+  private static Object[] kept;
+
+  public static void main(String[] args) throws Exception {
+    BenchmarkSupport.quietLogging();
+    int copies = Integer.getInteger("copies", 10000);
+
+    Jinjava jinjava = new Jinjava(JinjavaConfig.newBuilder().withTemplateCacheSize(0).build());
+    JinjavaInterpreter interpreter = new JinjavaInterpreter(jinjava, new Context(jinjava.getGlobalContext()), jinjava.getGlobalConfig());
+
+    System.out.println(String.format("%-16s %10s %16s %16s %8s", "template", "chars", "parsed B/tree", "compact B/tree", "ratio"));
+    for(String name : args.length > 0 ? args : TEMPLATES) {
+      String template = BenchmarkSupport.template(name);
+
+      // load classes and fill the expression cache before measuring
+      interpreter.parse(template).compact();
+
+      kept = new Object[copies];
+      long before = usedHeap();
+      for(int i = 0; i < copies; i++) {
+        kept[i] = interpreter.parse(template);
+      }
+      long parsed = (usedHeap() - before) / copies;
+
+      kept = new Object[copies];
+      before = usedHeap();
+      for(int i = 0; i < copies; i++) {
+        Node root = interpreter.parse(template);
+        root.compact();
+        kept[i] = root;
+      }
+      long compact = (usedHeap() - before) / copies;
+
+      System.out.println(String.format("%-16s %10d %16d %16d %8.2f", name, template.length(), parsed, compact,
+          parsed == 0 ? Double.NaN : (double) compact / parsed));
+      kept = null;
+      interpreter.getErrors().clear();
+    }
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long used = Long.MAX_VALUE;
+    // keep collecting until the heap stops shrinking, as a single request may leave garbage behind
+    for(int i = 0; i < 10; i++) {
+      System.gc();
+      Thread.sleep(20);
+      long now = memory.getHeapMemoryUsage().getUsed();
+      if(now >= used) {
+        break;
+      }
+      used = now;
+    }
+    return used;
+  }
+
+}
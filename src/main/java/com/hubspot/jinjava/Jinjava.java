@@ -15,31 +15,53 @@ limitations under the License.
  **********************************************************************/
 package com.hubspot.jinjava;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import javax.el.ExpressionFactory;
 
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.hubspot.jinjava.compile.CompiledTemplate;
+import com.hubspot.jinjava.compile.TemplateCompiler;
 import com.hubspot.jinjava.el.ExtendedSyntaxBuilder;
 import com.hubspot.jinjava.el.TruthyTypeConverter;
 import com.hubspot.jinjava.interpret.Context;
 import com.hubspot.jinjava.interpret.FatalTemplateErrorsException;
 import com.hubspot.jinjava.interpret.InterpretException;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.RenderProfile;
 import com.hubspot.jinjava.interpret.RenderResult;
 import com.hubspot.jinjava.interpret.TemplateError;
 import com.hubspot.jinjava.interpret.TemplateError.ErrorType;
 import com.hubspot.jinjava.loader.CascadingResourceLocator;
 import com.hubspot.jinjava.loader.ClasspathResourceLocator;
 import com.hubspot.jinjava.loader.FileLocator;
+import com.hubspot.jinjava.loader.ListableResourceLocator;
 import com.hubspot.jinjava.loader.ResourceLocator;
+import com.hubspot.jinjava.loader.VersionedResourceLocator;
+import com.hubspot.jinjava.tree.EditableTree;
+import com.hubspot.jinjava.tree.Node;
 
 import de.odysseus.el.ExpressionFactoryImpl;
 import de.odysseus.el.misc.TypeConverter;
-import de.odysseus.el.tree.TreeBuilder;
+import de.odysseus.el.tree.TreeStore;
+import de.odysseus.el.tree.impl.Builder.Feature;
 
 /**
  * The main client API for the Jinjava library, instances of this class can be used to render 
@@ -56,17 +78,30 @@ import de.odysseus.el.tree.TreeBuilder;
  *     String renderedTemplate = jinjava.render(template, context);
  * </pre>
  * 
+ * An instance is safe to share between threads, and may render any number of templates at once.
+ * Tags, filters, functions and exp tests may be registered in the {@link #getGlobalContext() global
+ * context} at any time, including while other threads render; each render sees either all or none
+ * of a registration. Variables and macros of the global context should be set before the instance
+ * is shared, since renders read them without synchronization, but never change them.
+ * 
  * @author jstehler
  *
  */
 public class Jinjava {
 
-  private ExpressionFactory expressionFactory;
-  private ResourceLocator resourceLocator;
+  private final ExpressionFactory expressionFactory;
+  private final TreeStore expressionTreeStore;
+  private final TypeConverter typeConverter;
+  private volatile ResourceLocator resourceLocator;
+  
+  private final Context globalContext;
+  private final JinjavaConfig globalConfig;
   
-  private Context globalContext;
-  private JinjavaConfig globalConfig;
+  private final Cache<String, Template> templateCache;
+  private final Cache<String, VersionedTemplate> resourceTemplateCache;
+  private final Cache<String, Template> nestedTemplateCache;
   
+  private static final int EXPRESSION_CACHE_SIZE = 1000;
   
   /**
    * Create a new Jinjava processor instance with the default global config
@@ -84,21 +119,32 @@ public class Jinjava {
     this.globalConfig = globalConfig;
     this.globalContext = new Context();
     
-    Properties expConfig = new Properties();
-    expConfig.setProperty(TreeBuilder.class.getName(), ExtendedSyntaxBuilder.class.getName());
-
-    TypeConverter converter = new TruthyTypeConverter();
-    this.expressionFactory = new ExpressionFactoryImpl(expConfig, converter);
+    this.typeConverter = new TruthyTypeConverter();
+    this.expressionTreeStore = new TreeStore(new ExtendedSyntaxBuilder(Feature.METHOD_INVOCATIONS, Feature.VARARGS), 
+        new de.odysseus.el.tree.impl.Cache(EXPRESSION_CACHE_SIZE));
+    this.expressionFactory = new ExpressionFactoryImpl(expressionTreeStore, typeConverter);
     
     this.resourceLocator = new CascadingResourceLocator(new ClasspathResourceLocator(), new FileLocator());
+    
+    this.templateCache = CacheBuilder.newBuilder()
+        .maximumSize(globalConfig.getTemplateCacheSize())
+        .build();
+    this.resourceTemplateCache = CacheBuilder.newBuilder()
+        .maximumSize(globalConfig.getTemplateCacheSize())
+        .build();
+    this.nestedTemplateCache = CacheBuilder.newBuilder()
+        .maximumSize(globalConfig.getTemplateCacheSize())
+        .build();
   }
 
   /**
-   * Set the object responsible for locating templates referenced in other templates
+   * Set the object responsible for locating templates referenced in other templates. Templates cached from the
+   * previous locator are dropped, since their versions say nothing about the new locator's resources.
    * @param resourceLocator the locator to use for loading all templates
    */
   public void setResourceLocator(ResourceLocator resourceLocator) {
     this.resourceLocator = resourceLocator;
+    resourceTemplateCache.invalidateAll();
   }
 
   /**
@@ -108,6 +154,20 @@ public class Jinjava {
     return expressionFactory;
   }
   
+  /**
+   * @return The store used to parse EL expressions into reusable trees, shared with {@link #getExpressionFactory()}.
+   */
+  public TreeStore getExpressionTreeStore() {
+    return expressionTreeStore;
+  }
+  
+  /**
+   * @return The type converter used when evaluating EL expressions.
+   */
+  public TypeConverter getTypeConverter() {
+    return typeConverter;
+  }
+  
   /**
    * @return The global config used as a base for all render operations performed by this instance.
    */
@@ -129,6 +189,191 @@ public class Jinjava {
     return resourceLocator;
   }
   
+  /**
+   * Parse the given template source. Parsed templates are kept in a bounded cache keyed by their
+   * source, so compiling the same source again returns the same shared instance without re-parsing.
+   * Their trees are {@link Node#compact() compact}, and can't be changed.
+   * 
+   * @param template jinja source template
+   * @return the parsed template, which can be rendered any number of times, from any thread
+   */
+  public Template compile(String template) {
+    return compile(templateCache, template, globalConfig.isTemplateCompilationEnabled());
+  }
+  
+  /**
+   * Parse a value printed by a template which itself contains template markup, for nested
+   * interpretation. These are cached apart from {@link #compile(String)}, so that recurring content
+   * isn't re-parsed on every render but doesn't evict templates either, and are never compiled to
+   * bytecode.
+   * 
+   * @param template printed value to parse as a template
+   * @return the parsed template
+   * @see JinjavaConfig#isNestedInterpretationEnabled()
+   */
+  public Template compileNested(String template) {
+    return compile(nestedTemplateCache, template, false);
+  }
+  
+  private Template compile(Cache<String, Template> cache, final String template, final boolean toBytecode) {
+    if(globalConfig.getTemplateCacheSize() <= 0) {
+      return parseTemplate(template, toBytecode);
+    }
+    
+    try {
+      return cache.get(template, new Callable<Template>() {
+        @Override
+        public Template call() {
+          return parseTemplate(template, toBytecode);
+        }
+      });
+    }
+    catch(ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+    catch(UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+  
+  /**
+   * Load the named template with this instance's resource locator and compile it.
+   * 
+   * @param name template name, as understood by the configured {@link ResourceLocator}
+   * @return the parsed template
+   * @throws IOException if the template could not be loaded
+   * @see #getTemplate(String, JinjavaInterpreter)
+   */
+  public Template getTemplate(String name) throws IOException {
+    JinjavaInterpreter interpreter = JinjavaInterpreter.getCurrent();
+    if(interpreter == null) {
+      interpreter = new JinjavaInterpreter(this, new Context(globalContext), globalConfig);
+    }
+    
+    return getTemplate(name, interpreter);
+  }
+  
+  /**
+   * Load the named template on behalf of the given interpreter and compile it. When the resource
+   * locator is a {@link VersionedResourceLocator}, the parsed template is cached by name and reused
+   * for as long as the locator reports the same version, without reading the resource again.
+   * Otherwise the resource is loaded and passed to {@link #compile(String)}, which still avoids
+   * re-parsing unchanged content.
+   * 
+   * @param name template name, as understood by the configured {@link ResourceLocator}
+   * @param interpreter the interpreter on whose behalf the template is loaded
+   * @return the parsed template
+   * @throws IOException if the template could not be loaded
+   */
+  public Template getTemplate(String name, JinjavaInterpreter interpreter) throws IOException {
+    Charset charset = interpreter.getConfig().getCharset();
+    
+    if(globalConfig.getTemplateCacheSize() <= 0 || !(resourceLocator instanceof VersionedResourceLocator)) {
+      return compile(resourceLocator.getString(name, charset, interpreter));
+    }
+    
+    long version = ((VersionedResourceLocator) resourceLocator).getVersion(name, interpreter);
+    if(version == VersionedResourceLocator.UNKNOWN_VERSION) {
+      return compile(resourceLocator.getString(name, charset, interpreter));
+    }
+    
+    String key = charset.name() + ":" + name;
+    VersionedTemplate cached = resourceTemplateCache.getIfPresent(key);
+    if(cached != null && cached.version == version) {
+      return cached.template;
+    }
+    
+    Template template = compile(resourceLocator.getString(name, charset, interpreter));
+    resourceTemplateCache.put(key, new VersionedTemplate(version, template));
+    return template;
+  }
+  
+  /**
+   * Load and parse every template the resource locator lists under the given directory, along with
+   * the templates they include, import or extend by name, so that renders after startup don't wait
+   * for templates to be parsed. Templates are parsed concurrently on the given executor, and kept
+   * for {@link #getTemplate(String)}.
+   * 
+   * @param prefix directory of templates, as understood by the resource locator; "" for all
+   * @param executor executor to parse templates on, or null to parse each on the calling thread
+   * @return the time taken to parse each template, and any errors found
+   * @throws IllegalStateException if the resource locator isn't a {@link ListableResourceLocator}
+   * @throws IOException if the templates couldn't be listed; templates which can't be loaded are
+   *   reported in the result
+   */
+  public WarmUpResult warmUp(String prefix, Executor executor) throws IOException {
+    return warmUp(prefix, Predicates.alwaysTrue(), executor);
+  }
+  
+  /**
+   * Load and parse the templates the resource locator lists under the given directory which match
+   * the given filter, e.g. on their file extension, along with the templates they refer to.
+   * 
+   * @see #warmUp(String, Executor)
+   */
+  public WarmUpResult warmUp(String prefix, Predicate<? super String> filter, Executor executor) throws IOException {
+    ResourceLocator locator = resourceLocator;
+    if(!(locator instanceof ListableResourceLocator)) {
+      throw new IllegalStateException("Can't list templates of resource locator " + locator);
+    }
+    return warmUp(Iterables.filter(((ListableResourceLocator) locator).list(prefix), filter), executor);
+  }
+  
+  /**
+   * Load and parse the named templates, along with the templates they refer to.
+   * 
+   * @see #warmUp(String, Executor)
+   */
+  public WarmUpResult warmUp(Iterable<String> names, Executor executor) {
+    return new TemplateWarmUp(this, executor).run(names);
+  }
+  
+  /**
+   * Drop all parsed templates held by {@link #compile(String)}, e.g. after registering new tags
+   * which previously cached templates may have failed to resolve.
+   */
+  public void clearTemplateCache() {
+    templateCache.invalidateAll();
+    resourceTemplateCache.invalidateAll();
+    nestedTemplateCache.invalidateAll();
+  }
+  
+  private static final class VersionedTemplate {
+    private final long version;
+    private final Template template;
+    
+    VersionedTemplate(long version, Template template) {
+      this.version = version;
+      this.template = template;
+    }
+  }
+  
+  private Template parseTemplate(String template, boolean toBytecode) {
+    JinjavaInterpreter interpreter = new JinjavaInterpreter(this, new Context(globalContext), globalConfig);
+    Node root = interpreter.parse(template);
+    
+    CompiledTemplate compiled = null;
+    if(toBytecode) {
+      compiled = TemplateCompiler.compile(root, interpreter);
+    }
+    root.compact();
+    
+    return new Template(this, template, root, interpreter.getErrors(), compiled);
+  }
+  
+  Template edit(Template template, int offset, int removedLength, String inserted) {
+    JinjavaInterpreter interpreter = new JinjavaInterpreter(this, new Context(globalContext), globalConfig);
+    EditableTree tree = template.getEditableTree();
+    if(tree == null) {
+      tree = EditableTree.parse(interpreter, EditableTree.applyEdit(template.getSource(), offset, removedLength, inserted));
+    }
+    else {
+      tree = tree.edit(interpreter, offset, removedLength, inserted);
+    }
+    
+    return new Template(this, tree, interpreter.getErrors());
+  }
+  
   /**
    * Render the given template using the given context bindings.
    * 
@@ -138,8 +383,14 @@ public class Jinjava {
    * @throws InterpretException if any syntax errors were encountered during rendering
    */
   public String render(String template, Map<String, ?> bindings) {
-    RenderResult result = renderForResult(template, bindings);
-
+    return checkFatalErrors(template, renderForResult(template, bindings));
+  }
+  
+  String render(Template template, Map<String, ?> bindings) {
+    return checkFatalErrors(template.getSource(), renderForResult(template, bindings, globalConfig));
+  }
+  
+  private String checkFatalErrors(String template, RenderResult result) {
     Collection<TemplateError> fatalErrors = Collections2.filter(result.getErrors(), new Predicate<TemplateError>() {
       @Override
       public boolean apply(TemplateError input) {
@@ -184,6 +435,127 @@ public class Jinjava {
    * @return result object containing rendered output, render context, and any encountered errors
    */
   public RenderResult renderForResult(String template, Map<String, ?> bindings, JinjavaConfig renderConfig) {
+    Template compiled;
+    try {
+      compiled = compile(template);
+    }
+    catch(InterpretException e) {
+      return new RenderResult(TemplateError.fromSyntaxError(e), new Context(globalContext, bindings), ImmutableList.<TemplateError> of());
+    }
+    catch(Exception e) {
+      return new RenderResult(TemplateError.fromException(e), new Context(globalContext, bindings), ImmutableList.<TemplateError> of());
+    }
+    
+    return renderForResult(compiled, bindings, renderConfig);
+  }
+  
+  /**
+   * Render the given template once for each of the given sets of context bindings. The template is
+   * parsed once, and each render is only done as the returned iterator reaches it, so that results
+   * needn't all be held in memory at once.
+   * 
+   * @param template jinja source template
+   * @param bindings context bindings for each render
+   * @return result of each render, in the order of the bindings
+   * @see #renderForResult(String, Map)
+   */
+  public Iterator<RenderResult> renderAll(String template, Iterable<? extends Map<String, ?>> bindings) {
+    return renderAll(template, bindings, null, 0);
+  }
+  
+  /**
+   * Render the given template once for each of the given sets of context bindings, running up to
+   * maxAhead renders ahead of the returned iterator on the given executor. Results are still
+   * returned in the order of the bindings.
+   * 
+   * @param template jinja source template
+   * @param bindings context bindings for each render
+   * @param executor executor to render on, or null to render each on the iterating thread
+   * @param maxAhead maximum number of renders started but not yet returned by the iterator
+   * @return result of each render, in the order of the bindings
+   */
+  public Iterator<RenderResult> renderAll(String template, Iterable<? extends Map<String, ?>> bindings, Executor executor, int maxAhead) {
+    Template compiled;
+    try {
+      compiled = compile(template);
+    }
+    catch(Exception e) {
+      final TemplateError error = e instanceof InterpretException ? TemplateError.fromSyntaxError((InterpretException) e) : TemplateError.fromException(e);
+      return Iterators.transform(bindings.iterator(), new Function<Map<String, ?>, RenderResult>() {
+        @Override
+        public RenderResult apply(Map<String, ?> input) {
+          return new RenderResult(error, new Context(globalContext, input), ImmutableList.<TemplateError> of());
+        }
+      });
+    }
+    
+    return renderAll(compiled, bindings, globalConfig, executor, maxAhead);
+  }
+  
+  Iterator<RenderResult> renderAll(Template template, Iterable<? extends Map<String, ?>> bindings, JinjavaConfig renderConfig, Executor executor, int maxAhead) {
+    if(executor != null && maxAhead < 1) {
+      throw new IllegalArgumentException("maxAhead must be at least 1 when rendering on an executor, was " + maxAhead);
+    }
+    return new RenderBatch(this, template, renderConfig, bindings.iterator(), executor, maxAhead);
+  }
+  
+  RenderResult renderForResult(Template template, Map<String, ?> bindings, JinjavaConfig renderConfig) {
+    try {
+      return renderForResult(template, bindings, renderConfig, null);
+    }
+    catch(IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+  
+  /**
+   * Render the given template using the given context bindings, writing output to the given appendable
+   * (e.g. a servlet response Writer) as it is produced, rather than building the whole output in memory.
+   * 
+   * @param template jinja source template
+   * @param bindings map of objects to put into scope for this rendering action
+   * @param out destination for rendered output
+   * @throws FatalTemplateErrorsException if fatal errors were encountered; output already written is not retracted
+   * @throws IOException if writing to out fails
+   */
+  public void render(String template, Map<String, ?> bindings, Appendable out) throws IOException {
+    checkFatalErrors(template, renderForResult(template, bindings, out));
+  }
+  
+  /**
+   * Render the given template using the given context bindings, writing output to the given appendable
+   * as it is produced. The returned result holds the render context and any errors encountered; its 
+   * output is empty, since the output has already been written to out.
+   * 
+   * @param template jinja source template
+   * @param bindings map of objects to put into scope for this rendering action
+   * @param out destination for rendered output
+   * @return result object containing render context and any encountered errors
+   * @throws IOException if writing to out fails
+   */
+  public RenderResult renderForResult(String template, Map<String, ?> bindings, Appendable out) throws IOException {
+    Template compiled;
+    try {
+      compiled = compile(template);
+    }
+    catch(InterpretException e) {
+      return new RenderResult(TemplateError.fromSyntaxError(e), new Context(globalContext, bindings), ImmutableList.<TemplateError> of());
+    }
+    catch(Exception e) {
+      return new RenderResult(TemplateError.fromException(e), new Context(globalContext, bindings), ImmutableList.<TemplateError> of());
+    }
+    
+    return renderForResult(compiled, bindings, globalConfig, out);
+  }
+  
+  String render(Template template, Map<String, ?> bindings, Appendable out) throws IOException {
+    return checkFatalErrors(template.getSource(), renderForResult(template, bindings, globalConfig, out));
+  }
+  
+  /**
+   * @param out destination for streamed output, or null to render into the returned result
+   */
+  RenderResult renderForResult(Template template, Map<String, ?> bindings, JinjavaConfig renderConfig, Appendable out) throws IOException {
     Context context = new Context(globalContext, bindings);
 
     JinjavaInterpreter parentInterpreter = JinjavaInterpreter.getCurrent();
@@ -195,18 +567,43 @@ public class Jinjava {
     JinjavaInterpreter.pushCurrent(interpreter);
     
     try {
-      String result = interpreter.render(template);
-      return new RenderResult(result, interpreter.getContext(), interpreter.getErrors());
+      for(TemplateError error : template.getErrors()) {
+        interpreter.addError(error);
+      }
+      
+      // profiled renders are interpreted, so that each tag is timed, and so are renders which
+      // would find other tags than the ones the template was compiled with
+      CompiledTemplate compiled = template.getCompiled();
+      if(compiled != null && interpreter.getProfiler() == null && compiled.isCurrent(interpreter)) {
+        StringBuilder result = out == null ? new StringBuilder() : null;
+        compiled.render(interpreter, interpreter.streamTo(out == null ? result : out));
+        return new RenderResult(out == null ? result.toString() : "", interpreter.getContext(), interpreter.getErrors());
+      }
+      
+      if(out == null) {
+        String result = interpreter.render(template.getRoot());
+        return new RenderResult(result, interpreter.getContext(), interpreter.getErrors(), profile(interpreter));
+      }
+      
+      interpreter.render(template.getRoot(), out);
+      return new RenderResult("", interpreter.getContext(), interpreter.getErrors(), profile(interpreter));
+    }
+    catch(IOException e) {
+      throw e;
     }
     catch(InterpretException e) {
-      return new RenderResult(TemplateError.fromSyntaxError(e), interpreter.getContext(), interpreter.getErrors());
+      return new RenderResult(TemplateError.fromSyntaxError(e), interpreter.getContext(), interpreter.getErrors(), profile(interpreter));
     }
     catch(Exception e) {
-      return new RenderResult(TemplateError.fromException(e), interpreter.getContext(), interpreter.getErrors());
+      return new RenderResult(TemplateError.fromException(e), interpreter.getContext(), interpreter.getErrors(), profile(interpreter));
     }
     finally {
       JinjavaInterpreter.popCurrent();
     }
   }
 
+  private static RenderProfile profile(JinjavaInterpreter interpreter) {
+    return interpreter.getProfiler() == null ? null : interpreter.getProfiler().getProfile();
+  }
+
 }
@@ -19,6 +19,7 @@ import java.nio.charset.Charset;
 import com.hubspot.jinjava.util.StandardCharsets;
 
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 import org.joda.time.DateTimeZone;
 
@@ -28,19 +29,36 @@ public class JinjavaConfig {
   private final Locale locale;
   private final DateTimeZone timeZone;
   private final int maxRenderDepth;
+  private final int templateCacheSize;
+  private final boolean templateCompilationEnabled;
+  private final boolean nestedInterpretationEnabled;
+  private final int maxErrors;
+  private final Executor includeExecutor;
+  private final boolean profilingEnabled;
   
   public JinjavaConfig() {
-    charset = StandardCharsets.UTF_8;
-    locale = Locale.ENGLISH;
-    timeZone = DateTimeZone.UTC;
-    maxRenderDepth = 10;
+    this(StandardCharsets.UTF_8, Locale.ENGLISH, DateTimeZone.UTC, 10);
   }
 
   public JinjavaConfig(Charset charset, Locale locale, DateTimeZone timeZone, int maxRenderDepth) {
-    this.charset = charset;
-    this.locale = locale;
-    this.timeZone = timeZone;
-    this.maxRenderDepth = maxRenderDepth;
+    this(newBuilder().withCharset(charset).withLocale(locale).withTimeZone(timeZone).withMaxRenderDepth(maxRenderDepth));
+  }
+
+  private JinjavaConfig(Builder builder) {
+    this.charset = builder.charset;
+    this.locale = builder.locale;
+    this.timeZone = builder.timeZone;
+    this.maxRenderDepth = builder.maxRenderDepth;
+    this.templateCacheSize = builder.templateCacheSize;
+    this.templateCompilationEnabled = builder.templateCompilationEnabled;
+    this.nestedInterpretationEnabled = builder.nestedInterpretationEnabled;
+    this.maxErrors = builder.maxErrors;
+    this.includeExecutor = builder.includeExecutor;
+    this.profilingEnabled = builder.profilingEnabled;
+  }
+  
+  public static Builder newBuilder() {
+    return new Builder();
   }
   
   public Charset getCharset() {
@@ -59,4 +77,130 @@ public class JinjavaConfig {
     return maxRenderDepth;
   }
 
+  /**
+   * @return maximum number of parsed templates kept by {@link Jinjava#compile(String)}, 0 to disable caching
+   */
+  public int getTemplateCacheSize() {
+    return templateCacheSize;
+  }
+
+  /**
+   * @return whether templates returned by {@link Jinjava#compile(String)} are also compiled to
+   *   bytecode; tags are then bound when the template is compiled rather than on each render, and
+   *   the template is interpreted instead once another tag has been registered
+   */
+  public boolean isTemplateCompilationEnabled() {
+    return templateCompilationEnabled;
+  }
+
+  /**
+   * @return whether printed values which themselves contain {@code {{ }}} are rendered again as
+   *   templates; disable when printing user content which shouldn't be interpreted
+   */
+  public boolean isNestedInterpretationEnabled() {
+    return nestedInterpretationEnabled;
+  }
+
+  /**
+   * @return maximum number of warnings kept per render; once reached, further warnings are dropped
+   *   and a single warning says so. Fatal errors are always kept. Unlimited by default.
+   */
+  public int getMaxErrors() {
+    return maxErrors;
+  }
+
+  /**
+   * @return executor on which runs of adjacent include tags are rendered concurrently, or null to
+   *   render every include on the rendering thread, as by default. Only includes whose templates
+   *   can't modify values shared with the including template are rendered concurrently.
+   */
+  public Executor getIncludeExecutor() {
+    return includeExecutor;
+  }
+
+  /**
+   * @return whether renders with this config record the time taken by each tag, printed expression,
+   *   filter and included or imported template, returned by {@link com.hubspot.jinjava.interpret.RenderResult#getProfile()}.
+   *   Disabled by default; to profile a sample of renders, pass a config with profiling enabled to
+   *   {@link Template#renderForResult(java.util.Map, JinjavaConfig)} for those. Profiled renders are
+   *   interpreted rather than run as bytecode, and render includes one at a time.
+   */
+  public boolean isProfilingEnabled() {
+    return profilingEnabled;
+  }
+
+  public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 500;
+
+  public static class Builder {
+    private Charset charset = StandardCharsets.UTF_8;
+    private Locale locale = Locale.ENGLISH;
+    private DateTimeZone timeZone = DateTimeZone.UTC;
+    private int maxRenderDepth = 10;
+    private int templateCacheSize = DEFAULT_TEMPLATE_CACHE_SIZE;
+    private boolean templateCompilationEnabled = false;
+    private boolean nestedInterpretationEnabled = true;
+    private int maxErrors = Integer.MAX_VALUE;
+    private Executor includeExecutor = null;
+    private boolean profilingEnabled = false;
+
+    private Builder() {}
+
+    public Builder withCharset(Charset charset) {
+      this.charset = charset;
+      return this;
+    }
+
+    public Builder withLocale(Locale locale) {
+      this.locale = locale;
+      return this;
+    }
+
+    public Builder withTimeZone(DateTimeZone timeZone) {
+      this.timeZone = timeZone;
+      return this;
+    }
+
+    public Builder withMaxRenderDepth(int maxRenderDepth) {
+      this.maxRenderDepth = maxRenderDepth;
+      return this;
+    }
+
+    public Builder withTemplateCacheSize(int templateCacheSize) {
+      if(templateCacheSize < 0) {
+        throw new IllegalArgumentException("templateCacheSize must be 0 (no caching) or more, was " + templateCacheSize);
+      }
+      this.templateCacheSize = templateCacheSize;
+      return this;
+    }
+
+    public Builder withTemplateCompilation(boolean templateCompilationEnabled) {
+      this.templateCompilationEnabled = templateCompilationEnabled;
+      return this;
+    }
+
+    public Builder withNestedInterpretationEnabled(boolean nestedInterpretationEnabled) {
+      this.nestedInterpretationEnabled = nestedInterpretationEnabled;
+      return this;
+    }
+
+    public Builder withMaxErrors(int maxErrors) {
+      this.maxErrors = maxErrors;
+      return this;
+    }
+
+    public Builder withIncludeExecutor(Executor includeExecutor) {
+      this.includeExecutor = includeExecutor;
+      return this;
+    }
+
+    public Builder withProfilingEnabled(boolean profilingEnabled) {
+      this.profilingEnabled = profilingEnabled;
+      return this;
+    }
+
+    public JinjavaConfig build() {
+      return new JinjavaConfig(this);
+    }
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.hubspot.jinjava.interpret.RenderResult;
+
+/**
+ * The results of rendering a template once for each of a sequence of bindings, rendered as they're
+ * iterated. With an executor, up to a fixed number of the following renders run ahead on it; results
+ * are still returned in order, and no more than that many are held at once.
+ */
+final class RenderBatch extends AbstractIterator<RenderResult> {
+
+  private final Jinjava application;
+  private final Template template;
+  private final JinjavaConfig renderConfig;
+  private final Iterator<? extends Map<String, ?>> bindings;
+  private final Executor executor;
+  private final int maxAhead;
+  private final Deque<FutureTask<RenderResult>> ahead = new ArrayDeque<FutureTask<RenderResult>>();
+
+  RenderBatch(Jinjava application, Template template, JinjavaConfig renderConfig,
+      Iterator<? extends Map<String, ?>> bindings, Executor executor, int maxAhead) {
+    this.application = application;
+    this.template = template;
+    this.renderConfig = renderConfig;
+    this.bindings = bindings;
+    this.executor = executor;
+    this.maxAhead = maxAhead;
+  }
+
+  @Override
+  protected RenderResult computeNext() {
+    if(executor == null) {
+      return bindings.hasNext() ? application.renderForResult(template, bindings.next(), renderConfig) : endOfData();
+    }
+    
+    while(ahead.size() < maxAhead && bindings.hasNext()) {
+      FutureTask<RenderResult> render = new FutureTask<RenderResult>(render(bindings.next()));
+      ahead.addLast(render);
+      try {
+        executor.execute(render);
+      } catch (RejectedExecutionException e) {
+        // rendered on this thread in its turn
+      }
+    }
+    
+    if(ahead.isEmpty()) {
+      return endOfData();
+    }
+    
+    FutureTask<RenderResult> next = ahead.removeFirst();
+    // renders it here if the executor hasn't started it yet
+    next.run();
+    
+    try {
+      return next.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+  
+  private Callable<RenderResult> render(final Map<String, ?> renderBindings) {
+    return new Callable<RenderResult>() {
+      @Override
+      public RenderResult call() {
+        return application.renderForResult(template, renderBindings, renderConfig);
+      }
+    };
+  }
+
+}
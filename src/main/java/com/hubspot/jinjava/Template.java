@@ -0,0 +1,179 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import com.google.common.collect.ImmutableList;
+import com.hubspot.jinjava.compile.CompiledTemplate;
+import com.hubspot.jinjava.interpret.RenderResult;
+import com.hubspot.jinjava.interpret.TemplateError;
+import com.hubspot.jinjava.tree.EditableTree;
+import com.hubspot.jinjava.tree.Node;
+
+/**
+ * A parsed template, as returned by {@link Jinjava#compile(String)}. The parse tree is never
+ * modified while rendering, so a single instance may be rendered concurrently from many threads.
+ *
+ * Example use:
+ *
+ * <pre>
+ *     Template template = jinjava.compile("Hello, {{ name }}");
+ *     String renderedTemplate = template.render(context);
+ * </pre>
+ */
+public final class Template {
+
+  private final Jinjava application;
+  private final String source;
+  private final Node root;
+  private final List<TemplateError> errors;
+  private final CompiledTemplate compiled;
+  private final EditableTree tree;
+
+  Template(Jinjava application, String source, Node root, List<TemplateError> errors, CompiledTemplate compiled) {
+    this.application = application;
+    this.source = source;
+    this.root = root;
+    this.errors = ImmutableList.copyOf(errors);
+    this.compiled = compiled;
+    this.tree = null;
+  }
+
+  Template(Jinjava application, EditableTree tree, List<TemplateError> errors) {
+    this.application = application;
+    this.source = tree.getSource();
+    this.root = tree.getRoot();
+    this.errors = ImmutableList.copyOf(errors);
+    this.compiled = null;
+    this.tree = tree;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public Node getRoot() {
+    return root;
+  }
+
+  /**
+   * @return the bytecode compiled form of this template, or null if template compilation is disabled
+   *   or the template couldn't be compiled
+   * @see JinjavaConfig#isTemplateCompilationEnabled()
+   */
+  public CompiledTemplate getCompiled() {
+    return compiled;
+  }
+
+  /**
+   * @return errors encountered while parsing this template; these are added to the result of every render
+   */
+  public List<TemplateError> getErrors() {
+    return errors;
+  }
+
+  /**
+   * @return the tree this template was parsed into by {@link #edit(int, int, String)}, or null if
+   *   it wasn't made by an edit
+   */
+  EditableTree getEditableTree() {
+    return tree;
+  }
+
+  /**
+   * Parse the template made by replacing part of this template's source, e.g. to preview a template
+   * on each change made in an editor. This template is left unchanged. A template made by an edit
+   * remembers where in its source each of its top level nodes came from, so that when it is edited in
+   * turn only the nodes around the edit are parsed again, and the others are reused; the first edit of
+   * a template from {@link Jinjava#compile(String)} parses the edited source in full. Edited templates
+   * aren't cached, nor compiled to bytecode.
+   *
+   * @param offset offset in this template's source of the first character replaced
+   * @param removedLength number of characters replaced
+   * @param inserted text replacing them
+   * @return the edited template
+   * @throws IllegalArgumentException if the replaced characters aren't all within the source
+   * @see EditableTree
+   */
+  public Template edit(int offset, int removedLength, String inserted) {
+    return application.edit(this, offset, removedLength, inserted);
+  }
+
+  /**
+   * Render this template using the given context bindings.
+   *
+   * @see Jinjava#render(String, Map)
+   */
+  public String render(Map<String, ?> bindings) {
+    return application.render(this, bindings);
+  }
+
+  /**
+   * Render this template using the given context bindings, returning output and errors.
+   *
+   * @see Jinjava#renderForResult(String, Map)
+   */
+  public RenderResult renderForResult(Map<String, ?> bindings) {
+    return application.renderForResult(this, bindings, application.getGlobalConfig());
+  }
+
+  public RenderResult renderForResult(Map<String, ?> bindings, JinjavaConfig renderConfig) {
+    return application.renderForResult(this, bindings, renderConfig);
+  }
+
+  /**
+   * Render this template once for each of the given sets of context bindings, as the returned
+   * iterator reaches each.
+   *
+   * @see Jinjava#renderAll(String, Iterable)
+   */
+  public Iterator<RenderResult> renderAll(Iterable<? extends Map<String, ?>> bindings) {
+    return application.renderAll(this, bindings, application.getGlobalConfig(), null, 0);
+  }
+
+  /**
+   * Render this template once for each of the given sets of context bindings, running up to
+   * maxAhead renders ahead of the returned iterator on the given executor.
+   *
+   * @see Jinjava#renderAll(String, Iterable, Executor, int)
+   */
+  public Iterator<RenderResult> renderAll(Iterable<? extends Map<String, ?>> bindings, Executor executor, int maxAhead) {
+    return application.renderAll(this, bindings, application.getGlobalConfig(), executor, maxAhead);
+  }
+
+  /**
+   * Render this template using the given context bindings, writing output to the given appendable as
+   * it is produced.
+   *
+   * @see Jinjava#render(String, Map, Appendable)
+   */
+  public void render(Map<String, ?> bindings, Appendable out) throws IOException {
+    application.render(this, bindings, out);
+  }
+
+  /**
+   * @see Jinjava#renderForResult(String, Map, Appendable)
+   */
+  public RenderResult renderForResult(Map<String, ?> bindings, Appendable out) throws IOException {
+    return application.renderForResult(this, bindings, application.getGlobalConfig(), out);
+  }
+
+}
@@ -0,0 +1,157 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.hubspot.jinjava.WarmUpResult.TemplateResult;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.InterpretException;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.tree.Node;
+import com.hubspot.jinjava.tree.TagNode;
+import com.hubspot.jinjava.util.HelperStringTokenizer;
+import com.hubspot.jinjava.util.WhitespaceUtils;
+
+/**
+ * Loads and parses a set of templates concurrently, then the templates they refer to by a literal
+ * name, until every template reached has been parsed. Results are gathered, and further templates
+ * submitted, on the calling thread.
+ */
+final class TemplateWarmUp {
+
+  private static final Set<String> REFERENCING_TAGS = ImmutableSet.of("include", "import", "from", "extends");
+
+  private final Jinjava application;
+  private final CompletionService<Loaded> completion;
+  private final Set<String> submitted = new HashSet<String>();
+  private int pending = 0;
+
+  TemplateWarmUp(Jinjava application, Executor executor) {
+    this.application = application;
+    this.completion = new ExecutorCompletionService<Loaded>(executor == null ? MoreExecutors.sameThreadExecutor() : executor);
+  }
+
+  WarmUpResult run(Iterable<String> names) {
+    long start = System.nanoTime();
+    for(String name : names) {
+      submit(name, false);
+    }
+
+    List<TemplateResult> results = new ArrayList<TemplateResult>();
+    while(pending > 0) {
+      Loaded loaded;
+      try {
+        loaded = completion.take().get();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Throwables.propagate(e);
+      } catch(ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+      pending--;
+
+      results.add(loaded.result);
+      for(String reference : loaded.references) {
+        submit(reference, true);
+      }
+    }
+
+    Collections.sort(results, new Comparator<TemplateResult>() {
+      @Override
+      public int compare(TemplateResult a, TemplateResult b) {
+        return a.getName().compareTo(b.getName());
+      }
+    });
+    return new WarmUpResult(results, System.nanoTime() - start);
+  }
+
+  private void submit(final String name, final boolean referenced) {
+    if(!submitted.add(name)) {
+      return;
+    }
+    pending++;
+    completion.submit(new Callable<Loaded>() {
+      @Override
+      public Loaded call() {
+        return load(name, referenced);
+      }
+    });
+  }
+
+  private Loaded load(String name, boolean referenced) {
+    JinjavaInterpreter interpreter = new JinjavaInterpreter(application, new Context(application.getGlobalContext()), application.getGlobalConfig());
+    long start = System.nanoTime();
+    try {
+      Template template = application.getTemplate(name, interpreter);
+      TemplateResult result = new TemplateResult(name, referenced, System.nanoTime() - start, template, null);
+
+      List<String> references = new ArrayList<String>();
+      addReferences(template.getRoot(), references);
+      return new Loaded(result, references);
+    } catch(Exception e) {
+      return new Loaded(new TemplateResult(name, referenced, System.nanoTime() - start, null, e), ImmutableList.<String> of());
+    }
+  }
+
+  /**
+   * Add the names of the templates included, imported or extended below node by a quoted name; names
+   * given by an expression are only known when rendering.
+   */
+  private static void addReferences(Node node, List<String> references) {
+    for(Node child : node.getChildren()) {
+      if(child instanceof TagNode && REFERENCING_TAGS.contains(child.getName())) {
+        HelperStringTokenizer helper = new HelperStringTokenizer(((TagNode) child).getHelpers());
+        if(helper.hasNext()) {
+          String path = StringUtils.trimToEmpty(helper.next());
+          try {
+            if(WhitespaceUtils.isQuoted(path)) {
+              references.add(WhitespaceUtils.unquote(path));
+            }
+          } catch(InterpretException e) { /* reported when rendered */ }
+        }
+      }
+      addReferences(child, references);
+    }
+  }
+
+  private static final class Loaded {
+    private final TemplateResult result;
+    private final List<String> references;
+
+    Loaded(TemplateResult result, List<String> references) {
+      this.result = result;
+      this.references = references;
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.hubspot.jinjava.interpret.TemplateError;
+
+/**
+ * The outcome of parsing templates ahead of their first use, as returned by
+ * {@link Jinjava#warmUp(String, java.util.concurrent.Executor)}.
+ */
+public final class WarmUpResult {
+
+  private final List<TemplateResult> templates;
+  private final long elapsedNanos;
+
+  WarmUpResult(List<TemplateResult> templates, long elapsedNanos) {
+    this.templates = ImmutableList.copyOf(templates);
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * @return each template loaded, whether listed or referenced by another template, ordered by name
+   */
+  public List<TemplateResult> getTemplates() {
+    return templates;
+  }
+
+  /**
+   * @return the wall clock time taken to load and parse all of the templates
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * @return whether any template failed to load, or had errors when parsed
+   */
+  public boolean hasErrors() {
+    for(TemplateResult template : templates) {
+      if(template.getFailure() != null || !template.getErrors().isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public static final class TemplateResult {
+    private final String name;
+    private final boolean referenced;
+    private final long parseNanos;
+    private final Template template;
+    private final Exception failure;
+
+    TemplateResult(String name, boolean referenced, long parseNanos, Template template, Exception failure) {
+      this.name = name;
+      this.referenced = referenced;
+      this.parseNanos = parseNanos;
+      this.template = template;
+      this.failure = failure;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return whether the template was only found through an include, import, from or extends tag in
+     *   another template, rather than listed by the resource locator
+     */
+    public boolean isReferenced() {
+      return referenced;
+    }
+
+    /**
+     * @return the time taken to load and parse the template
+     */
+    public long getParseNanos() {
+      return parseNanos;
+    }
+
+    /**
+     * @return the parsed template, as now cached by {@link Jinjava#getTemplate(String)}, or null if it
+     *   couldn't be loaded
+     */
+    public Template getTemplate() {
+      return template;
+    }
+
+    /**
+     * @return errors found while parsing the template
+     */
+    public List<TemplateError> getErrors() {
+      return template == null ? ImmutableList.<TemplateError> of() : template.getErrors();
+    }
+
+    /**
+     * @return the reason the template couldn't be loaded or parsed, or null if it was
+     */
+    public Exception getFailure() {
+      return failure;
+    }
+
+    @Override
+    public String toString() {
+      return name + " (" + parseNanos / 1000 + "us, " + getErrors().size() + " errors"
+          + (failure == null ? "" : ", failed: " + failure) + ")";
+    }
+  }
+
+}
@@ -0,0 +1,63 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.compile;
+
+import java.io.IOException;
+
+import com.hubspot.jinjava.el.CompiledExpression;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.lib.LibraryBinding;
+import com.hubspot.jinjava.lib.tag.Tag;
+import com.hubspot.jinjava.tree.Node;
+
+/**
+ * Base class for templates compiled to bytecode by {@link TemplateCompiler}. Generated subclasses
+ * render text as constants, evaluate if and for tags inline, and call back into the parse tree for
+ * everything else; the tables below hold the constants they refer to by index.
+ *
+ * The inlined tags are the ones found in the compiling context's tag library. Once another tag is
+ * registered there, or a render's context registers tags of its own, the template is no longer
+ * {@link #isCurrent(JinjavaInterpreter) current} and should be interpreted instead.
+ *
+ * Instances hold no render state, and may be rendered concurrently from many threads.
+ */
+public abstract class CompiledTemplate {
+
+  protected Node[] nodes;
+  protected String[] texts;
+  protected CompiledExpression[] expressions;
+  protected Tag[] tags;
+
+  private LibraryBinding<Tag[]> tagBinding;
+
+  final void bind(Node[] nodes, String[] texts, CompiledExpression[] expressions, LibraryBinding<Tag[]> tagBinding) {
+    this.nodes = nodes;
+    this.texts = texts;
+    this.expressions = expressions;
+    this.tags = tagBinding.getValue();
+    this.tagBinding = tagBinding;
+  }
+
+  /**
+   * @return true if the given interpreter would still find the tags this template was compiled with
+   */
+  public boolean isCurrent(JinjavaInterpreter interpreter) {
+    return tagBinding.isCurrent(interpreter.getContext().getSharedTagLibrary());
+  }
+
+  public abstract void render(JinjavaInterpreter interpreter, Appendable out) throws IOException;
+
+}
@@ -0,0 +1,41 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.compile;
+
+import com.hubspot.jinjava.el.CompiledExpression;
+import com.hubspot.jinjava.interpret.InterpretException;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.util.ObjectTruthValue;
+
+/**
+ * Static helpers called from generated {@link CompiledTemplate} classes.
+ */
+public final class CompiledTemplateSupport {
+
+  private CompiledTemplateSupport() {}
+
+  public static boolean isTrue(JinjavaInterpreter interpreter, CompiledExpression expression, int lineNumber) {
+    return ObjectTruthValue.evaluate(interpreter.resolveELExpression(expression, lineNumber));
+  }
+
+  /**
+   * Wrap a failure inside an inlined tag the same way {@link com.hubspot.jinjava.tree.TagNode} does.
+   */
+  public static InterpretException tagError(Exception e, int lineNumber) {
+    return new InterpretException("Error rendering tag", e, lineNumber);
+  }
+
+}
@@ -0,0 +1,281 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.compile;
+
+import static com.hubspot.jinjava.util.Logging.ENGINE_LOG;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.collect.Lists;
+
+import com.hubspot.jinjava.el.CompiledExpression;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.lib.LibraryBinding;
+import com.hubspot.jinjava.lib.tag.ElseIfTag;
+import com.hubspot.jinjava.lib.tag.ElseTag;
+import com.hubspot.jinjava.lib.tag.ForTag;
+import com.hubspot.jinjava.lib.tag.IfTag;
+import com.hubspot.jinjava.lib.tag.Tag;
+import com.hubspot.jinjava.lib.tag.TagLibrary;
+import com.hubspot.jinjava.tree.Node;
+import com.hubspot.jinjava.tree.TagNode;
+import com.hubspot.jinjava.tree.TextNode;
+import com.hubspot.jinjava.tree.VariableNode;
+import com.hubspot.jinjava.util.ForLoop;
+
+/**
+ * Compiles a parse tree into a {@link CompiledTemplate} subclass using javassist. Text nodes become
+ * constants, variable nodes direct calls, and the built-in if and for tags Java branches and loops;
+ * any other tag is rendered by calling back into its node, so every template can be compiled.
+ *
+ * Tags are looked up once, in the context of the interpreter doing the compiling, and the result is
+ * only used while that context's tag library is unchanged. Templates using block or extends are not
+ * compiled, since their output is only assembled after rendering.
+ */
+public class TemplateCompiler {
+
+  private static final String INTERPRETER = JinjavaInterpreter.class.getName();
+  private static final String SUPPORT = CompiledTemplateSupport.class.getName();
+  private static final String TAG_NODE = TagNode.class.getName();
+  private static final String FOR_TAG = ForTag.class.getName();
+  private static final String LOOP_SPEC = ForTag.LoopSpec.class.getName();
+
+  private static final int NODES_PER_METHOD = 64;
+
+  private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+  private static final ClassPool POOL = new ClassPool(true);
+  static {
+    POOL.appendClassPath(new ClassClassPath(CompiledTemplate.class));
+  }
+
+  private final JinjavaInterpreter interpreter;
+
+  private final List<Node> nodes = new ArrayList<Node>();
+  private final List<String> texts = new ArrayList<String>();
+  private final List<CompiledExpression> expressions = new ArrayList<CompiledExpression>();
+  private final List<Tag> tags = new ArrayList<Tag>();
+  private final List<String> methods = new ArrayList<String>();
+  private int parts = 0;
+
+  private TemplateCompiler(JinjavaInterpreter interpreter) {
+    this.interpreter = interpreter;
+  }
+
+  /**
+   * @return the compiled template, or null if the tree can't be compiled and should be interpreted
+   */
+  public static CompiledTemplate compile(Node root, JinjavaInterpreter interpreter) {
+    if(JinjavaInterpreter.usesInheritance(root)) {
+      return null;
+    }
+
+    try {
+      return new TemplateCompiler(interpreter).compile(root);
+    }
+    catch(Exception e) {
+      ENGINE_LOG.warn("Unable to compile template, it will be interpreted", e);
+    }
+    catch(LinkageError e) {
+      ENGINE_LOG.warn("Unable to compile template, it will be interpreted", e);
+    }
+    return null;
+  }
+
+  private CompiledTemplate compile(Node root) throws Exception {
+    // taken before any tag is looked up, so that a tag registered meanwhile makes the result stale
+    TagLibrary tagLibrary = interpreter.getContext().getSharedTagLibrary();
+    long tagLibraryVersion = tagLibrary == null ? 0 : tagLibrary.getVersion();
+
+    StringBuilder render = new StringBuilder();
+    emitParts(Lists.newArrayList(root.getChildren()), render);
+    methods.add(method("public", "render", render));
+
+    String className = CompiledTemplate.class.getName() + "$$" + CLASS_COUNTER.incrementAndGet();
+    byte[] bytecode;
+    synchronized(POOL) {
+      CtClass cc = POOL.makeClass(className, POOL.get(CompiledTemplate.class.getName()));
+      try {
+        cc.addConstructor(CtNewConstructor.defaultConstructor(cc));
+        for(String method : methods) {
+          cc.addMethod(CtNewMethod.make(method, cc));
+        }
+        bytecode = cc.toBytecode();
+      }
+      finally {
+        cc.detach();
+      }
+    }
+
+    Class<?> compiledClass = new CompiledTemplateClassLoader(CompiledTemplate.class.getClassLoader()).define(className, bytecode);
+    CompiledTemplate template = (CompiledTemplate) compiledClass.newInstance();
+    template.bind(nodes.toArray(new Node[nodes.size()]), texts.toArray(new String[texts.size()]),
+        expressions.toArray(new CompiledExpression[expressions.size()]),
+        new LibraryBinding<Tag[]>(tagLibrary, tagLibraryVersion, tags.toArray(new Tag[tags.size()])));
+    return template;
+  }
+
+  private static String method(String access, String name, CharSequence body) {
+    return access + " void " + name + "(" + INTERPRETER + " interpreter, java.lang.Appendable out) throws java.io.IOException {\n" + body + "}";
+  }
+
+  /**
+   * Emit calls to methods rendering the given nodes, at most {@link #NODES_PER_METHOD} to a method,
+   * so that no method grows past what javassist and the JVM can handle however long the template
+   * or any if or for body in it. Methods are added once their body is emitted, after the methods
+   * they call.
+   */
+  private void emitParts(List<Node> children, StringBuilder out) {
+    for(int start = 0; start < children.size(); start += NODES_PER_METHOD) {
+      String name = "part" + parts++;
+      StringBuilder body = new StringBuilder();
+      for(Node node : children.subList(start, Math.min(start + NODES_PER_METHOD, children.size()))) {
+        emit(node, body);
+      }
+      methods.add(method("private", name, body));
+      out.append(name).append("(interpreter, out);\n");
+    }
+  }
+
+  private void emit(Node node, StringBuilder out) {
+    if(node instanceof TextNode) {
+      String text = node.render(interpreter);
+      if(!text.isEmpty()) {
+        out.append("out.append(texts[").append(add(texts, text)).append("]);\n");
+      }
+      return;
+    }
+
+    if(node instanceof VariableNode) {
+      out.append("out.append(((").append(VariableNode.class.getName()).append(") nodes[").append(add(nodes, node)).append("]).render(interpreter));\n");
+      return;
+    }
+
+    if(node instanceof TagNode) {
+      TagNode tagNode = (TagNode) node;
+      Tag tag = tagNode.getTag(interpreter);
+
+      if(tag != null && tag.getClass() == IfTag.class && StringUtils.isNotBlank(tagNode.getHelpers())) {
+        emitIf(tagNode, out);
+        return;
+      }
+      if(tag != null && tag.getClass() == ForTag.class && tagNode.getPrepared(interpreter) != null) {
+        emitFor(tagNode, (ForTag) tag, out);
+        return;
+      }
+    }
+
+    out.append("nodes[").append(add(nodes, node)).append("].render(interpreter, out);\n");
+  }
+
+  private void emitIf(TagNode tagNode, StringBuilder out) {
+    int id = nodes.size();
+    add(nodes, tagNode);
+
+    out.append("try {\n");
+    out.append("if (").append(condition(tagNode)).append(") {\n");
+
+    List<Node> branch = new ArrayList<Node>();
+    boolean inElse = false;
+    for(Node child : tagNode.getChildren()) {
+      if(child instanceof TagNode && ElseTag.ELSE.equals(child.getName())) {
+        if(inElse) {
+          break;
+        }
+        emitParts(branch, out);
+        branch = new ArrayList<Node>();
+        out.append("}\nelse {\n");
+        inElse = true;
+        continue;
+      }
+      if(child instanceof TagNode && ElseIfTag.ELSEIF.equals(child.getName())) {
+        if(inElse) {
+          break;
+        }
+        emitParts(branch, out);
+        branch = new ArrayList<Node>();
+        out.append("}\nelse if (").append(condition((TagNode) child)).append(") {\n");
+        continue;
+      }
+      branch.add(child);
+    }
+    emitParts(branch, out);
+
+    out.append("}\n");
+    catchTagErrors(id, tagNode, out);
+  }
+
+  private void emitFor(TagNode tagNode, ForTag tag, StringBuilder out) {
+    int id = nodes.size();
+    add(nodes, tagNode);
+    String node = "((" + TAG_NODE + ") nodes[" + id + "])";
+    String forTag = "((" + FOR_TAG + ") tags[" + add(tags, tag) + "])";
+    String spec = "spec" + id;
+    String loop = "loop" + id;
+
+    out.append("try {\n");
+    out.append(LOOP_SPEC).append(' ').append(spec)
+        .append(" = ").append(forTag).append(".getLoopSpec(").append(node).append(", interpreter);\n");
+    out.append(ForLoop.class.getName()).append(' ').append(loop)
+        .append(" = ").append(forTag).append(".startLoop(").append(node).append(", ").append(spec).append(", interpreter);\n");
+    out.append("try {\n");
+    out.append("while (").append(loop).append(".hasNext()) {\n");
+    out.append(forTag).append(".bindLoopVars(").append(node).append(", ").append(spec).append(", interpreter, ").append(loop).append(".next());\n");
+    emitParts(Lists.newArrayList(tagNode.getChildren()), out);
+    out.append("}\n");
+    out.append("}\nfinally {\ninterpreter.leaveScope();\n}\n");
+    catchTagErrors(id, tagNode, out);
+  }
+
+  private String condition(TagNode tagNode) {
+    Object prepared = tagNode.getPrepared(interpreter);
+    CompiledExpression expression = prepared instanceof CompiledExpression ?
+        (CompiledExpression) prepared : interpreter.compileELExpression(tagNode.getHelpers());
+    return SUPPORT + ".isTrue(interpreter, expressions[" + add(expressions, expression) + "], " + tagNode.getLineNumber() + ")";
+  }
+
+  private static void catchTagErrors(int id, TagNode tagNode, StringBuilder out) {
+    String e = "e" + id;
+    out.append("}\ncatch (java.io.IOException ").append(e).append(") {\nthrow ").append(e).append(";\n}\n");
+    out.append("catch (java.lang.Exception ").append(e).append(") {\nthrow ").append(SUPPORT)
+        .append(".tagError(").append(e).append(", ").append(tagNode.getLineNumber()).append(");\n}\n");
+  }
+
+  private static <T> int add(List<T> table, T value) {
+    table.add(value);
+    return table.size() - 1;
+  }
+
+  private static class CompiledTemplateClassLoader extends ClassLoader {
+    CompiledTemplateClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    Class<?> define(String name, byte[] bytecode) {
+      return defineClass(name, bytecode, 0, bytecode.length);
+    }
+  }
+
+}
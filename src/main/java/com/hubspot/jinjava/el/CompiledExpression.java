@@ -0,0 +1,68 @@
+package com.hubspot.jinjava.el;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.hubspot.jinjava.util.Objects;
+
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.TreeBuilderException;
+import de.odysseus.el.tree.TreeStore;
+
+/**
+ * An expression parsed once into a JUEL tree, so that it can be evaluated repeatedly without
+ * being re-scanned. Syntax errors are kept and reported on each evaluation, the same way an
+ * uncompiled expression would report them.
+ *
+ * Instances are immutable and may be shared between threads; functions and variables are bound
+ * against the evaluating interpreter's ELContext each time the expression is resolved.
+ */
+public class CompiledExpression {
+
+  private final String expression;
+  private final Tree tree;
+  private final TreeBuilderException error;
+
+  private CompiledExpression(String expression, Tree tree, TreeBuilderException error) {
+    this.expression = expression;
+    this.tree = tree;
+    this.error = error;
+  }
+
+  public static CompiledExpression compile(String expression, TreeStore store) {
+    String cleanExpr = Objects.toString(expression, "").trim();
+    if(StringUtils.isBlank(cleanExpr)) {
+      return new CompiledExpression(expression, null, null);
+    }
+
+    try {
+      return new CompiledExpression(expression, store.get("#{" + cleanExpr + "}"), null);
+    }
+    catch(TreeBuilderException e) {
+      return new CompiledExpression(expression, null, e);
+    }
+  }
+
+  /**
+   * @return the expression source, as written in the template
+   */
+  public String getExpression() {
+    return expression;
+  }
+
+  public boolean isBlank() {
+    return tree == null && error == null;
+  }
+
+  Tree getTree() throws TreeBuilderException {
+    if(error != null) {
+      throw error;
+    }
+    return tree;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+}
@@ -1,12 +1,8 @@
 package com.hubspot.jinjava.el;
 
-import com.hubspot.jinjava.util.Objects;
-
 import javax.el.ELContext;
 import javax.el.ELException;
-import javax.el.ExpressionFactory;
 import javax.el.PropertyNotFoundException;
-import javax.el.ValueExpression;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -18,44 +14,49 @@ import com.hubspot.jinjava.interpret.TemplateError.ErrorReason;
 import com.hubspot.jinjava.interpret.TemplateError.ErrorType;
 import com.hubspot.jinjava.util.JinjavaPropertyNotResolvedException;
 
+import de.odysseus.el.misc.TypeConverter;
+import de.odysseus.el.tree.Tree;
 import de.odysseus.el.tree.TreeBuilderException;
 
 public class ExpressionResolver {
 
   private JinjavaInterpreter interpreter;
-  private ExpressionFactory expressionFactory;
+  private TypeConverter typeConverter;
   private ELContext elContext;
   
   public ExpressionResolver(JinjavaInterpreter interpreter, ELContext elContext) {
     this.interpreter = interpreter;
-    this.expressionFactory = interpreter.getExpressionFactory();
+    this.typeConverter = interpreter.getTypeConverter();
     this.elContext = elContext;
   }
 
   public Object resolve(String expr, int lineNumber) {
+    return resolve(interpreter.compileELExpression(expr), lineNumber);
+  }
+  
+  public Object resolve(CompiledExpression compiled, int lineNumber) {
     interpreter.setLineNumber(lineNumber);
 
-    CharSequence cleanExpr = Objects.toString(expr, "").trim();
-    if (StringUtils.isBlank(cleanExpr)) {
+    if (compiled.isBlank()) {
       return "";
     }
 
+    String expr = compiled.getExpression();
     try {
-      ValueExpression valueExp = expressionFactory.createValueExpression(
-          elContext, new StringBuilder("#{").append(cleanExpr).append('}')
-              .toString(), Object.class);
-      return valueExp.getValue(elContext);
+      Tree tree = compiled.getTree();
+      return tree.getRoot().getValue(tree.bind(elContext.getFunctionMapper(), elContext.getVariableMapper(), typeConverter), 
+          elContext, Object.class);
     } catch (PropertyNotFoundException e) {
       interpreter.addError(new TemplateError(ErrorType.WARNING, ErrorReason.UNKNOWN, e.getMessage(), "", lineNumber, e));
     } catch (JinjavaPropertyNotResolvedException e) {
-      interpreter.addError(TemplateError.fromUnknownProperty(e.getBase(), e.getProperty(), lineNumber));
+      interpreter.addUnknownPropertyError(e.getBase(), e.getProperty(), lineNumber);
     } catch (TreeBuilderException e) {
       interpreter.addError(TemplateError.fromException(new TemplateSyntaxException(expr,
           "Error parsing '" + expr + "': " + StringUtils.substringAfter(e.getMessage(), "': "), lineNumber, e)));
     } catch (ELException e) {
       if(e.getCause() instanceof JinjavaPropertyNotResolvedException) {
         JinjavaPropertyNotResolvedException jpe = (JinjavaPropertyNotResolvedException) e.getCause();
-        interpreter.addError(TemplateError.fromUnknownProperty(jpe.getBase(), jpe.getProperty(), lineNumber));
+        interpreter.addUnknownPropertyError(jpe.getBase(), jpe.getProperty(), lineNumber);
       }
       else {
         interpreter.addError(TemplateError.fromException(new TemplateSyntaxException(expr, e.getMessage(), lineNumber, e)));
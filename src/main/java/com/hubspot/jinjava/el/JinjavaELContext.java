@@ -19,6 +19,11 @@ public class JinjavaELContext extends SimpleContext {
     super(resolver);
   }
 
+  public JinjavaELContext(ELResolver resolver, MacroFunctionMapper functionMapper) {
+    super(resolver);
+    this.functionMapper = functionMapper;
+  }
+
   @Override
   public FunctionMapper getFunctionMapper() {
     if(functionMapper == null) {
@@ -16,12 +16,12 @@ import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
-import com.google.common.collect.Lists;
 import com.hubspot.jinjava.el.ext.AbstractCallableMethod;
 import com.hubspot.jinjava.el.ext.ExtendedParser;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.interpret.TemplateError;
 import com.hubspot.jinjava.objects.PyWrapper;
+import com.hubspot.jinjava.objects.PyWrapperCache;
 import com.hubspot.jinjava.objects.collections.PyList;
 import com.hubspot.jinjava.objects.collections.PyMap;
 import com.hubspot.jinjava.objects.date.FormattedDate;
@@ -78,11 +78,11 @@ public class JinjavaInterpreterResolver extends SimpleResolver {
       }
       else {
         try {
-          value = new VariableChain(Lists.newArrayList(property), base).resolve();
+          value = VariableChain.resolveProperty(base, property);
         }
         catch(JinjavaPropertyNotResolvedException e) {
           if(errOnUnknownProp) {
-            interpreter.addError(TemplateError.fromUnknownProperty(base, property, interpreter.getLineNumber()));
+            interpreter.addUnknownPropertyError(base, property, interpreter.getLineNumber());
           }
         }
       }
@@ -92,35 +92,50 @@ public class JinjavaInterpreterResolver extends SimpleResolver {
     return wrap(interpreter, value);
   }
   
-  @SuppressWarnings("unchecked")
+  /**
+   * Wrap a value in its python-like form, as seen by templates. Lists, maps and dates are wrapped
+   * once per render and the same wrapper is returned each time the value is read again.
+   */
   public static Object wrap(JinjavaInterpreter interpreter, Object value) {
-    if(value == null) {
-      return null;
+    // most values need no wrapping; they're returned before the wrapper cache is looked at, keeping
+    // this small enough to be inlined into every variable read
+    if(value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+        || value instanceof PyWrapper) {
+      return value;
+    }
+    return wrapObject(interpreter, value);
+  }
+  
+  private static Object wrapObject(JinjavaInterpreter interpreter, Object value) {
+    if(value instanceof List || value instanceof Map || value instanceof Date || value instanceof DateTime) {
+      PyWrapperCache cache = interpreter.getWrapperCache();
+      PyWrapper wrapper = cache.get(value);
+      if(wrapper == null) {
+        wrapper = createWrapper(interpreter, value);
+        cache.put(value, wrapper);
+      }
+      return wrapper;
     }
     
-    if(value instanceof PyWrapper) {
-      return value;
+    if(value instanceof FormattedDate) {
+      return formattedDateToString(interpreter, (FormattedDate) value);
     }
     
-    if(List.class.isAssignableFrom(value.getClass())) {
+    return value;
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static PyWrapper createWrapper(JinjavaInterpreter interpreter, Object value) {
+    if(value instanceof List) {
       return new PyList((List<Object>) value);
     }
-    if(Map.class.isAssignableFrom(value.getClass())) {
+    if(value instanceof Map) {
       return new PyMap((Map<String, Object>) value);
     }
-    
-    if(Date.class.isAssignableFrom(value.getClass())) {
+    if(value instanceof Date) {
       return new PyishDate(localizeDateTime(interpreter, new DateTime((Date) value)));
     }
-    if(DateTime.class.isAssignableFrom(value.getClass())) {
-      return new PyishDate(localizeDateTime(interpreter, (DateTime) value));
-    }
-    
-    if(FormattedDate.class.isAssignableFrom(value.getClass())) {
-      return formattedDateToString(interpreter, (FormattedDate) value);
-    }
-    
-    return value;
+    return new PyishDate(localizeDateTime(interpreter, (DateTime) value));
   }
   
   private static DateTime localizeDateTime(JinjavaInterpreter interpreter, DateTime dt) {
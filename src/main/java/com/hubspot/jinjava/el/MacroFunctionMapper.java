@@ -14,6 +14,19 @@ import com.hubspot.jinjava.lib.fn.MacroFunction;
 public class MacroFunctionMapper extends FunctionMapper {
 
   private Map<String, Method> map = Collections.emptyMap();
+  private boolean shared = false;
+  
+  public MacroFunctionMapper() {
+  }
+  
+  /**
+   * @param functions functions to start with, keyed by {@code prefix:localName}; the map is
+   *   copied before any function is added
+   */
+  public MacroFunctionMapper(Map<String, Method> functions) {
+    this.map = functions;
+    this.shared = true;
+  }
 
   @Override
   public Method resolveFunction(String prefix, String localName) {
@@ -27,8 +40,9 @@ public class MacroFunctionMapper extends FunctionMapper {
   }
 
   public void setFunction(String prefix, String localName, Method method) {
-    if (map.isEmpty()) {
-      map = new HashMap<String, Method>();
+    if (shared || map.isEmpty()) {
+      map = new HashMap<String, Method>(map);
+      shared = false;
     }
     map.put(prefix + ":" + localName, method);
   }
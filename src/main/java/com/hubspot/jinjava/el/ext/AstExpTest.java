@@ -0,0 +1,33 @@
+package com.hubspot.jinjava.el.ext;
+
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.lib.SimpleLibrary;
+import com.hubspot.jinjava.lib.exptest.ExpTest;
+
+import de.odysseus.el.tree.Bindings;
+import de.odysseus.el.tree.impl.ast.AstParameters;
+import de.odysseus.el.tree.impl.ast.AstProperty;
+
+public class AstExpTest extends AstLibraryMethod<ExpTest> {
+
+  public AstExpTest(String name, AstProperty property, AstParameters params) {
+    super(name, property, params);
+  }
+
+  @Override
+  protected SimpleLibrary<ExpTest> getSharedLibrary(Context context) {
+    return context.getSharedExpTestLibrary();
+  }
+
+  @Override
+  protected ExpTest lookup(Context context, String name) {
+    return context.getExpTest(name);
+  }
+
+  @Override
+  protected Object invoke(ExpTest expTest, Object var, JinjavaInterpreter interpreter, Object[] args, Bindings bindings) {
+    return expTest.evaluate(var, interpreter, varargs(args, Object[].class, bindings));
+  }
+
+}
@@ -0,0 +1,45 @@
+package com.hubspot.jinjava.el.ext;
+
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.RenderProfiler;
+import com.hubspot.jinjava.lib.SimpleLibrary;
+import com.hubspot.jinjava.lib.filter.Filter;
+
+import de.odysseus.el.tree.Bindings;
+import de.odysseus.el.tree.impl.ast.AstParameters;
+import de.odysseus.el.tree.impl.ast.AstProperty;
+
+public class AstFilter extends AstLibraryMethod<Filter> {
+
+  public AstFilter(String name, AstProperty property, AstParameters params) {
+    super(name, property, params);
+  }
+
+  @Override
+  protected SimpleLibrary<Filter> getSharedLibrary(Context context) {
+    return context.getSharedFilterLibrary();
+  }
+
+  @Override
+  protected Filter lookup(Context context, String name) {
+    return context.getFilter(name);
+  }
+
+  @Override
+  protected Object invoke(Filter filter, Object var, JinjavaInterpreter interpreter, Object[] args, Bindings bindings) {
+    RenderProfiler profiler = interpreter.getProfiler();
+    if(profiler == null) {
+      return filter.filter(var, interpreter, varargs(args, String[].class, bindings));
+    }
+    
+    profiler.start(RenderProfiler.Kind.FILTER, filter.getName(), -1);
+    try {
+      return filter.filter(var, interpreter, varargs(args, String[].class, bindings));
+    }
+    finally {
+      profiler.stop();
+    }
+  }
+
+}
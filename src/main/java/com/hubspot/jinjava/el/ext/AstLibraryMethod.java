@@ -0,0 +1,128 @@
+package com.hubspot.jinjava.el.ext;
+
+import java.lang.reflect.Array;
+
+import javax.el.ELContext;
+import javax.el.ELException;
+
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.lib.Importable;
+import com.hubspot.jinjava.lib.LibraryBinding;
+import com.hubspot.jinjava.lib.SimpleLibrary;
+
+import de.odysseus.el.tree.Bindings;
+import de.odysseus.el.tree.impl.ast.AstMethod;
+import de.odysseus.el.tree.impl.ast.AstParameters;
+import de.odysseus.el.tree.impl.ast.AstProperty;
+
+/**
+ * A call to a filter or expression test, such as {@code x|lower} or {@code x is defined}. The
+ * parameters are the filtered value, the interpreter, then any arguments given in the template.
+ *
+ * The filter or test is looked up by name the first time the expression is evaluated against a
+ * shared library, and called directly from then on; if anything is registered in that library, or
+ * the expression is evaluated in a scope with its own library, it is looked up again. Calls behave
+ * as the equivalent EL method invocation would, including the coercion of arguments, the wrapping
+ * of exceptions, and evaluating to null when no filter or test has the name.
+ */
+public abstract class AstLibraryMethod<T extends Importable> extends AstMethod {
+
+  private final String name;
+  private final AstParameters params;
+  private transient volatile LibraryBinding<T> bound;
+
+  /**
+   * @param name the name of the filter or test
+   * @param property the method this call would invoke, on an identifier naming the filter or test
+   * @param params the parameters of the call
+   */
+  protected AstLibraryMethod(String name, AstProperty property, AstParameters params) {
+    super(property, params);
+    this.name = name;
+    this.params = params;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  protected abstract SimpleLibrary<T> getSharedLibrary(Context context);
+
+  protected abstract T lookup(Context context, String name);
+
+  protected abstract Object invoke(T target, Object var, JinjavaInterpreter interpreter, Object[] args, Bindings bindings);
+
+  @Override
+  public Object eval(Bindings bindings, ELContext context) {
+    Object interpreter = params.getChild(1).eval(bindings, context);
+    if(!(interpreter instanceof JinjavaInterpreter)) {
+      return super.eval(bindings, context);
+    }
+
+    T target = resolve((JinjavaInterpreter) interpreter);
+    if(target == null) {
+      return null;
+    }
+
+    Object[] args = params.eval(bindings, context);
+    try {
+      return invoke(target, args[0], (JinjavaInterpreter) interpreter, args, bindings);
+    } catch (RuntimeException e) {
+      throw new ELException(e);
+    }
+  }
+
+  private T resolve(JinjavaInterpreter interpreter) {
+    Context context = interpreter.getContext();
+    SimpleLibrary<T> library = getSharedLibrary(context);
+    LibraryBinding<T> b = bound;
+    if(b != null && b.isCurrent(library)) {
+      return b.getValue();
+    }
+
+    long version = library == null ? 0 : library.getVersion();
+    T target = lookup(context, name);
+    if(library != null) {
+      bound = new LibraryBinding<T>(library, version, target);
+    }
+    return target;
+  }
+
+  /**
+   * Collect the template arguments, from index 2 of the evaluated parameters, into a varargs array
+   * of the given type, the way the EL resolver would when invoking the method reflectively.
+   */
+  @SuppressWarnings("unchecked")
+  protected static <V> V[] varargs(Object[] args, Class<V[]> arrayType, Bindings bindings) {
+    Class<?> componentType = arrayType.getComponentType();
+    int count = args.length - 2;
+
+    if(count == 1 && args[2] != null && args[2].getClass().isArray()) {
+      if(arrayType.isInstance(args[2])) {
+        return (V[]) args[2];
+      }
+
+      int length = Array.getLength(args[2]);
+      V[] result = (V[]) Array.newInstance(componentType, length);
+      for(int i = 0; i < length; i++) {
+        result[i] = (V) coerce(Array.get(args[2], i), componentType, bindings);
+      }
+      return result;
+    }
+
+    V[] result = (V[]) Array.newInstance(componentType, count);
+    for(int i = 0; i < count; i++) {
+      result[i] = (V) coerce(args[i + 2], componentType, bindings);
+    }
+    return result;
+  }
+
+  private static Object coerce(Object value, Class<?> type, Bindings bindings) {
+    if(value == null || type.isInstance(value)) {
+      return value;
+    }
+    return bindings.convert(value, type);
+  }
+
+}
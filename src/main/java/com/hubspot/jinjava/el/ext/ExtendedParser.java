@@ -354,7 +354,7 @@ public class ExtendedParser extends Parser {
               }
 
               AstProperty filterProperty = createAstDot(identifier(FILTER_PREFIX + filterName), "filter", true);
-              v = createAstMethod(filterProperty, new AstParameters(filterParams)); // function("filter:" + filterName, new AstParameters(filterParams));
+              v = new AstFilter(filterName, filterProperty, new AstParameters(filterParams));
               
             } while("|".equals(getToken().getImage()));
           }
@@ -370,7 +370,7 @@ public class ExtendedParser extends Parser {
             }
             
             AstProperty exptestProperty = createAstDot(identifier(EXPTEST_PREFIX + exptestName), "evaluate", true);
-            v = createAstMethod(exptestProperty, new AstParameters(exptestParams));
+            v = new AstExpTest(exptestName, exptestProperty, new AstParameters(exptestParams));
           }
           
           return v;
@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.hubspot.jinjava.lib.Importable;
 import com.hubspot.jinjava.lib.exptest.ExpTest;
@@ -36,10 +37,18 @@ import com.hubspot.jinjava.util.ScopeMap;
 public class Context extends ScopeMap<String, Object> {
   public static final String GLOBAL_MACROS_SCOPE_KEY = "__macros__";
 
-  private final ExpTestLibrary expTestLibrary;
-  private final FilterLibrary filterLibrary;
-  private final FunctionLibrary functionLibrary;
-  private final TagLibrary tagLibrary;
+  // counts libraries created in scopes below a root, each of which hides the root's library from
+  // the scopes below it; resolved shared libraries are only reused while this is unchanged
+  private static final AtomicLong SCOPED_LIBRARIES = new AtomicLong();
+
+  // libraries of child scopes are only created once something is registered in them,
+  // so entering a scope (for loops, macro calls) costs little more than a variable map
+  private ExpTestLibrary expTestLibrary;
+  private FilterLibrary filterLibrary;
+  private FunctionLibrary functionLibrary;
+  private TagLibrary tagLibrary;
+  
+  private SharedLibraries sharedLibraries;
   
   private final Context parent;
   
@@ -51,10 +60,12 @@ public class Context extends ScopeMap<String, Object> {
     super(parent);
     
     this.parent = parent;
-    this.expTestLibrary = new ExpTestLibrary(parent == null);
-    this.filterLibrary = new FilterLibrary(parent == null);
-    this.functionLibrary = new FunctionLibrary(parent == null);
-    this.tagLibrary = new TagLibrary(parent == null);
+    if(parent == null) {
+      this.expTestLibrary = new ExpTestLibrary(true);
+      this.filterLibrary = new FilterLibrary(true);
+      this.functionLibrary = new FunctionLibrary(true);
+      this.tagLibrary = new TagLibrary(true);
+    }
   }
   
   public Context(Context parent, Map<String, ?> bindings) {
@@ -87,7 +98,10 @@ public class Context extends ScopeMap<String, Object> {
   }
   
   public MacroFunction getGlobalMacro(String identifier) {
-    MacroFunction fn = getGlobalMacros().get(identifier);
+    // looked up without creating the map, as the global context is shared by concurrent renders
+    @SuppressWarnings("unchecked")
+    Map<String, MacroFunction> macros = (Map<String, MacroFunction>) getScope().get(GLOBAL_MACROS_SCOPE_KEY);
+    MacroFunction fn = macros == null ? null : macros.get(identifier);
     
     if(fn == null && parent != null) {
       fn = parent.getGlobalMacro(identifier);
@@ -105,19 +119,19 @@ public class Context extends ScopeMap<String, Object> {
   public final void registerClasses(Class<? extends Importable>... classes) {
     for(Class<? extends Importable> c : classes) {
       if(ExpTest.class.isAssignableFrom(c)) {
-        expTestLibrary.registerClasses((Class<? extends ExpTest>) c);
+        getOrCreateExpTestLibrary().registerClasses((Class<? extends ExpTest>) c);
       }
       else if(Filter.class.isAssignableFrom(c)) {
-        filterLibrary.registerClasses((Class<? extends Filter>) c);
+        getOrCreateFilterLibrary().registerClasses((Class<? extends Filter>) c);
       }
       else if(Tag.class.isAssignableFrom(c)) {
-        tagLibrary.registerClasses((Class<? extends Tag>) c);
+        getOrCreateTagLibrary().registerClasses((Class<? extends Tag>) c);
       }
     }
   }
   
   public ExpTest getExpTest(String name) {
-    ExpTest t = expTestLibrary.getExpTest(name);
+    ExpTest t = expTestLibrary == null ? null : expTestLibrary.getExpTest(name);
     if(t != null) {
       return t;
     }
@@ -128,11 +142,11 @@ public class Context extends ScopeMap<String, Object> {
   }
 
   public void registerExpTest(ExpTest t) {
-    expTestLibrary.addExpTest(t);
+    getOrCreateExpTestLibrary().addExpTest(t);
   }
 
   public Filter getFilter(String name) {
-    Filter f = filterLibrary.getFilter(name);
+    Filter f = filterLibrary == null ? null : filterLibrary.getFilter(name);
     if(f != null) {
       return f;
     }
@@ -143,11 +157,11 @@ public class Context extends ScopeMap<String, Object> {
   }
   
   public void registerFilter(Filter f) {
-    filterLibrary.addFilter(f);
+    getOrCreateFilterLibrary().addFilter(f);
   }
   
   public ELFunctionDefinition getFunction(String name) {
-    ELFunctionDefinition f = functionLibrary.getFunction(name);
+    ELFunctionDefinition f = functionLibrary == null ? null : functionLibrary.getFunction(name);
     if(f != null) {
       return f;
     }
@@ -158,7 +172,10 @@ public class Context extends ScopeMap<String, Object> {
   }
   
   public Collection<ELFunctionDefinition> getAllFunctions() {
-    List<ELFunctionDefinition> fns = new ArrayList<ELFunctionDefinition>(functionLibrary.entries());
+    List<ELFunctionDefinition> fns = new ArrayList<ELFunctionDefinition>();
+    if(functionLibrary != null) {
+      fns.addAll(functionLibrary.entries());
+    }
     
     if(parent != null) {
       fns.addAll(parent.getAllFunctions());
@@ -168,11 +185,11 @@ public class Context extends ScopeMap<String, Object> {
   }
   
   public void registerFunction(ELFunctionDefinition f) {
-    functionLibrary.addFunction(f);
+    getOrCreateFunctionLibrary().addFunction(f);
   }
   
   public Tag getTag(String name) {
-    Tag t = tagLibrary.getTag(name);
+    Tag t = tagLibrary == null ? null : tagLibrary.getTag(name);
     if(t != null) {
       return t;
     }
@@ -183,7 +200,140 @@ public class Context extends ScopeMap<String, Object> {
   }
   
   public void registerTag(Tag t) {
-    tagLibrary.addTag(t);
+    getOrCreateTagLibrary().addTag(t);
+  }
+  
+  /**
+   * The shared library accessors below return the root context's library when no scope between
+   * it and this one registers items of its own, and null otherwise. Lookups made through a shared
+   * library may be kept for as long as that library's version doesn't change. The answer is kept
+   * by each context, and by its parents, until a scope below a root registers items of its own.
+   */
+  public ExpTestLibrary getSharedExpTestLibrary() {
+    return parent == null ? expTestLibrary : getSharedLibraries().expTestLibrary;
+  }
+  
+  public FilterLibrary getSharedFilterLibrary() {
+    return parent == null ? filterLibrary : getSharedLibraries().filterLibrary;
+  }
+  
+  public FunctionLibrary getSharedFunctionLibrary() {
+    return parent == null ? functionLibrary : getSharedLibraries().functionLibrary;
+  }
+  
+  public TagLibrary getSharedTagLibrary() {
+    return parent == null ? tagLibrary : getSharedLibraries().tagLibrary;
+  }
+  
+  private SharedLibraries getSharedLibraries() {
+    long generation = SCOPED_LIBRARIES.get();
+    SharedLibraries shared = sharedLibraries;
+    if(shared == null || shared.generation != generation) {
+      shared = new SharedLibraries(generation,
+          expTestLibrary == null ? parent.getSharedExpTestLibrary() : null,
+          filterLibrary == null ? parent.getSharedFilterLibrary() : null,
+          functionLibrary == null ? parent.getSharedFunctionLibrary() : null,
+          tagLibrary == null ? parent.getSharedTagLibrary() : null);
+      sharedLibraries = shared;
+    }
+    return shared;
+  }
+  
+  /**
+   * Copy the variables and global macros visible from this context into a new scope of the root
+   * context, so that a template can be rendered with them on another thread while this context
+   * carries on being used.
+   * 
+   * @return the copy, or null if some scope below the root registers filters, functions, tests or
+   *   tags of its own, which aren't copied
+   */
+  @SuppressWarnings("unchecked")
+  public Context snapshot() {
+    Context root = this;
+    while(root.parent != null) {
+      if(root.expTestLibrary != null || root.filterLibrary != null || root.functionLibrary != null || root.tagLibrary != null) {
+        return null;
+      }
+      root = root.parent;
+    }
+    
+    Context snapshot = new Context(root);
+    Map<String, Object> bindings = snapshot.getScope();
+    Map<String, MacroFunction> macros = new HashMap<String, MacroFunction>();
+    
+    for(Context c = this; c != root; c = c.parent) {
+      for(Map.Entry<String, Object> entry : c.getScope().entrySet()) {
+        if(GLOBAL_MACROS_SCOPE_KEY.equals(entry.getKey())) {
+          for(Map.Entry<String, MacroFunction> macro : ((Map<String, MacroFunction>) entry.getValue()).entrySet()) {
+            if(!macros.containsKey(macro.getKey())) {
+              macros.put(macro.getKey(), macro.getValue());
+            }
+          }
+        }
+        else if(entry.getValue() != null && !bindings.containsKey(entry.getKey())) {
+          bindings.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    
+    if(!macros.isEmpty()) {
+      bindings.put(GLOBAL_MACROS_SCOPE_KEY, macros);
+    }
+    
+    return snapshot;
+  }
+  
+  private ExpTestLibrary getOrCreateExpTestLibrary() {
+    if(expTestLibrary == null) {
+      expTestLibrary = new ExpTestLibrary(false);
+      SCOPED_LIBRARIES.incrementAndGet();
+    }
+    return expTestLibrary;
+  }
+  
+  private FilterLibrary getOrCreateFilterLibrary() {
+    if(filterLibrary == null) {
+      filterLibrary = new FilterLibrary(false);
+      SCOPED_LIBRARIES.incrementAndGet();
+    }
+    return filterLibrary;
+  }
+  
+  private FunctionLibrary getOrCreateFunctionLibrary() {
+    if(functionLibrary == null) {
+      functionLibrary = new FunctionLibrary(false);
+      SCOPED_LIBRARIES.incrementAndGet();
+    }
+    return functionLibrary;
+  }
+  
+  private TagLibrary getOrCreateTagLibrary() {
+    if(tagLibrary == null) {
+      tagLibrary = new TagLibrary(false);
+      SCOPED_LIBRARIES.incrementAndGet();
+    }
+    return tagLibrary;
+  }
+  
+  /**
+   * The shared libraries of a scope below the root, as resolved while the count of scoped libraries
+   * was the given generation.
+   */
+  private static final class SharedLibraries {
+    private final long generation;
+    private final ExpTestLibrary expTestLibrary;
+    private final FilterLibrary filterLibrary;
+    private final FunctionLibrary functionLibrary;
+    private final TagLibrary tagLibrary;
+    
+    SharedLibraries(long generation, ExpTestLibrary expTestLibrary, FilterLibrary filterLibrary,
+        FunctionLibrary functionLibrary, TagLibrary tagLibrary) {
+      this.generation = generation;
+      this.expTestLibrary = expTestLibrary;
+      this.filterLibrary = filterLibrary;
+      this.functionLibrary = functionLibrary;
+      this.tagLibrary = tagLibrary;
+    }
   }
   
 }
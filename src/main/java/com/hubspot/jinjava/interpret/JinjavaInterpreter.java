@@ -18,34 +18,54 @@ package com.hubspot.jinjava.interpret;
 import static com.hubspot.jinjava.util.Logging.ENGINE_LOG;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.UUID;
+import java.util.concurrent.Future;
 
 import javax.el.ELContext;
 import javax.el.ExpressionFactory;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.hubspot.jinjava.Jinjava;
 import com.hubspot.jinjava.JinjavaConfig;
+import com.hubspot.jinjava.Template;
+import com.hubspot.jinjava.el.CompiledExpression;
 import com.hubspot.jinjava.el.ExpressionResolver;
 import com.hubspot.jinjava.el.JinjavaELContext;
 import com.hubspot.jinjava.el.JinjavaInterpreterResolver;
+import com.hubspot.jinjava.el.MacroFunctionMapper;
+import com.hubspot.jinjava.interpret.TemplateError.ErrorReason;
+import com.hubspot.jinjava.interpret.TemplateError.ErrorType;
 import com.hubspot.jinjava.lib.fn.ELFunctionDefinition;
+import com.hubspot.jinjava.lib.fn.FunctionLibrary;
+import com.hubspot.jinjava.objects.PyWrapperCache;
 import com.hubspot.jinjava.parse.TokenParser;
 import com.hubspot.jinjava.tree.Node;
 import com.hubspot.jinjava.tree.NodeList;
+import com.hubspot.jinjava.tree.RootNode;
+import com.hubspot.jinjava.tree.TagNode;
 import com.hubspot.jinjava.tree.TreeParser;
+import com.hubspot.jinjava.tree.output.OutputList;
+import com.hubspot.jinjava.tree.output.OutputList.BlockPlaceholder;
 import com.hubspot.jinjava.util.Objects;
 import com.hubspot.jinjava.util.Variable;
 import com.hubspot.jinjava.util.JinjavaPropertyNotResolvedException;
 import com.hubspot.jinjava.util.WhitespaceUtils;
 
+import de.odysseus.el.misc.TypeConverter;
 import de.odysseus.el.util.SimpleContext;
 
 public class JinjavaInterpreter {
@@ -59,26 +79,79 @@ public class JinjavaInterpreter {
   private final ExpressionResolver expressionResolver;
   private final Jinjava application;
   
+  private boolean textBlockStubs = false;
+  private String blockStubPrefix;
+  private final List<String> blockStubNames = new ArrayList<String>();
   private int lineNumber = -1;
-  private final List<TemplateError> errors = new LinkedList<TemplateError>();
+  private final List<TemplateError> errors = new ArrayList<TemplateError>();
+  private final Set<UnknownPropertyKey> reportedUnknownProperties = new HashSet<UnknownPropertyKey>();
+  private int nonFatalErrors = 0;
+  private boolean errorsTruncated = false;
+  private final PyWrapperCache wrapperCache = new PyWrapperCache();
+  private Map<Node, Future<String>> pendingRenders;
+  private final RenderProfiler profiler;
   
   
   public JinjavaInterpreter(Jinjava application, Context context, JinjavaConfig renderConfig) {
+    this(application, context, renderConfig, renderConfig.isProfilingEnabled() ? new RenderProfiler() : null);
+  }
+
+  public JinjavaInterpreter(JinjavaInterpreter orig) {
+    this(orig.application, new Context(orig.context), orig.config, orig.profiler);
+  }
+  
+  public JinjavaInterpreter(JinjavaInterpreter orig, Context context) {
+    this(orig.application, context, orig.config, orig.profiler);
+  }
+  
+  private JinjavaInterpreter(Jinjava application, Context context, JinjavaConfig renderConfig, RenderProfiler profiler) {
     this.context = context;
     this.config = renderConfig;
     this.application = application;
+    this.profiler = profiler;
     
     this.expressionResolver = new ExpressionResolver(this, createELContext());
   }
-
-  public JinjavaInterpreter(JinjavaInterpreter orig) {
-    this(orig.application, new Context(orig.context), orig.config);
+  
+  /**
+   * @return the profiler recording this render, shared with the interpreters made from this one, or
+   *   null if profiling isn't enabled in the render config
+   * @see JinjavaConfig#isProfilingEnabled()
+   */
+  public RenderProfiler getProfiler() {
+    return profiler;
+  }
+  
+  /**
+   * @return the python wrappers made for values read during this interpreter's render
+   */
+  public PyWrapperCache getWrapperCache() {
+    return wrapperCache;
   }
   
   public JinjavaConfig getConfiguration() {
     return config;
   }
 
+  /**
+   * Record the output of a node whose rendering was started ahead of its turn, e.g. an include
+   * rendered on another thread, to be taken once the node itself is rendered.
+   */
+  public void addPendingRender(Node node, Future<String> output) {
+    if(pendingRenders == null) {
+      pendingRenders = new IdentityHashMap<Node, Future<String>>();
+    }
+    pendingRenders.put(node, output);
+  }
+  
+  /**
+   * @return the output recorded for the given node by {@link #addPendingRender(Node, Future)},
+   *   which is then forgotten, or null if there is none
+   */
+  public Future<String> takePendingRender(Node node) {
+    return pendingRenders == null ? null : pendingRenders.remove(node);
+  }
+
   public void addExtendParentRoot(Node root) {
     extendParentRoots.add(root);
   }
@@ -98,8 +171,12 @@ public class JinjavaInterpreter {
     }
   }
   
+  /**
+   * Parse the given template. The parsed tree refers to the template's text rather than copying it,
+   * copying out only the parts which are needed as strings.
+   */
   public Node parse(String template) {
-    return TreeParser.parseTree(new TokenParser(this, template));
+    return TreeParser.parseTree(new TokenParser(this, template, true));
   }
   
   public String renderString(String template) {
@@ -114,7 +191,12 @@ public class JinjavaInterpreter {
         return template;
       } else {
         context.put("hs_render_depth", depth + 1);
-        return render(parse(template), false);
+        
+        Template nested = application.compileNested(template);
+        for(TemplateError error : nested.getErrors()) {
+          addError(error);
+        }
+        return render(nested.getRoot(), false);
       }
     } finally {
       context.put("hs_render_depth", depth);
@@ -131,66 +213,250 @@ public class JinjavaInterpreter {
   }
   
   public String render(Node root, boolean processExtendRoots) {
-    StringBuilder buff = new StringBuilder();
-
-    for (Node node : root.getChildren()) {
-      buff.append(node.render(this));
-    } 
-
-    // render all extend parents, keeping the last as the root output
-    if(processExtendRoots) {
-      while(!extendParentRoots.isEmpty()) {
-        Node parentRoot = extendParentRoots.removeFirst();
-        buff = new StringBuilder();
-        
-        for(Node node : parentRoot.getChildren()) {
-          buff.append(node.render(this));
+    StringBuilder result = new StringBuilder();
+    try {
+      render(root, processExtendRoots, result);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    return result.toString();
+  }
+  
+  /**
+   * Render the given tree, writing output to the given appendable as it is produced. Templates
+   * using block or extends tags are rendered in memory first, since block contents are only
+   * known once the whole template has been rendered.
+   * 
+   * @param root root of parsed template
+   * @param out destination for rendered output
+   * @throws IOException if writing to out fails
+   */
+  public void render(Node root, Appendable out) throws IOException {
+    boolean inheritance = root instanceof RootNode ? ((RootNode) root).usesInheritance() : usesInheritance(root);
+    if(inheritance) {
+      render(root, true, out);
+      return;
+    }
+    
+    Appendable streamed = streamTo(out);
+    for(Node node : root.getChildren()) {
+      node.render(this, streamed);
+    }
+  }
+  
+  /**
+   * Wrap a destination for output streamed from a template without block or extends tags. Such a
+   * template may still call a macro from an imported template using blocks, whose body leaves a
+   * reference to each block in its text; these are replaced with the block's content as the text
+   * is written, using the blocks known at that point.
+   * 
+   * @param out destination for rendered output
+   * @return an appendable writing to out
+   */
+  public Appendable streamTo(Appendable out) {
+    return new BlockStubResolvingAppendable(out);
+  }
+  
+  private void render(Node root, boolean processExtendRoots, Appendable out) throws IOException {
+    boolean outerBlockStubs = textBlockStubs;
+    textBlockStubs = false;
+    
+    try {
+      OutputList output = new OutputList();
+      renderChildren(root, output);
+      
+      // render all extend parents, keeping the last as the root output
+      if(processExtendRoots) {
+        while(!extendParentRoots.isEmpty()) {
+          Node parentRoot = extendParentRoots.removeFirst();
+          output = new OutputList();
+          renderChildren(parentRoot, output);
         }
       }
+      
+      if(!output.hasBlockPlaceholders() && !textBlockStubs) {
+        writeSegments(output, out);
+        return;
+      }
+      
+      StringBuilder resolved = new StringBuilder();
+      resolveBlocks(output, resolved);
+      
+      if(textBlockStubs) {
+        out.append(resolveBlockStubs(resolved));
+      }
+      else {
+        out.append(resolved);
+      }
+    }
+    finally {
+      textBlockStubs = outerBlockStubs;
+    }
+  }
+  
+  private void renderChildren(Node parent, Appendable out) throws IOException {
+    for(Node node : parent.getChildren()) {
+      node.render(this, out);
+    }
+  }
+  
+  /**
+   * @return whether the tree contains block or extends tags, whose output is only known once the
+   *   whole template has been rendered
+   */
+  public static boolean usesInheritance(Node node) {
+    for(Node child : node.getChildren()) {
+      if(child instanceof TagNode && (BLOCK_TAG.equals(child.getName()) || EXTENDS_TAG.equals(child.getName()))) {
+        return true;
+      }
+      if(usesInheritance(child)) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Append a reference to the named block to the given output, to be replaced by the block's final
+   * content once the template and all templates it extends have been rendered.
+   */
+  public void appendBlockReference(String blockName, Appendable out) throws IOException {
+    if(out instanceof OutputList) {
+      ((OutputList) out).addBlockPlaceholder(blockName);
+    }
+    else {
+      // rendered into an intermediate string (e.g. a macro body, whose result is a value passed
+      // through expressions and filters), fall back to a marker in the text
+      textBlockStubs = true;
+      int id = blockStubNames.indexOf(blockName);
+      if(id < 0) {
+        id = blockStubNames.size();
+        blockStubNames.add(blockName);
+      }
+      out.append(getBlockStubPrefix()).append(Integer.toString(id)).append(BLOCK_STUB_END);
+    }
+  }
+  
+  /**
+   * Markers start with a random string chosen once per interpreter, so that neither template data
+   * nor markers left by another interpreter can be taken for a reference made by this one.
+   */
+  private String getBlockStubPrefix() {
+    if(blockStubPrefix == null) {
+      blockStubPrefix = BLOCK_STUB_START + UUID.randomUUID() + BLOCK_STUB_END;
+    }
+    return blockStubPrefix;
+  }
+  
+  private void resolveBlocks(OutputList output, Appendable out) throws IOException {
+    for(Object segment : output.getSegments()) {
+      if(segment instanceof BlockPlaceholder) {
+        resolveBlock(((BlockPlaceholder) segment).getBlockName(), out);
+      }
+      else {
+        out.append((CharSequence) segment);
+      }
     }
+  }
+  
+  private void resolveBlock(String blockName, Appendable out) throws IOException {
+    Collection<NodeList> blockChain = blocks.get(blockName);
+    NodeList block = Iterables.getFirst(blockChain, null);
     
-    return resolveBlockStubs(buff);
+    if(block != null) {
+      NodeList superBlock = Iterables.get(blockChain, 1, null);
+      context.put("__superbl0ck__", superBlock);
+      
+      OutputList blockOutput = new OutputList();
+      for(Node child : block) {
+        child.render(this, blockOutput);
+      }
+      
+      resolveBlocks(blockOutput, out);
+      
+      context.remove("__superbl0ck__");
+    }
+  }
+  
+  private static void writeSegments(OutputList output, Appendable out) throws IOException {
+    for(Object segment : output.getSegments()) {
+      out.append((CharSequence) segment);
+    }
   }
   
   String resolveBlockStubs(CharSequence content) {
+    if(blockStubPrefix == null) {
+      return content.toString();
+    }
+    
     StringBuilder result = new StringBuilder(content.length() + 256);
-    int pos = 0, start, end, stubStartLen = BLOCK_STUB_START.length();
+    int pos = 0, start, end, prefixLen = blockStubPrefix.length();
     
-    while((start = StringUtils.indexOf(content, BLOCK_STUB_START, pos)) != -1) {
-      end = StringUtils.indexOf(content, BLOCK_STUB_END, start + stubStartLen);
-
-      String blockName = content.subSequence(start + stubStartLen, end).toString();
+    while((start = StringUtils.indexOf(content, blockStubPrefix, pos)) != -1) {
+      end = StringUtils.indexOf(content, BLOCK_STUB_END, start + prefixLen);
+      String blockName = end == -1 ? null : getBlockStubName(content.subSequence(start + prefixLen, end));
       
-      String blockValue = "";
-      
-      Collection<NodeList> blockChain = blocks.get(blockName);
-      NodeList block = Iterables.getFirst(blockChain, null);
+      if(blockName == null) {
+        // cut short or altered after being written, e.g. by a filter; left as it is
+        result.append(content, pos, start + prefixLen);
+        pos = start + prefixLen;
+        continue;
+      }
       
-      if(block != null) {
-        NodeList superBlock = Iterables.get(blockChain, 1, null);
-        context.put("__superbl0ck__", superBlock);
-        
-        StringBuilder blockValueBuilder = new StringBuilder();
-        
-        for(Node child : block) {
-          blockValueBuilder.append(child.render(this));
-        }
-        
-        blockValue = resolveBlockStubs(blockValueBuilder);
-        
-        context.remove("__superbl0ck__");
+      StringBuilder blockValue = new StringBuilder();
+      try {
+        resolveBlock(blockName, blockValue);
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
       }
       
-      result.append(content.subSequence(pos, start));
-      result.append(blockValue);
-      pos = end + 1;
+      result.append(content, pos, start);
+      result.append(resolveBlockStubs(blockValue));
+      pos = end + BLOCK_STUB_END.length();
     }
     
-    result.append(content.subSequence(pos, content.length()));
+    result.append(content, pos, content.length());
     
     return result.toString();
   }
   
+  private String getBlockStubName(CharSequence id) {
+    if(id.length() == 0 || id.length() > 9 || !StringUtils.isNumeric(id)) {
+      return null;
+    }
+    int index = Integer.parseInt(id.toString());
+    return index < blockStubNames.size() ? blockStubNames.get(index) : null;
+  }
+  
+  private class BlockStubResolvingAppendable implements Appendable {
+    private final Appendable out;
+    
+    BlockStubResolvingAppendable(Appendable out) {
+      this.out = out;
+    }
+    
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+      // references are only ever written within text rendered in memory, so never span two appends
+      if(textBlockStubs && csq != null && StringUtils.indexOf(csq, blockStubPrefix) != -1) {
+        csq = resolveBlockStubs(csq);
+      }
+      out.append(csq);
+      return this;
+    }
+    
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+      return append(csq == null ? "null" : csq.subSequence(start, end));
+    }
+    
+    @Override
+    public Appendable append(char c) throws IOException {
+      out.append(c);
+      return this;
+    }
+  }
+  
   /**
    * Resolve a variable from the interpreter context, returning null if not found. This method 
    * updates the template error accumulators when a variable is not found.
@@ -211,7 +477,7 @@ public class JinjavaInterpreter {
       obj = var.resolve(obj);
       }
       catch(JinjavaPropertyNotResolvedException e) {
-        addError(TemplateError.fromUnknownProperty(obj, variable, lineNumber));
+        addUnknownPropertyError(obj, variable, lineNumber);
       }
     }
     return obj;
@@ -262,6 +528,21 @@ public class JinjavaInterpreter {
     return application.getResourceLocator().getString(resource, config.getCharset(), this);
   }
   
+  /**
+   * Load and parse the named resource, as for an include or extends. The returned tree may be shared
+   * with other renders and must not be modified; any errors found while parsing it are added to
+   * this interpreter.
+   * 
+   * @see Jinjava#getTemplate(String, JinjavaInterpreter)
+   */
+  public Node parseResource(String resource) throws IOException {
+    Template template = application.getTemplate(resource, this);
+    for(TemplateError error : template.getErrors()) {
+      addError(error);
+    }
+    return template.getRoot();
+  }
+  
   public JinjavaConfig getConfig() {
     return config;
   }
@@ -270,11 +551,36 @@ public class JinjavaInterpreter {
     return application.getExpressionFactory();
   }
   
+  public TypeConverter getTypeConverter() {
+    return application.getTypeConverter();
+  }
+  
+  /**
+   * Parse an EL expression into a form which can be resolved repeatedly without being re-parsed.
+   * Syntax errors are not reported here, but each time the compiled expression is resolved.
+   * 
+   * @param expr EL expression, without delimiters
+   * @return compiled expression, safe to share between interpreters of the same application
+   */
+  public CompiledExpression compileELExpression(String expr) {
+    return CompiledExpression.compile(expr, application.getExpressionTreeStore());
+  }
+  
   public Object resolveELExpression(String expr, int lineNumber) {
     return expressionResolver.resolve(expr, lineNumber);
   }
+  
+  public Object resolveELExpression(CompiledExpression expr, int lineNumber) {
+    return expressionResolver.resolve(expr, lineNumber);
+  }
 
   private ELContext createELContext() {
+    // functions registered in the root context only are shared by every interpreter using it
+    FunctionLibrary functions = context.getSharedFunctionLibrary();
+    if(functions != null) {
+      return new JinjavaELContext(new JinjavaInterpreterResolver(this), new MacroFunctionMapper(functions.getMethods()));
+    }
+    
     SimpleContext expContext = new JinjavaELContext(new JinjavaInterpreterResolver(this));
 
     for(ELFunctionDefinition fn : context.getAllFunctions()) {
@@ -284,10 +590,48 @@ public class JinjavaInterpreter {
     return expContext;
   }
   
+  /**
+   * Add an error to the result of this render. Fatal errors are always kept, as they make the render
+   * fail. An unknown property is only reported once per line, and once {@link JinjavaConfig#getMaxErrors()}
+   * other errors have been added, further ones are dropped.
+   */
   public void addError(TemplateError templateError) {
+    if(templateError.getSeverity() == ErrorType.FATAL) {
+      errors.add(templateError);
+      return;
+    }
+    
+    if(templateError.getReason() == ErrorReason.UNKNOWN && StringUtils.isNotEmpty(templateError.getFieldName())) {
+      if(!reportedUnknownProperties.add(new UnknownPropertyKey(templateError.getLineno(), templateError.getFieldName()))) {
+        return;
+      }
+    }
+    
+    if(nonFatalErrors >= config.getMaxErrors()) {
+      if(!errorsTruncated) {
+        errorsTruncated = true;
+        errors.add(new TemplateError(ErrorType.WARNING, ErrorReason.OTHER,
+            "Too many errors; only the first " + config.getMaxErrors() + " were kept", null, templateError.getLineno(), null));
+      }
+      return;
+    }
+    
+    nonFatalErrors++;
     this.errors.add(templateError);
   }
   
+  /**
+   * Report a property which couldn't be resolved on the given object. The error, whose message
+   * includes the object's string form, is only made if it would be kept.
+   */
+  public void addUnknownPropertyError(Object base, String property, int lineNumber) {
+    if(errorsTruncated || (StringUtils.isNotEmpty(property)
+        && reportedUnknownProperties.contains(new UnknownPropertyKey(lineNumber, property)))) {
+      return;
+    }
+    addError(TemplateError.fromUnknownProperty(base, property, lineNumber));
+  }
+  
   public List<TemplateError> getErrors() {
     return errors;
   }
@@ -327,7 +671,34 @@ public class JinjavaInterpreter {
 
   public static final String INSERT_FLAG = "'IS\"INSERT";
   
+  private static final String BLOCK_TAG = "block";
+  private static final String EXTENDS_TAG = "extends";
+  
   public static final String BLOCK_STUB_START = "___bl0ck___~";
   public static final String BLOCK_STUB_END = "~";
-  
+
+  private static final class UnknownPropertyKey {
+    private final Integer lineno;
+    private final String fieldName;
+
+    UnknownPropertyKey(Integer lineno, String fieldName) {
+      this.lineno = lineno;
+      this.fieldName = fieldName;
+    }
+
+    @Override
+    public int hashCode() {
+      return (lineno == null ? 0 : lineno.hashCode()) * 31 + fieldName.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(!(obj instanceof UnknownPropertyKey)) {
+        return false;
+      }
+      UnknownPropertyKey that = (UnknownPropertyKey) obj;
+      return Objects.equals(lineno, that.lineno) && fieldName.equals(that.fieldName);
+    }
+  }
+
 }
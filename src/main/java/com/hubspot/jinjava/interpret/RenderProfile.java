@@ -0,0 +1,189 @@
+package com.hubspot.jinjava.interpret;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.hubspot.jinjava.interpret.RenderProfiler.Kind;
+
+/**
+ * The time taken by, and number of invocations of, each part of a profiled render, as recorded by a
+ * {@link RenderProfiler}. The tree of calls has a root standing for the whole render, taking as long
+ * as its top level parts; time spent outside of any profiled part, such as writing text, isn't counted.
+ */
+public final class RenderProfile {
+
+  private static final Comparator<Entry> BY_SELF_TIME = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry a, Entry b) {
+      return a.selfNanos < b.selfNanos ? 1 : a.selfNanos > b.selfNanos ? -1 : 0;
+    }
+  };
+
+  private final Entry root;
+  private List<Entry> aggregates;
+
+  RenderProfile(Entry root) {
+    this.root = root;
+  }
+
+  /**
+   * @return the root of the tree of calls, whose children are the top level parts of the template
+   */
+  public Entry getRoot() {
+    return root;
+  }
+
+  /**
+   * @return one entry for each part of the template, adding up its invocations from anywhere in the
+   *   tree of calls, with the part taking the most time of its own first. Entries have no children,
+   *   and the total time of a part which ends up invoking itself, e.g. a recursive macro, counts the
+   *   nested invocations more than once.
+   */
+  public List<Entry> getAggregates() {
+    if(aggregates == null) {
+      Map<String, Entry> byPart = new LinkedHashMap<String, Entry>();
+      for(Entry child : root.children) {
+        aggregate(child, byPart);
+      }
+      List<Entry> sorted = new ArrayList<Entry>(byPart.values());
+      Collections.sort(sorted, BY_SELF_TIME);
+      aggregates = Collections.unmodifiableList(sorted);
+    }
+    return aggregates;
+  }
+
+  /**
+   * @return the aggregate entries for the given kind of part, with the part taking the most time of
+   *   its own first
+   */
+  public List<Entry> getAggregates(Kind kind) {
+    List<Entry> entries = new ArrayList<Entry>();
+    for(Entry entry : getAggregates()) {
+      if(entry.kind == kind) {
+        entries.add(entry);
+      }
+    }
+    return entries;
+  }
+
+  private static void aggregate(Entry entry, Map<String, Entry> byPart) {
+    String key = entry.kind + ":" + entry.lineNumber + ":" + entry.name;
+    Entry sum = byPart.get(key);
+    byPart.put(key, sum == null ? new Entry(entry.kind, entry.name, entry.lineNumber, entry.count, entry.totalNanos,
+        entry.selfNanos, ImmutableList.<Entry> of()) : sum.plus(entry));
+    for(Entry child : entry.children) {
+      aggregate(child, byPart);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder out = new StringBuilder();
+    for(Entry child : root.children) {
+      child.appendTo(out, 0);
+    }
+    return out.toString();
+  }
+
+  /**
+   * A part of the template, with the number of times it was invoked and the time they took.
+   */
+  public static final class Entry {
+    private final Kind kind;
+    private final String name;
+    private final int lineNumber;
+    private final int count;
+    private final long totalNanos;
+    private final long selfNanos;
+    private final List<Entry> children;
+
+    Entry(Kind kind, String name, int lineNumber, int count, long totalNanos, long selfNanos, List<Entry> children) {
+      this.kind = kind;
+      this.name = name;
+      this.lineNumber = lineNumber;
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.selfNanos = selfNanos;
+      this.children = ImmutableList.copyOf(children);
+    }
+
+    /**
+     * @return the kind of part, or null for the root
+     */
+    public Kind getKind() {
+      return kind;
+    }
+
+    /**
+     * @return the tag name, the printed expression, the filter name or the template name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the line of the tag or expression in its template, or -1 for filters and templates
+     */
+    public int getLineNumber() {
+      return lineNumber;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    /**
+     * @return the time taken by all invocations, including the parts they invoked
+     */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * @return the time taken by all invocations, less the time taken by the parts they invoked
+     */
+    public long getSelfNanos() {
+      return selfNanos;
+    }
+
+    /**
+     * @return the parts invoked by this part, in the order first invoked
+     */
+    public List<Entry> getChildren() {
+      return children;
+    }
+
+    Entry plus(Entry other) {
+      return new Entry(kind, name, lineNumber, count + other.count, totalNanos + other.totalNanos,
+          selfNanos + other.selfNanos, children);
+    }
+
+    private void appendTo(StringBuilder out, int depth) {
+      for(int i = 0; i < depth; i++) {
+        out.append("  ");
+      }
+      out.append(kind).append(' ').append(name);
+      if(lineNumber >= 0) {
+        out.append(" (line ").append(lineNumber).append(')');
+      }
+      out.append(": ").append(count).append(" in ").append(totalNanos / 1000).append("us, ")
+          .append(selfNanos / 1000).append("us self\n");
+      for(Entry child : children) {
+        child.appendTo(out, depth + 1);
+      }
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder out = new StringBuilder();
+      appendTo(out, 0);
+      return out.toString().trim();
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package com.hubspot.jinjava.interpret;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Objects;
+
+/**
+ * Records the time taken by, and the number of invocations of, each part of a render: tags,
+ * printed expressions, filters and included or imported templates. Invocations are recorded as a
+ * tree of calls, in which repeated invocations of a part from the same place, e.g. in each pass of
+ * a loop, are counted together.
+ *
+ * A profiler is only made for renders whose config has {@link com.hubspot.jinjava.JinjavaConfig#isProfilingEnabled()
+ * profiling enabled}; otherwise {@link JinjavaInterpreter#getProfiler()} is null, and the parts of a
+ * render skip profiling after checking for it. A profiler is shared by the interpreters of one
+ * render, and isn't safe for use from several threads.
+ */
+public final class RenderProfiler {
+
+  public enum Kind {
+    TAG, EXPRESSION, FILTER, RESOURCE
+  }
+
+  private final Frame root = new Frame(null, null, null, -1);
+  private Frame current = root;
+
+  /**
+   * Start timing an invocation of the given part of the template, within the invocation being timed.
+   * Each call must be matched by a call to {@link #stop()}, e.g. in a finally block.
+   *
+   * @param lineNumber line of the part in its template, or -1 if it has none
+   */
+  public void start(Kind kind, String name, int lineNumber) {
+    Frame frame = current.child(kind, name, lineNumber);
+    frame.count++;
+    frame.startedAt = System.nanoTime();
+    current = frame;
+  }
+
+  /**
+   * Stop timing the invocation started last.
+   */
+  public void stop() {
+    if(current == root) {
+      throw new IllegalStateException("No invocation is being timed");
+    }
+    current.nanos += System.nanoTime() - current.startedAt;
+    current = current.parent;
+  }
+
+  /**
+   * @return the invocations recorded so far; invocations still being timed are counted, but their
+   *   time isn't
+   */
+  public RenderProfile getProfile() {
+    return new RenderProfile(root.toEntry());
+  }
+
+  private static final class Frame {
+    private final Frame parent;
+    private final Kind kind;
+    private final String name;
+    private final int lineNumber;
+    private final List<Frame> children = new ArrayList<Frame>(2);
+    private int count;
+    private long nanos;
+    private long startedAt;
+
+    Frame(Frame parent, Kind kind, String name, int lineNumber) {
+      this.parent = parent;
+      this.kind = kind;
+      this.name = name;
+      this.lineNumber = lineNumber;
+    }
+
+    Frame child(Kind kind, String name, int lineNumber) {
+      for(int i = 0; i < children.size(); i++) {
+        Frame child = children.get(i);
+        if(child.kind == kind && child.lineNumber == lineNumber && Objects.equal(child.name, name)) {
+          return child;
+        }
+      }
+      Frame child = new Frame(this, kind, name, lineNumber);
+      children.add(child);
+      return child;
+    }
+
+    RenderProfile.Entry toEntry() {
+      List<RenderProfile.Entry> entries = new ArrayList<RenderProfile.Entry>(children.size());
+      long childNanos = 0;
+      for(Frame child : children) {
+        RenderProfile.Entry entry = child.toEntry();
+        entries.add(entry);
+        childNanos += entry.getTotalNanos();
+      }
+      // the root stands for the whole render, which takes as long as its parts
+      long total = parent == null ? childNanos : nanos;
+      return new RenderProfile.Entry(kind, name, lineNumber, count, total, Math.max(0, total - childNanos), entries);
+    }
+  }
+
+}
@@ -10,23 +10,35 @@ public class RenderResult {
   private final String output;
   private final Context context;
   private final List<TemplateError> errors;
+  private final RenderProfile profile;
   
   public RenderResult(String output, Context context, List<TemplateError> errors) {
+    this(output, context, errors, null);
+  }
+  
+  public RenderResult(String output, Context context, List<TemplateError> errors, RenderProfile profile) {
     this.output = output;
     this.context = context;
     this.errors = errors;
+    this.profile = profile;
   }
   
   public RenderResult(TemplateError fromException, Context context, List<TemplateError> errors) {
+    this(fromException, context, errors, null);
+  }
+  
+  public RenderResult(TemplateError fromException, Context context, List<TemplateError> errors, RenderProfile profile) {
     this.output = "";
     this.context = context;
     this.errors = ImmutableList.<TemplateError> builder().add(fromException).addAll(errors).build();
+    this.profile = profile;
   }
   
   public RenderResult(String result) {
     this.output = result;
     this.context = null;
     this.errors = Collections.emptyList();
+    this.profile = null;
   }
 
   public boolean hasErrors() {
@@ -45,8 +57,16 @@ public class RenderResult {
     return output;
   }
   
+  /**
+   * @return the time taken by each part of the template, or null if the render wasn't profiled
+   * @see com.hubspot.jinjava.JinjavaConfig#isProfilingEnabled()
+   */
+  public RenderProfile getProfile() {
+    return profile;
+  }
+  
   public RenderResult withOutput(String newOutput) {
-    return new RenderResult(newOutput, getContext(), getErrors());
+    return new RenderResult(newOutput, getContext(), getErrors(), getProfile());
   }
 
 }
@@ -0,0 +1,49 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.lib;
+
+/**
+ * The result of looking up a name in a shared library, kept by parse tree nodes so that the
+ * lookup needn't be repeated on every render. A binding stays current until something else is
+ * registered in the library it was made against.
+ *
+ * @see com.hubspot.jinjava.interpret.Context#getSharedFilterLibrary()
+ */
+public final class LibraryBinding<T> {
+
+  private final SimpleLibrary<?> library;
+  private final long version;
+  private final T value;
+
+  public LibraryBinding(SimpleLibrary<?> library, long version, T value) {
+    this.library = library;
+    this.version = version;
+    this.value = value;
+  }
+
+  /**
+   * @return true if this binding was made against the given library, and nothing has been
+   *   registered in it since
+   */
+  public boolean isCurrent(SimpleLibrary<?> library) {
+    return library != null && this.library == library && version == library.getVersion();
+  }
+
+  public T getValue() {
+    return value;
+  }
+
+}
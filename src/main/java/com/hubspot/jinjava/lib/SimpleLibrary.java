@@ -17,17 +17,26 @@ package com.hubspot.jinjava.lib;
 
 import static com.hubspot.jinjava.util.Logging.ENGINE_LOG;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.google.common.base.Throwables;
 
+/**
+ * A named set of items, such as filters or tags. Registering an item replaces the library's map
+ * with an updated copy rather than changing it, so that a library may be shared between threads and
+ * added to at any time, while lookups are never locked and always see a complete map.
+ */
 public abstract class SimpleLibrary<T extends Importable> {
 
-  private Map<String, T> lib = new HashMap<String, T>();
+  private volatile Map<String, T> lib = Collections.emptyMap();
+  private volatile long version;
 
   protected SimpleLibrary(boolean registerDefaults) {
     if(registerDefaults) {
@@ -43,24 +52,47 @@ public abstract class SimpleLibrary<T extends Importable> {
 
   //@SafeVarargs
   public final void registerClasses(Class<? extends T>... itemClass) {
+    List<T> items = new ArrayList<T>(itemClass.length);
     try {
       for(Class<? extends T> c : itemClass) {
-        T instance = c.newInstance();
-        register(instance);
+        items.add(c.newInstance());
       }
     }
     catch(Exception e) {
       throw Throwables.propagate(e);
     }
+    
+    registerAll(items);
   }
   
   public void register(T obj) {
-    lib.put(obj.getName(), obj);
-    ENGINE_LOG.debug(getClass().getSimpleName() + ": Registered " + obj.getName());
+    registerAll(Collections.singletonList(obj));
+  }
+  
+  private synchronized void registerAll(Collection<T> items) {
+    Map<String, T> updated = new HashMap<String, T>(lib);
+    for(T obj : items) {
+      updated.put(obj.getName(), obj);
+      ENGINE_LOG.debug(getClass().getSimpleName() + ": Registered " + obj.getName());
+    }
+    
+    // publish the map before the version, so that anything reading the new version sees the new map
+    lib = updated;
+    version++;
+  }
+
+  /**
+   * @return a number which changes each time an item is registered in this library
+   */
+  public long getVersion() {
+    return version;
   }
 
+  /**
+   * @return the items registered when this method was called; later registrations aren't reflected
+   */
   public Collection<T> entries() {
-    return lib.values();
+    return Collections.unmodifiableCollection(lib.values());
   }
 
 }
@@ -1,10 +1,17 @@
 package com.hubspot.jinjava.lib.fn;
 
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.hubspot.jinjava.lib.LibraryBinding;
 import com.hubspot.jinjava.lib.SimpleLibrary;
 
 public class FunctionLibrary extends SimpleLibrary<ELFunctionDefinition> {
 
+  private volatile LibraryBinding<Map<String, Method>> methods;
+
   public FunctionLibrary(boolean registerDefaults) {
     super(registerDefaults);
   }
@@ -27,5 +34,26 @@ public class FunctionLibrary extends SimpleLibrary<ELFunctionDefinition> {
   public ELFunctionDefinition getFunction(String name) {
     return fetch(name);
   }
+  
+  /**
+   * @return the methods of this library's functions, keyed by {@code namespace:localName}; the
+   *   same map is returned until another function is registered
+   */
+  public Map<String, Method> getMethods() {
+    LibraryBinding<Map<String, Method>> m = methods;
+    if(m != null && m.isCurrent(this)) {
+      return m.getValue();
+    }
+    
+    long version = getVersion();
+    ImmutableMap.Builder<String, Method> builder = ImmutableMap.builder();
+    for(ELFunctionDefinition fn : entries()) {
+      builder.put(fn.getName(), fn.getMethod());
+    }
+    
+    Map<String, Method> result = builder.build();
+    methods = new LibraryBinding<Map<String, Method>>(this, version, result);
+    return result;
+  }
 
 }
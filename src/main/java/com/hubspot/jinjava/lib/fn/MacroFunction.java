@@ -1,9 +1,11 @@
 package com.hubspot.jinjava.lib.fn;
 
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.base.Throwables;
 import com.hubspot.jinjava.el.ext.AbstractCallableMethod;
 import com.hubspot.jinjava.interpret.Context;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
@@ -64,11 +66,14 @@ public class MacroFunction extends AbstractCallableMethod {
       StringBuilder result = new StringBuilder();
       
       for(Node node : content) {
-        result.append(node.render(interpreter));
+        node.render(interpreter, result);
       }
       
       return result.toString();
     }
+    catch(IOException e) {
+      throw Throwables.propagate(e);
+    }
     finally {
       interpreter.leaveScope();
     }
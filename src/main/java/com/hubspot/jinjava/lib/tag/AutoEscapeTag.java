@@ -1,5 +1,7 @@
 package com.hubspot.jinjava.lib.tag;
 
+import java.io.IOException;
+
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 
@@ -7,7 +9,7 @@ import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.tree.Node;
 import com.hubspot.jinjava.tree.TagNode;
 
-public class AutoEscapeTag implements Tag {
+public class AutoEscapeTag extends StreamingTag {
 
   @Override
   public String getName() {
@@ -20,19 +22,15 @@ public class AutoEscapeTag implements Tag {
   }
 
   @Override
-  public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+  public void interpret(TagNode tagNode, JinjavaInterpreter interpreter, Appendable out) throws IOException {
     interpreter.enterScope();
     try {
       boolean oldEscapeFlag = BooleanUtils.toBoolean(StringUtils.trim(tagNode.getHelpers()));
       interpreter.getContext().put("autoescape", !oldEscapeFlag);
 
-      StringBuilder result = new StringBuilder();
-      
       for(Node child : tagNode.getChildren()) {
-        result.append(child.render(interpreter));
+        child.render(interpreter, out);
       }
-      
-      return result.toString();
     }
     finally {
       interpreter.leaveScope();
@@ -15,6 +15,7 @@ limitations under the License.
  **********************************************************************/
 package com.hubspot.jinjava.lib.tag;
 
+import java.io.IOException;
 import java.util.List;
 
 import com.hubspot.jinjava.interpret.InterpretException;
@@ -28,13 +29,13 @@ import com.hubspot.jinjava.util.WhitespaceUtils;
  * 
  */
 
-public class BlockTag implements Tag {
+public class BlockTag extends StreamingTag {
 
   private static final String TAGNAME = "block";
   private static final String ENDTAGNAME = "endblock";
 
   @Override
-  public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+  public void interpret(TagNode tagNode, JinjavaInterpreter interpreter, Appendable out) throws IOException {
     List<String> helper = new HelperStringTokenizer(tagNode.getHelpers()).allTokens();
     if (helper.isEmpty()) {
       throw new InterpretException("Tag 'block' expects an identifier", tagNode.getLineNumber());
@@ -43,7 +44,7 @@ public class BlockTag implements Tag {
     String blockName = WhitespaceUtils.unquote(helper.get(0));
     
     interpreter.addBlock(blockName, tagNode.getChildren());
-    return JinjavaInterpreter.BLOCK_STUB_START + blockName + JinjavaInterpreter.BLOCK_STUB_END;
+    interpreter.appendBlockReference(blockName, out);
   }
 
   @Override
@@ -3,9 +3,14 @@ package com.hubspot.jinjava.lib.tag;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.tree.TagNode;
 
-public class ElseIfTag implements Tag {
+public class ElseIfTag implements PreparedTag {
 
-  static final String ELSEIF = "elif";
+  public static final String ELSEIF = "elif";
+
+  @Override
+  public Object prepare(TagNode tagNode, JinjavaInterpreter interpreter) {
+    return interpreter.compileELExpression(tagNode.getHelpers());
+  }
 
   @Override
   public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
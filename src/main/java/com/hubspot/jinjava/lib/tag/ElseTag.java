@@ -26,7 +26,7 @@ import com.hubspot.jinjava.tree.TagNode;
  */
 public class ElseTag implements Tag {
 
-  static final String ELSE = "else";
+  public static final String ELSE = "else";
 
   @Override
   public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
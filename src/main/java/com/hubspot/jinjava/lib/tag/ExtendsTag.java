@@ -38,8 +38,7 @@ public class ExtendsTag implements Tag {
     }
     String templateFile = interpreter.resolveString(tokenizer.next(), tagNode.getLineNumber());
     try {
-      String template = interpreter.getResource(templateFile);
-      Node node = interpreter.parse(template);
+      Node node = interpreter.parseResource(templateFile);
 
       interpreter.addExtendParentRoot(node);
       return "";
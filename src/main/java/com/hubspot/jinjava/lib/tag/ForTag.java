@@ -15,15 +15,20 @@ limitations under the License.
  **********************************************************************/
 package com.hubspot.jinjava.lib.tag;
 
+import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.hubspot.jinjava.el.CompiledExpression;
 import com.hubspot.jinjava.interpret.InterpretException;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.tree.Node;
@@ -40,15 +45,81 @@ import com.hubspot.jinjava.util.ObjectIterator;
  * @author anysome
  * 
  */
-public class ForTag implements Tag {
+public class ForTag extends StreamingTag implements PreparedTag {
 
   private static final String LOOP = "loop";
   private static final String TAGNAME = "for";
   private static final String ENDTAGNAME = "endfor";
 
-  @SuppressWarnings("unchecked")
   @Override
-  public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+  public Object prepare(TagNode tagNode, JinjavaInterpreter interpreter) {
+    try {
+      return parseLoop(tagNode, interpreter);
+    }
+    catch(InterpretException e) {
+      return null;
+    }
+  }
+  
+  @Override
+  public void interpret(TagNode tagNode, JinjavaInterpreter interpreter, Appendable out) throws IOException {
+    LoopSpec spec = getLoopSpec(tagNode, interpreter);
+    ForLoop loop = startLoop(tagNode, spec, interpreter);
+    try {
+      while (loop.hasNext()) {
+        bindLoopVars(tagNode, spec, interpreter, loop.next());
+  
+        for (Node node : tagNode.getChildren()) {
+          node.render(interpreter, out);
+        }
+      }
+    }
+    finally {
+      interpreter.leaveScope();
+    }
+
+  }
+
+  /**
+   * @return the loop variables and collection expression of the tag, to be passed to
+   *   {@link #startLoop} and {@link #bindLoopVars} for one run of the loop
+   */
+  public LoopSpec getLoopSpec(TagNode tagNode, JinjavaInterpreter interpreter) {
+    LoopSpec spec = (LoopSpec) tagNode.getPrepared(interpreter);
+    if(spec == null) {
+      spec = parseLoop(tagNode, interpreter);
+    }
+    return spec;
+  }
+
+  /**
+   * Resolve the loop collection and enter the loop's scope; callers must leave the scope once done
+   * iterating.
+   */
+  public ForLoop startLoop(TagNode tagNode, LoopSpec spec, JinjavaInterpreter interpreter) {
+    Object collection = interpreter.resolveELExpression(spec.loopExpr, tagNode.getLineNumber());
+    ForLoop loop = ObjectIterator.getLoop(collection);
+
+    interpreter.enterScope();
+    interpreter.getContext().put(LOOP, loop);
+    return loop;
+  }
+
+  /**
+   * Set the loop variables named by the tag for the current item.
+   */
+  public void bindLoopVars(TagNode tagNode, LoopSpec spec, JinjavaInterpreter interpreter, Object val) {
+    List<String> loopVars = spec.loopVars;
+
+    if(loopVars.size() == 1) {
+      interpreter.getContext().put(loopVars.get(0), val);
+    }
+    else {
+      spec.unpackerFor(val.getClass()).unpack(val, loopVars, tagNode, interpreter);
+    }
+  }
+
+  private LoopSpec parseLoop(TagNode tagNode, JinjavaInterpreter interpreter) {
     List<String> helper = new HelperStringTokenizer(tagNode.getHelpers()).splitComma(true).allTokens();
     
     List<String> loopVars = Lists.newArrayList();
@@ -70,64 +141,93 @@ public class ForTag implements Tag {
     }
     
     String loopExpr = StringUtils.join(helper.subList(inPos + 1, helper.size()), ",");
-    Object collection = interpreter.resolveELExpression(loopExpr, tagNode.getLineNumber());
-    ForLoop loop = ObjectIterator.getLoop(collection);
-
-    interpreter.enterScope();
-    try {
-      interpreter.getContext().put(LOOP, loop);
+    return new LoopSpec(ImmutableList.copyOf(loopVars), interpreter.compileELExpression(loopExpr));
+  }
   
-      StringBuilder buff = new StringBuilder();
-      while (loop.hasNext()) {
-        Object val = loop.next();
-        
-        // set item variables
-        if(loopVars.size() == 1) {
-          interpreter.getContext().put(loopVars.get(0), val);
+  /**
+   * What a for tag needs at render time, worked out once per node: the loop variable names, the
+   * compiled collection expression, and how to unpack each class of item into several variables.
+   */
+  public static final class LoopSpec {
+    private final List<String> loopVars;
+    private final CompiledExpression loopExpr;
+    private final ConcurrentMap<Class<?>, Unpacker> unpackers = Maps.newConcurrentMap();
+    
+    LoopSpec(List<String> loopVars, CompiledExpression loopExpr) {
+      this.loopVars = loopVars;
+      this.loopExpr = loopExpr;
+    }
+    
+    Unpacker unpackerFor(Class<?> itemClass) {
+      Unpacker unpacker = unpackers.get(itemClass);
+      if(unpacker == null) {
+        unpacker = createUnpacker(itemClass);
+        unpackers.put(itemClass, unpacker);
+      }
+      return unpacker;
+    }
+    
+    private Unpacker createUnpacker(Class<?> itemClass) {
+      if(Map.Entry.class.isAssignableFrom(itemClass)) {
+        return ENTRY_UNPACKER;
+      }
+      
+      final PropertyDescriptor[] props = new PropertyDescriptor[loopVars.size()];
+      try {
+        for(PropertyDescriptor valProp : Introspector.getBeanInfo(itemClass).getPropertyDescriptors()) {
+          int index = loopVars.indexOf(valProp.getName());
+          if(index >= 0 && props[index] == null) {
+            props[index] = valProp;
+          }
         }
-        else {
-          for(String loopVar : loopVars) {
-            if(Map.Entry.class.isAssignableFrom(val.getClass())) {
-              Map.Entry<String, Object> entry = (Entry<String, Object>) val;
-              Object entryVal = null;
-              
-              if("key".equals(loopVar)) {
-                entryVal = entry.getKey();
-              }
-              else if("value".equals(loopVar)) {
-                entryVal = entry.getValue();
-              }
-              
-              interpreter.getContext().put(loopVar, entryVal);
-            }
-            else {
+      } catch (final IntrospectionException e) {
+        return new Unpacker() {
+          @Override
+          void unpack(Object val, List<String> loopVars, TagNode tagNode, JinjavaInterpreter interpreter) {
+            throw new InterpretException(e.getMessage(), e, tagNode.getLineNumber());
+          }
+        };
+      }
+      
+      return new Unpacker() {
+        @Override
+        void unpack(Object val, List<String> loopVars, TagNode tagNode, JinjavaInterpreter interpreter) {
+          for(int i = 0; i < props.length; i++) {
+            if(props[i] != null) {
               try {
-                PropertyDescriptor[] valProps = Introspector.getBeanInfo(val.getClass()).getPropertyDescriptors();
-                for(PropertyDescriptor valProp : valProps) {
-                  if(loopVar.equals(valProp.getName())) {
-                    interpreter.getContext().put(loopVar, valProp.getReadMethod().invoke(val));
-                    break;
-                  }
-                }
+                interpreter.getContext().put(loopVars.get(i), props[i].getReadMethod().invoke(val));
               } catch (Exception e) {
                 throw new InterpretException(e.getMessage(), e, tagNode.getLineNumber());
               }
             }
           }
         }
+      };
+    }
+  }
   
-        for (Node node : tagNode.getChildren()) {
-          buff.append(node.render(interpreter));
+  private abstract static class Unpacker {
+    abstract void unpack(Object val, List<String> loopVars, TagNode tagNode, JinjavaInterpreter interpreter);
+  }
+  
+  private static final Unpacker ENTRY_UNPACKER = new Unpacker() {
+    @Override
+    void unpack(Object val, List<String> loopVars, TagNode tagNode, JinjavaInterpreter interpreter) {
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) val;
+      for(String loopVar : loopVars) {
+        Object entryVal = null;
+        
+        if("key".equals(loopVar)) {
+          entryVal = entry.getKey();
         }
+        else if("value".equals(loopVar)) {
+          entryVal = entry.getValue();
+        }
+        
+        interpreter.getContext().put(loopVar, entryVal);
       }
-
-      return buff.toString();
-    }
-    finally {
-      interpreter.leaveScope();
     }
-
-  }
+  };
 
   @Override
   public String getEndTagName() {
@@ -9,6 +9,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
 import com.hubspot.jinjava.interpret.InterpretException;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.RenderProfiler;
 import com.hubspot.jinjava.lib.fn.MacroFunction;
 import com.hubspot.jinjava.tree.Node;
 import com.hubspot.jinjava.tree.TagNode;
@@ -62,11 +63,21 @@ public class FromTag implements Tag {
     }
     
     try {
-      String template = interpreter.getResource(templateFile);
-      Node node = interpreter.parse(template);
+      Node node = interpreter.parseResource(templateFile);
 
       JinjavaInterpreter child = new JinjavaInterpreter(interpreter);
-      child.render(node);
+      RenderProfiler profiler = interpreter.getProfiler();
+      if(profiler != null) {
+        profiler.start(RenderProfiler.Kind.RESOURCE, templateFile, -1);
+      }
+      try {
+        child.render(node);
+      }
+      finally {
+        if(profiler != null) {
+          profiler.stop();
+        }
+      }
 
       for(Map.Entry<String, String> importMapping : imports.entrySet()) {
         Object val = child.getContext().getGlobalMacro(importMapping.getKey());
@@ -15,10 +15,12 @@ limitations under the License.
  **********************************************************************/
 package com.hubspot.jinjava.lib.tag;
 
+import java.io.IOException;
 import java.util.Iterator;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.hubspot.jinjava.el.CompiledExpression;
 import com.hubspot.jinjava.interpret.InterpretException;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.tree.Node;
@@ -35,13 +37,18 @@ import com.hubspot.jinjava.util.ObjectTruthValue;
  * 
  * @author anysome
  */
-public class IfTag implements Tag {
+public class IfTag extends StreamingTag implements PreparedTag {
 
   private static final String TAGNAME = "if";
   private static final String ENDTAGNAME = "endif";
 
   @Override
-  public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+  public Object prepare(TagNode tagNode, JinjavaInterpreter interpreter) {
+    return interpreter.compileELExpression(tagNode.getHelpers());
+  }
+  
+  @Override
+  public void interpret(TagNode tagNode, JinjavaInterpreter interpreter, Appendable out) throws IOException {
     if(StringUtils.isBlank(tagNode.getHelpers())) {
       throw new InterpretException("Tag 'if' expects expression", tagNode.getLineNumber());
     }
@@ -53,18 +60,15 @@ public class IfTag implements Tag {
       nextIfElseTagNode = findNextIfElseTagNode(nodeIterator);
     }
     
-    StringBuilder sb = new StringBuilder();
     if(nextIfElseTagNode != null) {
       while(nodeIterator.hasNext()) {
         Node n = nodeIterator.next();
         if(n.getName().equals(ElseIfTag.ELSEIF) || n.getName().equals(ElseTag.ELSE)) {
           break;
         }
-        sb.append(n.render(interpreter));
+        n.render(interpreter, out);
       }
     }
-    
-    return sb.toString();
   }
 
   private TagNode findNextIfElseTagNode(Iterator<Node> nodeIterator) {
@@ -86,7 +90,15 @@ public class IfTag implements Tag {
       return true;
     }
 
-    return ObjectTruthValue.evaluate(interpreter.resolveELExpression(tagNode.getHelpers(), tagNode.getLineNumber()));
+    return ObjectTruthValue.evaluate(interpreter.resolveELExpression(helperExpression(tagNode, interpreter), tagNode.getLineNumber()));
+  }
+  
+  protected CompiledExpression helperExpression(TagNode tagNode, JinjavaInterpreter interpreter) {
+    Object prepared = tagNode.getPrepared(interpreter);
+    if(prepared instanceof CompiledExpression) {
+      return (CompiledExpression) prepared;
+    }
+    return interpreter.compileELExpression(tagNode.getHelpers());
   }
   
   @Override
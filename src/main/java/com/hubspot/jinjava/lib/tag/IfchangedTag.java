@@ -15,6 +15,8 @@ limitations under the License.
  **********************************************************************/
 package com.hubspot.jinjava.lib.tag;
 
+import java.io.IOException;
+
 import org.apache.commons.lang3.StringUtils;
 
 import com.hubspot.jinjava.interpret.InterpretException;
@@ -28,14 +30,14 @@ import com.hubspot.jinjava.tree.TagNode;
  * @author anysome
  * 
  */
-public class IfchangedTag implements Tag {
+public class IfchangedTag extends StreamingTag {
 
   private static final String LASTKEY = "'IF\"CHG";
   private static final String TAGNAME = "ifchanged";
   private static final String ENDTAGNAME = "endif";
 
   @Override
-  public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+  public void interpret(TagNode tagNode, JinjavaInterpreter interpreter, Appendable out) throws IOException {
     if (StringUtils.isBlank(tagNode.getHelpers())) {
       throw new InterpretException("Tag 'ifchanged' expects 1 helper >>> 0", tagNode.getLineNumber());
     }
@@ -52,13 +54,10 @@ public class IfchangedTag implements Tag {
     }
     interpreter.getContext().put(LASTKEY + var, test);
     if (isChanged) {
-      StringBuilder sb = new StringBuilder();
       for (Node node : tagNode.getChildren()) {
-        sb.append(node.render(interpreter));
+        node.render(interpreter, out);
       }
-      return sb.toString();
     }
-    return "";
   }
 
   @Override
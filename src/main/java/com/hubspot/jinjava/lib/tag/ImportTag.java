@@ -13,6 +13,7 @@ import org.apache.commons.lang3.StringUtils;
 import com.hubspot.jinjava.interpret.Context;
 import com.hubspot.jinjava.interpret.InterpretException;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.RenderProfiler;
 import com.hubspot.jinjava.lib.fn.MacroFunction;
 import com.hubspot.jinjava.tree.Node;
 import com.hubspot.jinjava.tree.TagNode;
@@ -63,16 +64,24 @@ public class ImportTag implements Tag {
 
     String templateFile = interpreter.resolveString(path, tagNode.getLineNumber());
     try {
-      String template = interpreter.getResource(templateFile);
-      Node node = interpreter.parse(template);
+      Node node = interpreter.parseResource(templateFile);
       
-      if(StringUtils.isBlank(contextVar)) {
-        interpreter.render(node);
+      RenderProfiler profiler = interpreter.getProfiler();
+      if(profiler != null) {
+        profiler.start(RenderProfiler.Kind.RESOURCE, templateFile, -1);
       }
-      else {
-        JinjavaInterpreter child = new JinjavaInterpreter(interpreter);
+      
+      JinjavaInterpreter child = StringUtils.isBlank(contextVar) ? interpreter : new JinjavaInterpreter(interpreter);
+      try {
         child.render(node);
-        
+      }
+      finally {
+        if(profiler != null) {
+          profiler.stop();
+        }
+      }
+      
+      if(child != interpreter) {
         Map<String, Object> childBindings = child.getContext().getSessionBindings();
         for(Map.Entry<String, MacroFunction> macro : child.getContext().getGlobalMacros().entrySet()) {
           childBindings.put(macro.getKey(), macro.getValue());
@@ -18,27 +18,92 @@ package com.hubspot.jinjava.lib.tag;
 import static com.hubspot.jinjava.util.Logging.ENGINE_LOG;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.Futures;
 import com.hubspot.jinjava.interpret.Context;
 import com.hubspot.jinjava.interpret.InterpretException;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.RenderProfiler;
 import com.hubspot.jinjava.tree.Node;
 import com.hubspot.jinjava.tree.TagNode;
+import com.hubspot.jinjava.tree.TextNode;
+import com.hubspot.jinjava.tree.VariableNode;
 import com.hubspot.jinjava.util.HelperStringTokenizer;
 
 /**
  * {% include 'sidebar.html' %} {% include var_fileName %}
  * 
+ * When the render config has an include executor, an include followed by further includes,
+ * separated only by whitespace, starts rendering those on the executor while it renders itself;
+ * their output is written in order as each is reached. An included template is only rendered this
+ * way if it can't modify values shared with the including template: it may only use the tags
+ * below, and mustn't call methods on values, functions, or macros other than its own. It then
+ * renders with its own shallow copy of the including context, which is enough as nothing it runs
+ * can change the values in it. Other includes render on the calling thread in their turn.
+ * 
  * @author anysome
  * 
+ * @see com.hubspot.jinjava.JinjavaConfig#getIncludeExecutor()
  */
-public class IncludeTag implements Tag {
+public class IncludeTag extends StreamingTag {
   private static final String INCLUDE_PATH_PROPERTY = "__includeP@th__";
+  
+  // tags which only affect the scope of the template using them
+  private static final Set<String> CONCURRENT_SAFE_TAGS = ImmutableSet.of(
+      "autoescape", "block", "cycle", "elif", "else", "for", "if", "ifchanged", "macro", "print", "raw", "set", "unless");
+  // operators which may be followed by a parenthesis without being called
+  private static final Set<String> OPERATORS = ImmutableSet.of(
+      "and", "elif", "for", "if", "in", "is", "not", "or", "print", "set", "unless");
+  private static final Pattern METHOD_CALL = Pattern.compile("\\.\\s*[A-Za-z_]\\w*\\s*\\(");
+  private static final Pattern CALL = Pattern.compile("(\\|\\s*)?\\b([A-Za-z_]\\w*)\\s*\\(");
+  private static final Pattern MACRO_NAME = Pattern.compile("^\\s*([A-Za-z_]\\w*)");
+  
+  private static final ConcurrentMap<Node, Boolean> CONCURRENT_SAFE_TEMPLATES = new MapMaker().weakKeys().makeMap();
 
   @Override
-  public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+  public void interpret(TagNode tagNode, JinjavaInterpreter interpreter, Appendable out) throws IOException {
+    Future<String> pending = interpreter.takePendingRender(tagNode);
+    if(pending != null) {
+      out.append(await(pending, tagNode));
+      return;
+    }
+    
+    Include include = load(tagNode, interpreter);
+    if(include == null) {
+      return;
+    }
+    
+    // a profiler can't time parts rendered on other threads, so profiled renders include in turn
+    Executor executor = interpreter.getConfig().getIncludeExecutor();
+    if(executor != null && interpreter.getProfiler() == null && isConcurrentSafe(include.root)) {
+      startFollowingIncludes(tagNode, interpreter, executor);
+    }
+    
+    render(include, interpreter, out);
+  }
+  
+  /**
+   * @return the template to include, or null if the path is already being included
+   */
+  private Include load(TagNode tagNode, JinjavaInterpreter interpreter) {
     HelperStringTokenizer helper = new HelperStringTokenizer(tagNode.getHelpers());
     if (!helper.hasNext()) {
       throw new InterpretException("Tag 'include' expects template path", tagNode.getLineNumber());
@@ -48,20 +113,209 @@ public class IncludeTag implements Tag {
 
     if(isPathInRenderStack(interpreter.getContext(), path)) {
       ENGINE_LOG.debug("Path {} is already in include stack", path);
-      return "";
+      return null;
     }
     
     String templateFile = interpreter.resolveString(path, tagNode.getLineNumber());
+    Node node;
     try {
-      String template = interpreter.getResource(templateFile);
-      Node node = interpreter.parse(template);
-      JinjavaInterpreter child = new JinjavaInterpreter(interpreter);
-      child.getContext().put(INCLUDE_PATH_PROPERTY, path);
-      interpreter.getContext().put(JinjavaInterpreter.INSERT_FLAG, true);
-      return child.render(node);
+      node = interpreter.parseResource(templateFile);
     } catch (IOException e) {
       throw new InterpretException(e.getMessage(), e, tagNode.getLineNumber());
     }
+    
+    interpreter.getContext().put(JinjavaInterpreter.INSERT_FLAG, true);
+    return new Include(path, templateFile, node);
+  }
+  
+  private static void render(Include include, JinjavaInterpreter interpreter, Appendable out) throws IOException {
+    JinjavaInterpreter child = new JinjavaInterpreter(interpreter);
+    child.getContext().put(INCLUDE_PATH_PROPERTY, include.path);
+    
+    RenderProfiler profiler = interpreter.getProfiler();
+    if(profiler == null) {
+      child.render(include.root, out);
+      return;
+    }
+    
+    profiler.start(RenderProfiler.Kind.RESOURCE, include.name, -1);
+    try {
+      child.render(include.root, out);
+    }
+    finally {
+      profiler.stop();
+    }
+  }
+  
+  /**
+   * Start rendering the includes following the given one on the executor, for as long as they're
+   * safe to render concurrently. Nothing but whitespace is rendered between them, so each sees the
+   * context as it is now.
+   */
+  private void startFollowingIncludes(TagNode tagNode, JinjavaInterpreter interpreter, Executor executor) {
+    if(tagNode.getParent() == null) {
+      return;
+    }
+    
+    Iterator<Node> siblings = tagNode.getParent().getChildren().iterator();
+    while(siblings.hasNext() && siblings.next() != tagNode) {
+      // skip to the nodes after this include
+    }
+    
+    while(siblings.hasNext()) {
+      Node next = siblings.next();
+      if(next instanceof TextNode && ((TextNode) next).getMaster().isBlank()) {
+        continue;
+      }
+      if(!(next instanceof TagNode) || !(((TagNode) next).getTag(interpreter) instanceof IncludeTag)) {
+        return;
+      }
+      
+      TagNode nextTag = (TagNode) next;
+      Include include = load(nextTag, interpreter);
+      if(include == null) {
+        interpreter.addPendingRender(nextTag, Futures.immediateFuture(""));
+        continue;
+      }
+      
+      Context snapshot = isConcurrentSafe(include.root) ? interpreter.getContext().snapshot() : null;
+      if(snapshot == null) {
+        // already loaded, so render it from here in its turn
+        interpreter.addPendingRender(nextTag, new FutureTask<String>(renderLater(include, interpreter)));
+        return;
+      }
+      
+      snapshot.put(INCLUDE_PATH_PROPERTY, include.path);
+      FutureTask<String> task = new FutureTask<String>(renderConcurrently(include, new JinjavaInterpreter(interpreter, snapshot)));
+      interpreter.addPendingRender(nextTag, task);
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        ENGINE_LOG.debug("Include executor rejected {}, rendering it in turn", include.path);
+      }
+    }
+  }
+  
+  private static Callable<String> renderLater(final Include include, final JinjavaInterpreter interpreter) {
+    return new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        StringBuilder result = new StringBuilder();
+        render(include, interpreter, result);
+        return result.toString();
+      }
+    };
+  }
+  
+  private static Callable<String> renderConcurrently(final Include include, final JinjavaInterpreter child) {
+    return new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        JinjavaInterpreter.pushCurrent(child);
+        try {
+          StringBuilder result = new StringBuilder();
+          child.render(include.root, result);
+          return result.toString();
+        }
+        finally {
+          JinjavaInterpreter.popCurrent();
+        }
+      }
+    };
+  }
+  
+  /**
+   * Wait for a pending include's output, rendering it on this thread if the executor hasn't
+   * started it yet.
+   */
+  private static String await(Future<String> output, TagNode tagNode) {
+    if(output instanceof RunnableFuture) {
+      ((RunnableFuture<?>) output).run();
+    }
+    
+    try {
+      return output.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterpretException("Interrupted while rendering include", e, tagNode.getLineNumber());
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+  
+  private static boolean isConcurrentSafe(Node root) {
+    Boolean safe = CONCURRENT_SAFE_TEMPLATES.get(root);
+    if(safe == null) {
+      Set<String> macros = new HashSet<String>();
+      collectMacros(root, macros);
+      safe = checkConcurrentSafe(root, macros);
+      CONCURRENT_SAFE_TEMPLATES.put(root, safe);
+    }
+    return safe;
+  }
+  
+  private static void collectMacros(Node node, Set<String> macros) {
+    for(Node child : node.getChildren()) {
+      if(child instanceof TagNode && "macro".equals(child.getName())) {
+        Matcher name = MACRO_NAME.matcher(((TagNode) child).getHelpers());
+        if(name.find()) {
+          macros.add(name.group(1));
+        }
+      }
+      collectMacros(child, macros);
+    }
+  }
+  
+  /**
+   * @param macros the macros defined by the template, whose bodies are checked along with the rest of it
+   */
+  private static boolean checkConcurrentSafe(Node node, Set<String> macros) {
+    for(Node child : node.getChildren()) {
+      if(child instanceof TagNode && !CONCURRENT_SAFE_TAGS.contains(child.getName())) {
+        return false;
+      }
+      if(child instanceof VariableNode && !callsOnlyMacros(child.getMaster().getImage(), macros)) {
+        return false;
+      }
+      // the macro tag's own helpers name the macro and its arguments, rather than calling anything
+      if(child instanceof TagNode && !"macro".equals(child.getName())
+          && !callsOnlyMacros(((TagNode) child).getHelpers(), macros)) {
+        return false;
+      }
+      if(!checkConcurrentSafe(child, macros)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * @return whether the expression calls nothing but filters and the given macros
+   */
+  private static boolean callsOnlyMacros(String expression, Set<String> macros) {
+    if(METHOD_CALL.matcher(expression).find()) {
+      return false;
+    }
+    
+    Matcher call = CALL.matcher(expression);
+    while(call.find()) {
+      if(call.group(1) == null && !OPERATORS.contains(call.group(2)) && !macros.contains(call.group(2))) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private static final class Include {
+    private final String path;
+    private final String name;
+    private final Node root;
+    
+    Include(String path, String name, Node root) {
+      this.path = path;
+      this.name = name;
+      this.root = root;
+    }
   }
 
   private boolean isPathInRenderStack(Context context, String path) {
@@ -0,0 +1,39 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.lib.tag;
+
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.tree.TagNode;
+
+/**
+ * A tag which does part of its work once, when the template is parsed, rather than on every
+ * render. The value returned from {@link #prepare(TagNode, JinjavaInterpreter)} is kept on the
+ * tag node and made available through {@link TagNode#getPrepared(JinjavaInterpreter)}.
+ * 
+ * Since parsed templates may be rendered concurrently, the prepared value must be immutable
+ * and must not depend on render-time context values.
+ */
+public interface PreparedTag extends Tag {
+
+  /**
+   * Called while the tag node is being built; the node's children have not been parsed yet.
+   * 
+   * @return value to keep with the tag node, or null if the helpers can't be prepared, in
+   *   which case the tag should fall back to interpreting them on each render
+   */
+  Object prepare(TagNode tagNode, JinjavaInterpreter interpreter);
+
+}
@@ -2,20 +2,27 @@ package com.hubspot.jinjava.lib.tag;
 
 import com.hubspot.jinjava.util.Objects;
 
+import com.hubspot.jinjava.el.CompiledExpression;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.tree.TagNode;
 
-public class PrintTag implements Tag {
+public class PrintTag implements PreparedTag {
 
   @Override
   public String getName() {
     return "print";
   }
 
+  @Override
+  public Object prepare(TagNode tagNode, JinjavaInterpreter interpreter) {
+    return interpreter.compileELExpression(tagNode.getHelpers());
+  }
+
   @Override
   public String interpret(TagNode tagNode,
       JinjavaInterpreter interpreter) {
-    return Objects.toString( interpreter.resolveELExpression(tagNode.getHelpers(), tagNode.getLineNumber()), "" );
+    CompiledExpression expr = (CompiledExpression) tagNode.getPrepared(interpreter);
+    return Objects.toString( interpreter.resolveELExpression(expr, tagNode.getLineNumber()), "" );
   }
 
   @Override
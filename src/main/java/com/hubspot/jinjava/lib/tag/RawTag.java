@@ -1,12 +1,14 @@
 package com.hubspot.jinjava.lib.tag;
 
+import java.io.IOException;
+
 import org.apache.commons.lang3.StringUtils;
 
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.tree.Node;
 import com.hubspot.jinjava.tree.TagNode;
 
-public class RawTag implements Tag {
+public class RawTag extends StreamingTag {
 
   @Override
   public String getName() {
@@ -19,31 +21,25 @@ public class RawTag implements Tag {
   }
   
   @Override
-  public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
-    StringBuilder result = new StringBuilder();
-
+  public void interpret(TagNode tagNode, JinjavaInterpreter interpreter, Appendable out) throws IOException {
     for(Node n : tagNode.getChildren())  {
-      result.append(renderNodeRaw(n));
+      renderNodeRaw(n, out);
     }
-    
-    return result.toString();
   }
 
-  private String renderNodeRaw(Node n) {
-    StringBuilder result = new StringBuilder(n.getMaster().getImage());
+  private void renderNodeRaw(Node n, Appendable out) throws IOException {
+    out.append(n.getMaster().getImage());
 
     for(Node child : n.getChildren()) {
-      result.append(renderNodeRaw(child));
+      renderNodeRaw(child, out);
     }
     
     if(TagNode.class.isAssignableFrom(n.getClass())) {
       TagNode t = (TagNode) n;
       if(StringUtils.isNotBlank(t.getEndName())) {
-        result.append("{% ").append(t.getEndName()).append(" %}");
+        out.append("{% ").append(t.getEndName()).append(" %}");
       }
     }
-    
-    return result.toString();
   }
   
 }
@@ -17,6 +17,7 @@ package com.hubspot.jinjava.lib.tag;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.hubspot.jinjava.el.CompiledExpression;
 import com.hubspot.jinjava.interpret.InterpretException;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.tree.TagNode;
@@ -31,7 +32,7 @@ import com.hubspot.jinjava.tree.TagNode;
  * @author anysome
  * 
  */
-public class SetTag implements Tag {
+public class SetTag implements PreparedTag {
 
   private static final String TAGNAME = "set";
 
@@ -40,8 +41,30 @@ public class SetTag implements Tag {
     return TAGNAME;
   }
 
+  @Override
+  public Object prepare(TagNode tagNode, JinjavaInterpreter interpreter) {
+    try {
+      return parseAssignment(tagNode, interpreter);
+    }
+    catch(InterpretException e) {
+      return null;
+    }
+  }
+
   @Override
   public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+    Assignment assignment = (Assignment) tagNode.getPrepared(interpreter);
+    if(assignment == null) {
+      assignment = parseAssignment(tagNode, interpreter);
+    }
+    
+    Object val = interpreter.resolveELExpression(assignment.expr, tagNode.getLineNumber());
+    interpreter.getContext().put(assignment.var, val);
+
+    return "";
+  }
+
+  private Assignment parseAssignment(TagNode tagNode, JinjavaInterpreter interpreter) {
     if(!tagNode.getHelpers().contains("=")) {
       throw new InterpretException("Tag 'set' expects an assignment expression with '=', but was: " + tagNode.getHelpers(), tagNode.getLineNumber());
     }
@@ -57,10 +80,17 @@ public class SetTag implements Tag {
       throw new InterpretException("Tag 'set' requires an expression to assign to a var", tagNode.getLineNumber());
     }
     
-    Object val = interpreter.resolveELExpression(expr, tagNode.getLineNumber());
-    interpreter.getContext().put(var, val);
+    return new Assignment(var, interpreter.compileELExpression(expr));
+  }
 
-    return "";
+  private static class Assignment {
+    private final String var;
+    private final CompiledExpression expr;
+    
+    Assignment(String var, CompiledExpression expr) {
+      this.var = var;
+      this.expr = expr;
+    }
   }
 
   @Override
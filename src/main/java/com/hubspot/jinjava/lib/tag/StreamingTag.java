@@ -0,0 +1,49 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.lib.tag;
+
+import java.io.IOException;
+
+import com.google.common.base.Throwables;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.tree.TagNode;
+
+/**
+ * Base class for tags which write their output directly to the render output, instead of
+ * building and returning a string of their own. When rendering to a Writer, the output of
+ * nested tags reaches the writer without being copied at each nesting level.
+ */
+public abstract class StreamingTag implements Tag {
+
+  @Override
+  public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+    StringBuilder out = new StringBuilder();
+    try {
+      interpret(tagNode, interpreter, out);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Render this tag, appending its output to the given appendable.
+   * 
+   * @throws IOException only if writing to out fails
+   */
+  public abstract void interpret(TagNode tagNode, JinjavaInterpreter interpreter, Appendable out) throws IOException;
+
+}
@@ -27,7 +27,7 @@ public class UnlessTag extends IfTag {
   @Override
   protected boolean evaluateIfElseTagNode(TagNode tagNode, JinjavaInterpreter interpreter) {
     if(tagNode.getName().equals("unless")) {
-      return !ObjectTruthValue.evaluate(interpreter.resolveELExpression(tagNode.getHelpers(), tagNode.getLineNumber()));
+      return !ObjectTruthValue.evaluate(interpreter.resolveELExpression(helperExpression(tagNode, interpreter), tagNode.getLineNumber()));
     }
 
     return super.evaluateIfElseTagNode(tagNode, interpreter);
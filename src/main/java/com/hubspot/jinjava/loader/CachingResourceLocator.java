@@ -0,0 +1,316 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.loader;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+
+/**
+ * Decorates another locator with a bounded cache of loaded resources, so that repeated includes,
+ * imports and extends of the same template don't go back to the file system on every render.
+ *
+ * Misses are cached as well, unless disabled. When the wrapped locator is a
+ * {@link VersionedResourceLocator}, cached entries are revalidated against its version at most once
+ * per revalidation interval, so an edited template is picked up without reading its content on
+ * every hit. Entries may also be given a time to live, and can be dropped explicitly with
+ * {@link #invalidate(String)}, e.g. from a file watcher.
+ *
+ * Entries are keyed by name and charset only: the wrapped locator should not resolve names
+ * differently depending on the interpreter it is called with. The maximum size counts names, each
+ * holding its content in every charset it has been read with.
+ *
+ * Example use:
+ *
+ * <pre>
+ *     jinjava.setResourceLocator(CachingResourceLocator.newBuilder(new FileLocator(templateDir))
+ *         .withRevalidateInterval(2, TimeUnit.SECONDS)
+ *         .build());
+ * </pre>
+ */
+public class CachingResourceLocator implements VersionedResourceLocator, ListableResourceLocator {
+
+  public static final long DEFAULT_MAXIMUM_SIZE = 1000;
+  public static final long DEFAULT_REVALIDATE_INTERVAL_MILLIS = 1000;
+
+  private final ResourceLocator delegate;
+  private final Cache<String, Entries> cache;
+  private final boolean negativeCaching;
+  private final long revalidateNanos;
+  private final long timeToLiveNanos;
+  private final Ticker ticker;
+
+  public CachingResourceLocator(ResourceLocator delegate) {
+    this(newBuilder(delegate));
+  }
+
+  private CachingResourceLocator(Builder builder) {
+    this.delegate = builder.delegate;
+    this.negativeCaching = builder.negativeCaching;
+    this.revalidateNanos = builder.revalidateNanos;
+    this.timeToLiveNanos = builder.timeToLiveNanos;
+    this.ticker = builder.ticker;
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(builder.maximumSize)
+        .build();
+  }
+
+  public ResourceLocator getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public String getString(String fullName, Charset encoding, JinjavaInterpreter interpreter) throws IOException {
+    Entry entry = getEntry(fullName, encoding, interpreter);
+    if(entry.content == null) {
+      throw new ResourceNotFoundException("Couldn't find resource: " + fullName);
+    }
+    return entry.content;
+  }
+
+  /**
+   * @return the wrapped locator's version of the resource as of the last revalidation, or a value
+   *         which changes each time the resource is reloaded when the wrapped locator is not versioned
+   */
+  @Override
+  public long getVersion(String fullName, JinjavaInterpreter interpreter) throws IOException {
+    Entry entry = getEntry(fullName, interpreter.getConfig().getCharset(), interpreter);
+    if(entry.content == null) {
+      throw new ResourceNotFoundException("Couldn't find resource: " + fullName);
+    }
+    return entry.version;
+  }
+
+  /**
+   * Lists the wrapped locator's resources, if it can list them; listings aren't cached.
+   */
+  @Override
+  public Collection<String> list(String prefix) throws IOException {
+    if(!(delegate instanceof ListableResourceLocator)) {
+      return Collections.emptyList();
+    }
+    return ((ListableResourceLocator) delegate).list(prefix);
+  }
+
+  /**
+   * Drop any cached content, or cached miss, for the named resource.
+   */
+  public void invalidate(String fullName) {
+    cache.invalidate(fullName);
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private Entry getEntry(String fullName, Charset encoding, JinjavaInterpreter interpreter) throws IOException {
+    Entries entries = entriesFor(fullName);
+
+    Entry entry = entries.get(encoding);
+    if(entry != null && !isStale(entry, fullName, interpreter)) {
+      return entry;
+    }
+
+    synchronized(entries) {
+      Entry current = entries.get(encoding);
+      if(current != entry) {
+        // loaded by another thread while this one waited
+        return current;
+      }
+
+      entry = load(fullName, encoding, interpreter);
+      if(entry.content != null || negativeCaching) {
+        entries.put(encoding, entry);
+      } else {
+        entries.remove(encoding);
+      }
+      return entry;
+    }
+  }
+
+  private Entries entriesFor(String fullName) {
+    Entries entries = cache.getIfPresent(fullName);
+    if(entries == null) {
+      Entries created = new Entries();
+      entries = cache.asMap().putIfAbsent(fullName, created);
+      if(entries == null) {
+        entries = created;
+      }
+    }
+    return entries;
+  }
+
+  private Entry load(String fullName, Charset encoding, JinjavaInterpreter interpreter) throws IOException {
+    long now = ticker.read();
+    long version = currentVersion(fullName, interpreter);
+    if(version == Entry.MISSING) {
+      return new Entry(null, Entry.MISSING, now);
+    }
+
+    String content;
+    try {
+      content = delegate.getString(fullName, encoding, interpreter);
+    } catch(ResourceNotFoundException e) {
+      return new Entry(null, Entry.MISSING, now);
+    }
+
+    if(version == UNKNOWN_VERSION) {
+      version = Entry.nextGeneration();
+    }
+    return new Entry(content, version, now);
+  }
+
+  private boolean isStale(Entry entry, String fullName, JinjavaInterpreter interpreter) throws IOException {
+    long now = ticker.read();
+    if(timeToLiveNanos > 0 && now - entry.loadedAt >= timeToLiveNanos) {
+      return true;
+    }
+    if(revalidateNanos < 0 || !(delegate instanceof VersionedResourceLocator)) {
+      return false;
+    }
+
+    if(now - entry.checkedAt < revalidateNanos) {
+      return false;
+    }
+    entry.checkedAt = now;
+
+    long version = currentVersion(fullName, interpreter);
+    return version != UNKNOWN_VERSION && version != entry.version;
+  }
+
+  private long currentVersion(String fullName, JinjavaInterpreter interpreter) throws IOException {
+    if(!(delegate instanceof VersionedResourceLocator)) {
+      return UNKNOWN_VERSION;
+    }
+    try {
+      return ((VersionedResourceLocator) delegate).getVersion(fullName, interpreter);
+    } catch(ResourceNotFoundException e) {
+      return Entry.MISSING;
+    }
+  }
+
+  public static Builder newBuilder(ResourceLocator delegate) {
+    return new Builder(delegate);
+  }
+
+  public static class Builder {
+    private final ResourceLocator delegate;
+    private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long timeToLiveNanos = 0;
+    private long revalidateNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_REVALIDATE_INTERVAL_MILLIS);
+    private boolean negativeCaching = true;
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Builder(ResourceLocator delegate) {
+      this.delegate = delegate;
+    }
+
+    public Builder withMaximumSize(long maximumSize) {
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Expire entries this long after they were loaded, whether or not they have changed; zero (the
+     * default) keeps them until evicted or found to be stale.
+     */
+    public Builder withTimeToLive(long duration, TimeUnit unit) {
+      this.timeToLiveNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    /**
+     * How often a cached entry is checked against the wrapped locator's version; zero checks on
+     * every access, and a negative value never checks.
+     */
+    public Builder withRevalidateInterval(long duration, TimeUnit unit) {
+      this.revalidateNanos = duration < 0 ? -1 : unit.toNanos(duration);
+      return this;
+    }
+
+    public Builder withNegativeCaching(boolean negativeCaching) {
+      this.negativeCaching = negativeCaching;
+      return this;
+    }
+
+    public Builder withTicker(Ticker ticker) {
+      this.ticker = ticker;
+      return this;
+    }
+
+    public CachingResourceLocator build() {
+      return new CachingResourceLocator(this);
+    }
+  }
+
+  /**
+   * A name's entries by charset; the map is replaced rather than modified, so that hits can read it
+   * without locking, while loads and removals synchronize on this.
+   */
+  private static final class Entries {
+    private volatile Map<Charset, Entry> byCharset = Collections.emptyMap();
+
+    Entry get(Charset charset) {
+      return byCharset.get(charset);
+    }
+
+    void put(Charset charset, Entry entry) {
+      Map<Charset, Entry> copy = new HashMap<Charset, Entry>(byCharset);
+      copy.put(charset, entry);
+      byCharset = copy;
+    }
+
+    void remove(Charset charset) {
+      if(byCharset.containsKey(charset)) {
+        Map<Charset, Entry> copy = new HashMap<Charset, Entry>(byCharset);
+        copy.remove(charset);
+        byCharset = copy;
+      }
+    }
+  }
+
+  private static final class Entry {
+    static final long MISSING = -2;
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private final String content;
+    private final long version;
+    private final long loadedAt;
+    private volatile long checkedAt;
+
+    Entry(String content, long version, long loadedAt) {
+      this.content = content;
+      this.version = version;
+      this.loadedAt = loadedAt;
+      this.checkedAt = loadedAt;
+    }
+
+    static long nextGeneration() {
+      return GENERATION.incrementAndGet();
+    }
+  }
+
+}
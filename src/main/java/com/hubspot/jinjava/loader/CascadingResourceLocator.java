@@ -3,10 +3,13 @@ package com.hubspot.jinjava.loader;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
 
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 
-public class CascadingResourceLocator implements ResourceLocator {
+public class CascadingResourceLocator implements VersionedResourceLocator, ListableResourceLocator {
 
   private Iterable<ResourceLocator> locators;
   
@@ -28,4 +31,41 @@ public class CascadingResourceLocator implements ResourceLocator {
     throw new ResourceNotFoundException("Couldn't find resource: " + fullName);
   }
 
+  /**
+   * Reports the version from the first locator which has the resource. A locator which is not
+   * versioned can't tell whether it has the resource without reading it, so once one is reached
+   * {@link #UNKNOWN_VERSION} is returned without reading anything; callers then load the resource,
+   * which finds out whether it exists. This also means a missing resource only raises
+   * {@link ResourceNotFoundException} here when all locators are versioned.
+   */
+  @Override
+  public long getVersion(String fullName, JinjavaInterpreter interpreter) throws IOException {
+
+    for(ResourceLocator locator : locators) {
+      if(!(locator instanceof VersionedResourceLocator)) {
+        return UNKNOWN_VERSION;
+      }
+      try {
+        return ((VersionedResourceLocator) locator).getVersion(fullName, interpreter);
+      }
+      catch(ResourceNotFoundException e) { /* */ }
+    }
+
+    throw new ResourceNotFoundException("Couldn't find resource: " + fullName);
+  }
+
+  /**
+   * Lists the resources of all locators which can list theirs.
+   */
+  @Override
+  public Collection<String> list(String prefix) throws IOException {
+    Set<String> names = new TreeSet<String>();
+    for(ResourceLocator locator : locators) {
+      if(locator instanceof ListableResourceLocator) {
+        names.addAll(((ListableResourceLocator) locator).list(prefix));
+      }
+    }
+    return names;
+  }
+
 }
@@ -1,12 +1,29 @@
 package com.hubspot.jinjava.loader;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
+import com.google.common.base.Objects;
 import com.google.common.io.Resources;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 
-public class ClasspathResourceLocator implements ResourceLocator {
+/**
+ * Loads templates from the classpath. Resources packaged in jars are treated as unchanging for the
+ * life of the JVM; resources in a classpath directory are versioned by their modification time, so
+ * that edits made during development are picked up by caching callers.
+ */
+public class ClasspathResourceLocator implements VersionedResourceLocator, ListableResourceLocator {
 
   @Override
   public String getString(String fullName, Charset encoding,
@@ -18,4 +35,78 @@ public class ClasspathResourceLocator implements ResourceLocator {
     }
   }
 
+  @Override
+  public long getVersion(String fullName, JinjavaInterpreter interpreter) throws IOException {
+    URL url;
+    try {
+      url = Resources.getResource(fullName);
+    } catch(IllegalArgumentException e) {
+      throw new ResourceNotFoundException("Couldn't find resource: " + fullName);
+    }
+
+    if(!"file".equals(url.getProtocol())) {
+      return 0;
+    }
+
+    try {
+      File file = new File(url.toURI());
+      return 31 * file.lastModified() + file.length();
+    } catch(URISyntaxException e) {
+      return UNKNOWN_VERSION;
+    } catch(IllegalArgumentException e) {
+      return UNKNOWN_VERSION;
+    }
+  }
+
+  /**
+   * Lists the resources below the given directory in each classpath directory and jar. Resources in
+   * jars are only listed for a non-empty prefix.
+   */
+  @Override
+  public Collection<String> list(String prefix) throws IOException {
+    String dir = prefix;
+    while(dir.startsWith("/")) {
+      dir = dir.substring(1);
+    }
+    while(dir.endsWith("/")) {
+      dir = dir.substring(0, dir.length() - 1);
+    }
+
+    ClassLoader loader = Objects.firstNonNull(Thread.currentThread().getContextClassLoader(), Resources.class.getClassLoader());
+    Set<String> names = new TreeSet<String>();
+    Enumeration<URL> urls = loader.getResources(dir);
+    while(urls.hasMoreElements()) {
+      URL url = urls.nextElement();
+      if("file".equals(url.getProtocol())) {
+        try {
+          FileLocator.addFiles(new File(url.toURI()), dir, names);
+        } catch(URISyntaxException e) { /* */ }
+      }
+      else if("jar".equals(url.getProtocol())) {
+        addJarEntries(url, dir, names);
+      }
+    }
+    return names;
+  }
+
+  private static void addJarEntries(URL url, String dir, Collection<String> names) throws IOException {
+    URLConnection connection = url.openConnection();
+    if(!(connection instanceof JarURLConnection)) {
+      return;
+    }
+    connection.setUseCaches(false);
+    JarFile jar = ((JarURLConnection) connection).getJarFile();
+    try {
+      Enumeration<JarEntry> entries = jar.entries();
+      while(entries.hasMoreElements()) {
+        JarEntry entry = entries.nextElement();
+        if(!entry.isDirectory() && entry.getName().startsWith(dir + "/")) {
+          names.add(entry.getName());
+        }
+      }
+    } finally {
+      jar.close();
+    }
+  }
+
 }
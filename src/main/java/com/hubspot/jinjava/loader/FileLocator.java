@@ -19,11 +19,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
 
 import com.google.common.io.Files;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 
-public class FileLocator implements ResourceLocator {
+public class FileLocator implements VersionedResourceLocator, ListableResourceLocator {
 
   private File baseDir;
   
@@ -62,4 +65,47 @@ public class FileLocator implements ResourceLocator {
     return Files.toString(file, encoding);
   }
 
+  /**
+   * Derived from the file's modification time and length, which costs a stat rather than a read.
+   */
+  @Override
+  public long getVersion(String name, JinjavaInterpreter interpreter) throws IOException {
+    File file = resolveFileName(name);
+
+    if (!file.isFile()) {
+      throw new ResourceNotFoundException("Couldn't find resource: " + file);
+    }
+
+    return 31 * file.lastModified() + file.length();
+  }
+
+  /**
+   * Lists the files below the given directory, which is resolved like a file name.
+   */
+  @Override
+  public Collection<String> list(String prefix) throws IOException {
+    Set<String> names = new TreeSet<String>();
+    addFiles(resolveFileName(prefix), prefix, names);
+    return names;
+  }
+
+  /**
+   * Add the name of each file below dir to names, as a path relative to dir joined to prefix.
+   */
+  static void addFiles(File dir, String prefix, Collection<String> names) {
+    File[] files = dir.listFiles();
+    if(files == null) {
+      return;
+    }
+    for(File file : files) {
+      String name = prefix.isEmpty() || prefix.endsWith("/") ? prefix + file.getName() : prefix + "/" + file.getName();
+      if(file.isDirectory()) {
+        addFiles(file, name, names);
+      }
+      else if(file.isFile()) {
+        names.add(name);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,37 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.loader;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A locator which can list the resources it has, so that templates can be found and parsed ahead of
+ * their first use.
+ *
+ * @see com.hubspot.jinjava.Jinjava#warmUp(String, java.util.concurrent.Executor)
+ */
+public interface ListableResourceLocator extends ResourceLocator {
+
+  /**
+   * @param prefix path of a directory of resources, or "" for all of the locator's resources
+   * @return the full names of the resources in the directory and its subdirectories, as accepted by
+   *         {@link #getString(String, java.nio.charset.Charset, com.hubspot.jinjava.interpret.JinjavaInterpreter)};
+   *         empty if there is no such directory
+   */
+  Collection<String> list(String prefix) throws IOException;
+
+}
@@ -0,0 +1,41 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.loader;
+
+import java.io.IOException;
+
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+
+/**
+ * A locator which can report a cheap version for a resource without reading its content, so that
+ * callers holding a cached copy can tell whether it is still current.
+ */
+public interface VersionedResourceLocator extends ResourceLocator {
+
+  /**
+   * Returned when the locator has the resource but cannot tell which version of it.
+   */
+  long UNKNOWN_VERSION = -1;
+
+  /**
+   * @return an opaque, non-negative value which changes whenever the content of the named resource
+   *         changes, or {@link #UNKNOWN_VERSION}
+   * @throws ResourceNotFoundException
+   *           if the resource does not exist
+   */
+  long getVersion(String fullName, JinjavaInterpreter interpreter) throws IOException;
+
+}
@@ -0,0 +1,64 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.objects;
+
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the python wrappers made for values during a single render, so that a list, map or
+ * date read many times (for example inside a loop) is only wrapped once. Values are matched by
+ * identity; a wrapped {@link Date} is made again if it has been changed since it was wrapped.
+ *
+ * Not thread safe; each interpreter keeps its own cache.
+ */
+public class PyWrapperCache {
+
+  // past this many entries the cache starts over, so that rendering a very large data set
+  // doesn't keep a wrapper for every item alive until the render ends
+  static final int MAX_SIZE = 4096;
+
+  private Map<Object, PyWrapper> wrappers;
+
+  public PyWrapper get(Object value) {
+    if(wrappers == null) {
+      return null;
+    }
+
+    PyWrapper wrapper = wrappers.get(value);
+    if(value instanceof Date && wrapper != null && ((Date) wrapper).getTime() != ((Date) value).getTime()) {
+      return null;
+    }
+    return wrapper;
+  }
+
+  public void put(Object value, PyWrapper wrapper) {
+    if(wrappers == null) {
+      // most renders only wrap a few values; start small rather than at the default size
+      wrappers = new IdentityHashMap<Object, PyWrapper>(4);
+    }
+    else if(wrappers.size() >= MAX_SIZE) {
+      wrappers.clear();
+    }
+    wrappers.put(value, wrapper);
+  }
+
+  public int size() {
+    return wrappers == null ? 0 : wrappers.size();
+  }
+
+}
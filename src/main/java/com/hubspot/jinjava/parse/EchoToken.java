@@ -17,19 +17,21 @@ package com.hubspot.jinjava.parse;
 
 import static com.hubspot.jinjava.parse.ParserConstants.TOKEN_ECHO;
 
-import org.apache.commons.lang3.StringUtils;
-
-import com.hubspot.jinjava.util.WhitespaceUtils;
-
 public class EchoToken extends Token {
   private static final long serialVersionUID = 8307037212944170832L;
 
   private String expr;
+  private int exprStart;
+  private int exprEnd;
   
   public EchoToken(String image, int lineNumber) {
     super(image, lineNumber);
   }
 
+  EchoToken(CharSequence source, int start, int end, int lineNumber) {
+    super(source, start, end, lineNumber);
+  }
+
   @Override
   public String toString() {
     StringBuilder s = new StringBuilder("{{ ").append(getExpr()).append("}}");
@@ -41,23 +43,66 @@ public class EchoToken extends Token {
     return TOKEN_ECHO;
   }
 
+  /**
+   * Find the expression's range within the image; it is only copied out once asked for.
+   */
   @Override
   protected void parse() {
-    this.expr = WhitespaceUtils.unwrap(image, "{{", "}}");
-
-    if(WhitespaceUtils.startsWith(expr, "-")) {
+    int from = 0, to = length();
+    while(from < to && Character.isWhitespace(charAt(from))) {
+      from++;
+    }
+    while(to > from && Character.isWhitespace(charAt(to - 1))) {
+      to--;
+    }
+    from += 2;
+    to = Math.max(to - 2, from);
+    
+    int first = from;
+    while(first < to && Character.isWhitespace(charAt(first))) {
+      first++;
+    }
+    if(first < to && charAt(first) == '-') {
       setLeftTrim(true);
-      this.expr = WhitespaceUtils.unwrap(expr, "-", "");
+      from = first + 1;
     }
-    if(WhitespaceUtils.endsWith(expr, "-")) {
+    
+    int last = to;
+    while(last > from && Character.isWhitespace(charAt(last - 1))) {
+      last--;
+    }
+    if(last > from && charAt(last - 1) == '-') {
       setRightTrim(true);
-      this.expr = WhitespaceUtils.unwrap(expr, "", "-");
+      to = last - 1;
     }
     
-    this.expr = StringUtils.trimToEmpty(this.expr);
+    while(from < to && charAt(from) <= ' ') {
+      from++;
+    }
+    while(to > from && charAt(to - 1) <= ' ') {
+      to--;
+    }
+    
+    exprStart = from;
+    exprEnd = to;
+  }
+
+  /**
+   * The expression is compiled when parsed, so a token referencing the template doesn't keep a copy
+   * of its text.
+   */
+  @Override
+  public void compact() {
+    super.compact();
+    if(image == null) {
+      expr = null;
+    }
   }
 
   public String getExpr() {
+    if(expr == null) {
+      expr = substring(exprStart, exprEnd);
+    }
     return expr;
   }
 
@@ -17,7 +17,7 @@ package com.hubspot.jinjava.parse;
 
 import static com.hubspot.jinjava.parse.ParserConstants.TOKEN_FIXED;
 
-import org.apache.commons.lang3.StringUtils;
+import java.io.IOException;
 
 public class FixedToken extends Token {
 
@@ -27,33 +27,73 @@ public class FixedToken extends Token {
     super(image, lineNumber);
   }
 
+  FixedToken(CharSequence source, int start, int end, int lineNumber) {
+    super(source, start, end, lineNumber);
+  }
+
   @Override
   public int getType() {
     return TOKEN_FIXED;
   }
 
+  /**
+   * For a token referring to its range of the template, the text is only copied out once output
+   * as a string.
+   */
   @Override
   protected void parse() {
     content = image;
   }
 
+  /**
+   * Text is written straight from the template by {@link #output(Appendable)}, so a token
+   * referencing the template doesn't keep a copy of it.
+   */
+  @Override
+  public void compact() {
+    super.compact();
+    if(image == null) {
+      content = null;
+    }
+  }
+
   public boolean isBlank() {
-    return StringUtils.isBlank(content);
+    for(int i = 0; i < length(); i++) {
+      if(!Character.isWhitespace(charAt(i))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public String trim() {
-    return content.trim();
+    return output().trim();
   }
 
   public String output() {
+    if(content == null) {
+      content = getImage();
+    }
     return content;
   }
 
+  /**
+   * Append this token's text to out, copying it straight from the template.
+   */
+  public void output(Appendable out) throws IOException {
+    if(content != null) {
+      out.append(content);
+    }
+    else {
+      appendTo(out, 0, length());
+    }
+  }
+
   @Override
   public String toString() {
     if (isBlank()) {
       return "{~ ~}";
     }
-    return "{~ " + content + " ~}";
+    return "{~ " + output() + " ~}";
   }
 }
@@ -25,6 +25,10 @@ public class NoteToken extends Token {
     super(image, lineNumber);
   }
 
+  NoteToken(CharSequence source, int start, int end, int lineNumber) {
+    super(source, start, end, lineNumber);
+  }
+
   @Override
   public int getType() {
     return TOKEN_NOTE;
@@ -17,40 +17,61 @@ package com.hubspot.jinjava.parse;
 
 import static com.hubspot.jinjava.parse.ParserConstants.TOKEN_TAG;
 
-import com.hubspot.jinjava.util.WhitespaceUtils;
-
 public class TagToken extends Token {
 
   private static final long serialVersionUID = 2766011408032384360L;
 
   private String tagName;
   private String helpers;
+  private int helpersStart;
   
   public TagToken(String image, int lineNumber) {
     super(image, lineNumber);
   }
 
+  TagToken(CharSequence source, int start, int end, int lineNumber) {
+    super(source, start, end, lineNumber);
+  }
+
   @Override
   public int getType() {
     return TOKEN_TAG;
   }
   
   /**
-   * Get tag name
+   * Get tag name; the helpers are only copied out of the content once asked for
    */
   @Override
   protected void parse() {
-    content = image.substring(2, image.length() - 2);
+    // "{%}" closes where it opens, leaving no content
+    int from = 2, to = Math.max(length() - 2, 2);
     
-    if(WhitespaceUtils.startsWith(content, "-")) {
+    int first = from;
+    while(first < to && Character.isWhitespace(charAt(first))) {
+      first++;
+    }
+    if(first < to && charAt(first) == '-') {
       setLeftTrim(true);
-      content = WhitespaceUtils.unwrap(content, "-", "");
+      from = first + 1;
+      while(to > from && Character.isWhitespace(charAt(to - 1))) {
+        to--;
+      }
+    }
+    
+    int last = to;
+    while(last > from && Character.isWhitespace(charAt(last - 1))) {
+      last--;
     }
-    if(WhitespaceUtils.endsWith(content, "-")) {
+    if(last > from && charAt(last - 1) == '-') {
       setRightTrim(true);
-      content = WhitespaceUtils.unwrap(content, "", "-");
+      to = last - 1;
+      while(from < to && Character.isWhitespace(charAt(from))) {
+        from++;
+      }
     }
     
+    content = substring(from, to);
+    
     int nameStart = -1, pos = 0, len = content.length();
 
     for(; pos < len; pos++) {
@@ -65,27 +86,40 @@ public class TagToken extends Token {
     
     if(pos < content.length()) {
       tagName = content.substring(nameStart, pos).toLowerCase();
-      helpers = content.substring(pos);
+      helpersStart = pos;
     } else {
       tagName = content.toLowerCase().trim();
       helpers = "";
     }
   }
 
+  /**
+   * Rendering only needs the tag name and helpers, so the rest of the content is dropped.
+   */
+  @Override
+  public void compact() {
+    super.compact();
+    getHelpers();
+    content = null;
+  }
+
   public String getTagName() {
     return tagName;
   }
 
   public String getHelpers() {
+    if(helpers == null) {
+      helpers = content.substring(helpersStart);
+    }
     return helpers;
   }
 
   @Override
   public String toString() {
-    if (helpers.length() == 0) {
+    if (getHelpers().length() == 0) {
       return "{% " + tagName + " %}";
     }
-    return "{% " + tagName + " " + helpers + " %}";
+    return "{% " + tagName + " " + getHelpers() + " %}";
   }
 
 }
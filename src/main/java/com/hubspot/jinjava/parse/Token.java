@@ -20,37 +20,129 @@ import static com.hubspot.jinjava.parse.ParserConstants.TOKEN_FIXED;
 import static com.hubspot.jinjava.parse.ParserConstants.TOKEN_NOTE;
 import static com.hubspot.jinjava.parse.ParserConstants.TOKEN_TAG;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 import com.hubspot.jinjava.interpret.UnexpectedTokenException;
 
-public abstract class Token implements Serializable {
+/**
+ * A token of template source. Tokens made by a {@link Tokenizer} referencing its source refer to
+ * their range of the template rather than copying it; their image, and any parts of it a token type
+ * exposes, are then only copied out once asked for.
+ */
+public abstract class Token implements Serializable, Cloneable {
 
   private static final long serialVersionUID = -7513379852268838992L;
 
+  // null until asked for, for tokens made from a range of the template
   protected String image;
   // useful for some token type
   protected String content;
 
   protected int lineNumber;
 
+  private final CharSequence source;
+  private final int start;
+  private final int end;
+
   private boolean leftTrim;
   private boolean rightTrim;
 
   public Token(String image, int lineNumber) {
     this.image = image;
+    this.source = image;
+    this.start = 0;
+    this.end = image.length();
+    this.lineNumber = lineNumber;
+    parse();
+  }
+
+  /**
+   * @param source the template this token is part of
+   * @param start offset of this token's first character in the template
+   * @param end offset after this token's last character in the template
+   */
+  protected Token(CharSequence source, int start, int end, int lineNumber) {
+    this.source = source;
+    this.start = start;
+    this.end = end;
     this.lineNumber = lineNumber;
     parse();
   }
 
   public String getImage() {
+    if(image == null) {
+      image = source.subSequence(start, end).toString();
+    }
     return image;
   }
 
+  /**
+   * @return the offset of this token's first character in the template, for tokens referencing the
+   *   template; 0 for tokens holding a copy of their image
+   */
+  public int getStartOffset() {
+    return start;
+  }
+
+  /**
+   * @return the length of this token's image
+   */
+  protected int length() {
+    return end - start;
+  }
+
+  /**
+   * @return the character at the given offset within this token's image
+   */
+  protected char charAt(int index) {
+    return source.charAt(start + index);
+  }
+
+  /**
+   * @return the given range of this token's image, copied out of the template
+   */
+  protected String substring(int from, int to) {
+    if(image != null) {
+      return image.substring(from, to);
+    }
+    return source.subSequence(start + from, start + to).toString();
+  }
+
+  /**
+   * Append the given range of this token's image to out, without copying it first.
+   */
+  protected void appendTo(Appendable out, int from, int to) throws IOException {
+    out.append(source, start + from, start + to);
+  }
+
+  /**
+   * Drop the copies of this token's text made so far, keeping what rendering needs; for a token
+   * referencing its template, anything dropped is copied out of it again if asked for.
+   */
+  public void compact() {
+    if(image != source) {
+      image = null;
+    }
+  }
+
   public int getLineNumber() {
     return lineNumber;
   }
 
+  /**
+   * @return a copy of this token, sharing its text, on a line the given number of lines further down
+   */
+  public Token moveLines(int lines) {
+    try {
+      Token copy = (Token) super.clone();
+      copy.lineNumber += lines;
+      return copy;
+    } catch (CloneNotSupportedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
   public boolean isLeftTrim() {
     return leftTrim;
   }
@@ -69,7 +161,7 @@ public abstract class Token implements Serializable {
   
   @Override
   public String toString() {
-    return image;
+    return getImage();
   }
 
   protected abstract void parse();
@@ -91,4 +183,19 @@ public abstract class Token implements Serializable {
     }
   }
 
+  static Token newToken(int tokenKind, CharSequence source, int start, int end, int lineNumber) {
+    switch (tokenKind) {
+    case TOKEN_FIXED:
+      return new FixedToken(source, start, end, lineNumber);
+    case TOKEN_NOTE:
+      return new NoteToken(source, start, end, lineNumber);
+    case TOKEN_ECHO:
+      return new EchoToken(source, start, end, lineNumber);
+    case TOKEN_TAG:
+      return new TagToken(source, start, end, lineNumber);
+    default:
+      throw new UnexpectedTokenException(String.valueOf((char) tokenKind), lineNumber);
+    }
+  }
+
 }
@@ -25,20 +25,44 @@ import com.hubspot.jinjava.interpret.TemplateSyntaxException;
 public class TokenParser implements Iterator<Token> {
 
   private JinjavaInterpreter interpreter;
-  private Tokenizer tm = new Tokenizer();
+  private final Tokenizer tm;
   private Token token;
+  private long tokenState;
+  private long lastTokenState;
   private boolean proceeding = true;
 
-  public TokenParser(JinjavaInterpreter interpreter, String text) {
+  public TokenParser(JinjavaInterpreter interpreter, CharSequence text) {
+    this(interpreter, text, false);
+  }
+
+  /**
+   * @param referenceSource whether tokens refer to their range of the text rather than copying it
+   * @see Tokenizer#Tokenizer(boolean)
+   */
+  public TokenParser(JinjavaInterpreter interpreter, CharSequence text, boolean referenceSource) {
     this.interpreter = interpreter;
+    this.tm = new Tokenizer(referenceSource);
     tm.init(text);
   }
 
+  /**
+   * Parse the tokens of text from the given offset on, continuing from an earlier parse of the same
+   * text up to that offset. Tokens refer to their range of the text rather than copying it.
+   * 
+   * @see Tokenizer#init(CharSequence, int, long)
+   */
+  public TokenParser(JinjavaInterpreter interpreter, CharSequence text, int start, long tokenState) {
+    this.interpreter = interpreter;
+    this.tm = new Tokenizer(true);
+    tm.init(text, start, tokenState);
+  }
+
   @Override
   public boolean hasNext() {
     if (proceeding) {
       try {
         token = tm.getNextToken();
+        tokenState = tm.getTokenState();
         if (token != null) {
           return true;
         } else {
@@ -63,6 +87,7 @@ public class TokenParser implements Iterator<Token> {
             proceeding = false;
             throw new NoSuchElementException();
           }
+          lastTokenState = tm.getTokenState();
           return tk;
         } catch (TemplateSyntaxException e) {
           interpreter.addError(TemplateError.fromException(e));
@@ -71,6 +96,7 @@ public class TokenParser implements Iterator<Token> {
       } else {
         Token last = token;
         token = null;
+        lastTokenState = tokenState;
         return last;
       }
     }
@@ -82,6 +108,14 @@ public class TokenParser implements Iterator<Token> {
     throw new UnsupportedOperationException();
   }
   
+  /**
+   * @return the tokenizer's state when it started reading the token last returned by {@link #next()}
+   * @see Tokenizer#getTokenState()
+   */
+  public long getLastTokenState() {
+    return lastTokenState;
+  }
+
   public JinjavaInterpreter getInterpreter() {
     return interpreter;
   }
@@ -24,9 +24,20 @@ import static com.hubspot.jinjava.parse.ParserConstants.TOKEN_POSTFIX;
 import static com.hubspot.jinjava.parse.ParserConstants.TOKEN_PREFIX;
 import static com.hubspot.jinjava.parse.ParserConstants.TOKEN_TAG;
 
+/**
+ * Splits a template into tokens. The template is read in place; by default each token's image is
+ * copied out of it as the token is made. A tokenizer referencing the source instead makes tokens which
+ * refer to their range of the template, so that text is only copied once a token's content is needed.
+ */
 public class Tokenizer {
 
-  private char[] is;
+  /**
+   * The state of a tokenizer at the start of a template, for {@link #init(CharSequence, int, long)}.
+   */
+  public static final long INITIAL_STATE = 1L << 32;
+
+  private final boolean referenceSource;
+  private CharSequence is;
   private int currPost = 0;
   private int tokenStart = 0;
   private int tokenLength = 0;
@@ -38,25 +49,66 @@ public class Tokenizer {
   private int inBlock = 0;
   private char inQuote = 0;
   private int currLine = 1;
+  private long tokenState = 0;
 
-  public void init(String inputstream) {
-    is = inputstream.toCharArray();
-    length = inputstream.length();
-    currPost = 0;
-    tokenStart = 0;
+  public Tokenizer() {
+    this(false);
+  }
+
+  /**
+   * @param referenceSource whether tokens refer to their range of the template rather than holding
+   *   a copy of it; the template then mustn't change for as long as tokens made from it are in use
+   */
+  public Tokenizer(boolean referenceSource) {
+    this.referenceSource = referenceSource;
+  }
+
+  /**
+   * @param inputstream template to tokenize
+   */
+  public void init(CharSequence inputstream) {
+    init(inputstream, 0, INITIAL_STATE);
     tokenKind = -1;
-    lastStart = 0;
-    inComment = 0;
-    inRaw = 0;
-    inBlock = 0;
-    inQuote = 0;
-    currLine = 1;
+  }
+
+  /**
+   * Start tokenizing part way through a template, as if it had been tokenized up to the given offset.
+   * 
+   * @param inputstream template to tokenize
+   * @param start offset of the first token to read
+   * @param state the tokenizer's state when it started reading the token at that offset, as
+   *   returned by {@link #getTokenState()}
+   */
+  public void init(CharSequence inputstream, int start, long state) {
+    is = inputstream;
+    length = inputstream.length();
+    currPost = start;
+    tokenStart = start;
+    lastStart = start;
+    tokenKind = (int) (state & 0xff);
+    inComment = (int) (state >> 8) & 1;
+    inRaw = (int) (state >> 9) & 1;
+    inBlock = (int) (state >> 10) & 1;
+    inQuote = (char) (state >> 16);
+    currLine = (int) (state >>> 32);
+  }
+
+  /**
+   * @return the state this tokenizer was in when it started reading the last token returned,
+   *   including the line number. Two tokenizers in the same state at the same text make the same
+   *   tokens from it.
+   */
+  public long getTokenState() {
+    return tokenState;
   }
 
   public Token getNextToken() {
+    // no token kind yet is read the same as plain text; only whether a block is open matters
+    tokenState = (long) currLine << 32
+        | Math.max(tokenKind, 0) | inComment << 8 | inRaw << 9 | (inBlock > 0 ? 1 : 0) << 10 | inQuote << 16;
     char c = 0;
     while (currPost < length) {
-      c = is[currPost++];
+      c = is.charAt(currPost++);
       if (currPost == length) {
         return getEndToken();
       }
@@ -66,7 +118,7 @@ public class Tokenizer {
           if(inQuote != c) {
             continue;
           }
-          else if(is[currPost - 2] == '\\') {
+          else if(is.charAt(currPost - 2) == '\\') {
             continue;
           }
           else {
@@ -83,7 +135,7 @@ public class Tokenizer {
       switch (c) {
       case TOKEN_PREFIX:
         if (currPost < length) {
-          c = is[currPost];
+          c = is.charAt(currPost);
           switch (c) {
           case TOKEN_NOTE:
             if(inComment == 1 || inRaw == 1) {
@@ -148,7 +200,7 @@ public class Tokenizer {
           continue;
         }
         if (currPost < length) {
-          c = is[currPost];
+          c = is.charAt(currPost);
           if (c == TOKEN_POSTFIX) {
             inBlock = 0;
 
@@ -171,7 +223,7 @@ public class Tokenizer {
           continue;
         }
         if (currPost < length) {
-          c = is[currPost];
+          c = is.charAt(currPost);
           if (c == TOKEN_POSTFIX) {
             inComment = 0;
 
@@ -209,7 +261,7 @@ public class Tokenizer {
   private boolean isEndRaw() {
     int pos = currPost + 1;
     while(pos < length) {
-      if(!Character.isWhitespace(is[pos++])) {
+      if(!Character.isWhitespace(is.charAt(pos++))) {
         break;
       }
     }
@@ -218,7 +270,16 @@ public class Tokenizer {
       return false;
     }
     
-    return "endraw".equals(String.valueOf(is, pos - 1, 6));
+    return regionMatches(pos - 1, "endraw");
+  }
+  
+  private boolean regionMatches(int offset, String s) {
+    for(int i = 0; i < s.length(); i++) {
+      if(is.charAt(offset + i) != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
   }
   
   private Token getEndToken() {
@@ -227,11 +288,11 @@ public class Tokenizer {
     if (inComment > 0) {
       type = TOKEN_NOTE;
     }
-    return Token.newToken(type, String.valueOf(is, tokenStart, tokenLength), currLine);
+    return token(type, tokenStart, tokenStart + tokenLength);
   }
 
   private Token newToken(int kind) {
-    Token t = Token.newToken(kind, String.copyValueOf(is, lastStart, tokenLength), currLine);
+    Token t = token(kind, lastStart, lastStart + tokenLength);
     
     if(t instanceof TagToken) {
       TagToken tt = (TagToken) t;
@@ -246,12 +307,19 @@ public class Tokenizer {
     }
 
     if(inRaw > 0 && t.getType() != TOKEN_FIXED) {
-      return Token.newToken(TOKEN_FIXED, t.image, currLine);
+      return token(TOKEN_FIXED, lastStart, lastStart + tokenLength);
     }
     
     return t;
   }
 
+  private Token token(int kind, int start, int end) {
+    if(referenceSource) {
+      return Token.newToken(kind, is, start, end, currLine);
+    }
+    return Token.newToken(kind, is.subSequence(start, end).toString(), currLine);
+  }
+
   private boolean matchToken(char kind) {
     if (kind == TOKEN_ECHO) {
       return tokenKind == TOKEN_ECHO2;
@@ -0,0 +1,284 @@
+/**********************************************************************
+Copyright (c) 2014 HubSpot Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ **********************************************************************/
+package com.hubspot.jinjava.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.TemplateError;
+import com.hubspot.jinjava.parse.Token;
+import com.hubspot.jinjava.parse.TokenParser;
+import com.hubspot.jinjava.parse.Tokenizer;
+
+/**
+ * A parse tree which remembers the part of its template each top level node was parsed from, so that
+ * after an edit of the template only the nodes around the edit are parsed again. The new tree reuses
+ * the nodes parsed from the rest of the template: top level nodes are copied, leaving this tree
+ * unchanged, while their children are shared with it and still report the original node as their
+ * parent. When the edit adds or removes lines, the nodes after it are instead copied along with
+ * everything below them, and moved to their new lines.
+ *
+ * Only top level nodes are reused. An edit inside a tag parses that whole tag again, so in a template
+ * which is mostly one tag, such as a child template whose content is in block tags, most of the
+ * template is parsed again on each edit.
+ */
+public final class EditableTree {
+
+  // reused tokens refer to the version of the template they were read from; past this many
+  // versions, an edit parses the template in full rather than keep them all
+  private static final int MAX_REFERENCED_SOURCES = 8;
+
+  private final String source;
+  private final Node root;
+  private final List<Segment> segments;
+
+  private EditableTree(String source, Node root, List<Segment> segments) {
+    this.source = source;
+    this.root = root;
+    this.segments = segments;
+  }
+
+  /**
+   * Parse the given template, adding any errors found to the interpreter.
+   */
+  public static EditableTree parse(JinjavaInterpreter interpreter, String source) {
+    Node root = new RootNode();
+    List<Segment> segments = new ArrayList<Segment>();
+    parse(interpreter, source, 0, Tokenizer.INITIAL_STATE, root, segments, null, 0, 0, 0);
+    return finish(interpreter, source, root, segments);
+  }
+
+  /**
+   * Parse the template made by replacing part of this tree's template, adding any errors found in
+   * the edited template to the interpreter. This tree is left unchanged.
+   * 
+   * @param offset offset of the first character replaced
+   * @param removedLength number of characters replaced
+   * @param inserted text replacing them
+   */
+  public EditableTree edit(JinjavaInterpreter interpreter, int offset, int removedLength, String inserted) {
+    String edited = applyEdit(source, offset, removedLength, inserted);
+
+    // a node's tokens may look a couple of characters past its end for the start of the next token
+    int first = Math.max(0, indexAt(segments, offset - 2));
+    int start = 0;
+    long tokenState = Tokenizer.INITIAL_STATE;
+    if (first < segments.size()) {
+      start = segments.get(first).start;
+      tokenState = segments.get(first).tokenState;
+    }
+
+    Node editedRoot = new RootNode();
+    List<Segment> editedSegments = new ArrayList<Segment>(segments.size() + 1);
+    for (int i = 0; i < first; i++) {
+      reuse(editedRoot, editedSegments, segments.get(i));
+    }
+
+    int lines = countLines(inserted, 0, inserted.length()) - countLines(source, offset, offset + removedLength);
+    parse(interpreter, edited, start, tokenState, editedRoot, editedSegments, this,
+        offset + removedLength, inserted.length() - removedLength, lines);
+
+    Set<String> sources = Sets.newIdentityHashSet();
+    for (Segment segment : editedSegments) {
+      sources.add(segment.source);
+    }
+    if (sources.size() > MAX_REFERENCED_SOURCES) {
+      return parse(interpreter, edited);
+    }
+
+    return finish(interpreter, edited, editedRoot, editedSegments);
+  }
+
+  /**
+   * @return the given template with length characters from offset replaced by inserted
+   * @throws IllegalArgumentException if the replaced characters aren't all within the template
+   */
+  public static String applyEdit(String source, int offset, int length, String inserted) {
+    if (offset < 0 || length < 0 || offset + length > source.length()) {
+      throw new IllegalArgumentException("Can't replace " + length + " characters at offset " + offset
+          + " of a template " + source.length() + " characters long");
+    }
+    return new StringBuilder(source.length() - length + inserted.length())
+        .append(source, 0, offset)
+        .append(inserted)
+        .append(source, offset + length, source.length())
+        .toString();
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public Node getRoot() {
+    return root;
+  }
+
+  /**
+   * @return errors found while parsing the template, in the order a full parse would find them
+   */
+  public List<TemplateError> getErrors() {
+    List<TemplateError> errors = new ArrayList<TemplateError>();
+    for (Segment segment : segments) {
+      errors.addAll(segment.errors);
+    }
+    return Collections.unmodifiableList(errors);
+  }
+
+  /**
+   * Parse the top level nodes of source from start on, adding a segment for each. When previous is
+   * given, parsing stops at the first node starting at the same text and in the same tokenizer state
+   * as one of its nodes at or after editEnd, apart from being the given number of lines further down.
+   * That node is reused along with all of the nodes after it.
+   */
+  private static void parse(JinjavaInterpreter interpreter, String source, int start, long tokenState, Node root, List<Segment> segments, EditableTree previous, int editEnd, int delta, int lines) {
+    TokenParser parser = new TokenParser(interpreter, source, start, tokenState);
+    List<TemplateError> errors = interpreter.getErrors();
+    int errorsFrom = errors.size();
+
+    int segmentStart = start;
+    long segmentState = tokenState;
+    Node node = null;
+    boolean open = false;
+    while (parser.hasNext()) {
+      Token token = parser.next();
+      int tokenStart = token.getStartOffset();
+      if (open) {
+        segments.add(new Segment(source, segmentStart, segmentState, node, takeErrors(errors, errorsFrom)));
+        segmentStart = tokenStart;
+        open = false;
+      }
+      segmentState = parser.getLastTokenState();
+
+      if (previous != null && tokenStart - delta >= editEnd) {
+        List<Segment> reusable = previous.segments;
+        int i = indexAt(reusable, tokenStart - delta);
+        if (i >= 0 && reusable.get(i).start == tokenStart - delta && reusable.get(i).tokenState + ((long) lines << 32) == segmentState) {
+          for (; i < reusable.size(); i++) {
+            reuse(root, segments, reusable.get(i).shift(delta, lines));
+          }
+          return;
+        }
+      }
+
+      if (TreeParser.isEndTag(token, RootNode.TREE_ROOT_END)) {
+        break;
+      }
+      Node last = root.getChildren().getLast();
+      TreeParser.parse(root, token, parser);
+      node = root.getChildren().getLast() != last ? root.getChildren().getLast() : null;
+      open = true;
+    }
+    if (open) {
+      segments.add(new Segment(source, segmentStart, segmentState, node, takeErrors(errors, errorsFrom)));
+    }
+  }
+
+  private static void reuse(Node root, List<Segment> segments, Segment segment) {
+    if (segment.node != null) {
+      root.add(segment.node.copy());
+    }
+    segments.add(segment);
+  }
+
+  private static EditableTree finish(JinjavaInterpreter interpreter, String source, Node root, List<Segment> segments) {
+    for (Segment segment : segments) {
+      for (TemplateError error : segment.errors) {
+        interpreter.addError(error);
+      }
+    }
+    return new EditableTree(source, root, Collections.unmodifiableList(segments));
+  }
+
+  private static List<TemplateError> takeErrors(List<TemplateError> errors, int from) {
+    if (errors.size() == from) {
+      return Collections.emptyList();
+    }
+    List<TemplateError> added = errors.subList(from, errors.size());
+    List<TemplateError> taken = ImmutableList.copyOf(added);
+    added.clear();
+    return taken;
+  }
+
+  private static int countLines(String s, int from, int to) {
+    int count = 0;
+    for (int i = from; i < to; i++) {
+      if (s.charAt(i) == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the index of the last segment starting at or before offset, or -1 if there is none
+   */
+  private static int indexAt(List<Segment> segments, int offset) {
+    int low = 0;
+    int high = segments.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (segments.get(mid).start <= offset) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  /**
+   * A top level node, or a comment or unknown tag which produced no node, along with the errors
+   * found while parsing it.
+   */
+  private static final class Segment {
+    private final String source;
+    private final int start;
+    // includes the line number the segment starts on, in the upper 32 bits
+    private final long tokenState;
+    private final Node node;
+    private final List<TemplateError> errors;
+
+    Segment(String source, int start, long tokenState, Node node, List<TemplateError> errors) {
+      this.source = source;
+      this.start = start;
+      this.tokenState = tokenState;
+      this.node = node;
+      this.errors = errors;
+    }
+
+    Segment shift(int delta, int lines) {
+      if (lines != 0) {
+        List<TemplateError> movedErrors = new ArrayList<TemplateError>(errors.size());
+        for (TemplateError e : errors) {
+          movedErrors.add(new TemplateError(e.getSeverity(), e.getReason(), e.getMessage(), e.getFieldName(),
+              e.getLineno() == null ? null : e.getLineno() + lines, e.getException()));
+        }
+        return new Segment(source, start + delta, tokenState + ((long) lines << 32),
+            node == null ? null : node.copyMovedLines(lines), movedErrors);
+      }
+      if (delta == 0) {
+        return this;
+      }
+      return new Segment(source, start + delta, tokenState, node, errors);
+    }
+  }
+
+}
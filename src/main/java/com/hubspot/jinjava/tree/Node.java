@@ -15,29 +15,40 @@ limitations under the License.
  **********************************************************************/
 package com.hubspot.jinjava.tree;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.parse.Token;
 
+/**
+ * A node of a parsed template. Nodes keep no links to their siblings; a node's children are held in
+ * an array by its {@link NodeList}, and nodes without children all share one empty list.
+ *
+ * Templates cached by {@link com.hubspot.jinjava.Jinjava#compile(String)} are made {@link #compact()}
+ * once parsed: their child lists are trimmed to size and can no longer be changed, and their tokens
+ * drop the copies of template text made while parsing.
+ */
 public abstract class Node implements Serializable, Cloneable {
 
   private static final long serialVersionUID = 7323842986596895498L;
 
-  private int level = 0;
-  private int lineNumber = 0;
   private Node parent = null;
-  private Node predecessor = null;
-  private Node successor = null;
-  private NodeList children = new NodeList();
+  private NodeList children = NodeList.EMPTY;
   private Token master;
 
-  public Node(Token master, int lineNumber) {
+  public Node(Token master) {
     this.master = master;
-    this.lineNumber = lineNumber;
   }
 
+  /**
+   * @return the number of nodes above this one
+   */
   public int getLevel() {
+    int level = 0;
+    for (Node n = parent; n != null; n = n.parent) {
+      level++;
+    }
     return level;
   }
   
@@ -49,20 +60,18 @@ public abstract class Node implements Serializable, Cloneable {
     this.parent = parent;
   }
   
+  /**
+   * @return the node before this one among its parent's children, found in time linear in their number
+   */
   public Node getPredecessor() {
-    return predecessor;
+    return parent == null ? null : parent.children.before(this);
   }
 
-  public void setPredecessor(Node predecessor) {
-    this.predecessor = predecessor;
-  }
-  
+  /**
+   * @return the node after this one among its parent's children, found in time linear in their number
+   */
   public Node getSuccessor() {
-    return successor;
-  }
-
-  public void setSuccessor(Node successor) {
-    this.successor = successor;
+    return parent == null ? null : parent.children.after(this);
   }
   
   public Token getMaster() {
@@ -70,7 +79,7 @@ public abstract class Node implements Serializable, Cloneable {
   }
   
   public int getLineNumber() {
-    return lineNumber;
+    return master == null ? 0 : master.getLineNumber();
   }
 
   public NodeList getChildren() {
@@ -90,20 +99,23 @@ public abstract class Node implements Serializable, Cloneable {
    * @param node
    */
   void add(Node node) {
-    node.level = level + 1;
+    if (children == NodeList.EMPTY) {
+      children = new NodeList();
+    }
     node.parent = this;
     children.add(node);
   }
 
   Node treeNext() {
     if (children.size > 0) {
-      return children.head;
+      return children.getFirst();
     } else {
       return recursiveNext();
     }
   }
 
   Node recursiveNext() {
+    Node successor = getSuccessor();
     if (successor != null) {
       return successor;
     } else {
@@ -115,15 +127,65 @@ public abstract class Node implements Serializable, Cloneable {
     }
   }
 
-  void computeLevel(int baseLevel) {
-    level = baseLevel;
+  /**
+   * @return a copy of this node, sharing its children, which isn't yet part of a tree
+   */
+  Node copy() {
+    try {
+      Node copy = (Node) super.clone();
+      copy.parent = null;
+      return copy;
+    } catch (CloneNotSupportedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * @return a copy of this node and all nodes below it, moved the given number of lines down, which
+   *   isn't yet part of a tree
+   */
+  Node copyMovedLines(int lines) {
+    Node copy = copy();
+    if (master != null) {
+      copy.master = master.moveLines(lines);
+    }
+    copy.children = NodeList.EMPTY;
     for (Node child : children) {
-      child.computeLevel(level + 1);
+      copy.add(child.copyMovedLines(lines));
+    }
+    return copy;
+  }
+
+  /**
+   * Make this tree compact for keeping: trim each child list to size, sharing one empty list between
+   * nodes without children, and drop the copies of template text their tokens made while parsing,
+   * which are copied out again only if asked for. The child lists can't be changed afterwards.
+   * Subtrees which are already compact are left as they are.
+   */
+  public void compact() {
+    if (!children.isCompact()) {
+      for (Node child : children) {
+        child.compact();
+      }
+      children = children.isEmpty() ? NodeList.EMPTY : children.compact();
+    }
+    if (master != null) {
+      master.compact();
     }
   }
 
   public abstract String render(JinjavaInterpreter interpreter);
 
+  /**
+   * Render this node, appending its output to the given appendable. Nodes whose output is
+   * made up of other nodes' output should override this to avoid intermediate strings.
+   * 
+   * @throws IOException only if writing to out fails
+   */
+  public void render(JinjavaInterpreter interpreter, Appendable out) throws IOException {
+    out.append(render(interpreter));
+  }
+
   public abstract String getName();
 
 }
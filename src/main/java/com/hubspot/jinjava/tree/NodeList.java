@@ -16,15 +16,27 @@ limitations under the License.
 package com.hubspot.jinjava.tree;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Iterator;
-
+import java.util.NoSuchElementException;
+
+/**
+ * The children of a node, in an array. Lists of a compact tree are trimmed to size and can't be
+ * changed; all nodes without children share {@link #EMPTY}.
+ *
+ * @see Node#compact()
+ */
 public class NodeList implements Iterable<Node>, Serializable, Cloneable {
 
   private static final long serialVersionUID = -8672835620582591304L;
 
-  Node head = null;
-  Node tail = null;
-  transient int size = 0;
+  private static final Node[] NO_NODES = new Node[0];
+
+  static final NodeList EMPTY = new NodeList().compact();
+
+  private Node[] nodes = NO_NODES;
+  int size = 0;
+  private boolean compact;
 
   public NodeList() {}
   
@@ -40,34 +52,72 @@ public class NodeList implements Iterable<Node>, Serializable, Cloneable {
    * @param node
    */
   void add(Node node) {
-    if (head == null) {
-      head = tail = node;
-    } else {
-      tail.setSuccessor(node);
-      node.setPredecessor(tail);
-      tail = node;
+    checkNotCompact();
+    if (size == nodes.length) {
+      nodes = Arrays.copyOf(nodes, Math.max(4, size * 2));
     }
-    size++;
+    nodes[size++] = node;
   }
 
   boolean remove(Node e) {
-    if (e == null || head == null || e.getParent() != head.getParent()) {
+    int index = indexOf(e);
+    if (index < 0) {
       return false;
     }
-    if (e == head) {
-      head = head.getSuccessor();
-      head.setPredecessor(null);
-    } else if (e == tail) {
-      tail = tail.getPredecessor();
-      tail.setSuccessor(null);
-    } else {
-      e.getPredecessor().setSuccessor(e.getSuccessor());
-      e.getSuccessor().setPredecessor(e.getPredecessor());
-    }
-    size--;
+    remove(index);
     return true;
   }
 
+  private void remove(int index) {
+    checkNotCompact();
+    System.arraycopy(nodes, index + 1, nodes, index, size - index - 1);
+    nodes[--size] = null;
+  }
+
+  private void checkNotCompact() {
+    if (compact) {
+      throw new UnsupportedOperationException("The nodes of a compact tree can't be changed");
+    }
+  }
+
+  /**
+   * @return this list, trimmed to size, after which it can't be changed
+   */
+  NodeList compact() {
+    if (nodes.length != size) {
+      nodes = size == 0 ? NO_NODES : Arrays.copyOf(nodes, size);
+    }
+    compact = true;
+    return this;
+  }
+
+  boolean isCompact() {
+    return compact;
+  }
+
+  private Object readResolve() {
+    return compact && size == 0 ? EMPTY : this;
+  }
+
+  private int indexOf(Node node) {
+    for (int i = 0; i < size; i++) {
+      if (nodes[i] == node) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  Node before(Node node) {
+    int index = indexOf(node);
+    return index > 0 ? nodes[index - 1] : null;
+  }
+
+  Node after(Node node) {
+    int index = indexOf(node);
+    return index >= 0 && index + 1 < size ? nodes[index + 1] : null;
+  }
+
   public boolean isEmpty() {
     return size == 0;
   }
@@ -82,22 +132,16 @@ public class NodeList implements Iterable<Node>, Serializable, Cloneable {
   }
 
   public Node getFirst() {
-    return head;
+    return size == 0 ? null : nodes[0];
   }
 
   public Node getLast() {
-    return tail;
+    return size == 0 ? null : nodes[size - 1];
   }
 
   @Override
   public NodeList clone() {
-    NodeList clone = new NodeList();
-    for (Node node : this) {
-      Node temp = node.clone();
-      temp.setParent(head.getParent());
-      clone.add(temp);
-    }
-    return clone;
+    return clone(size == 0 ? null : nodes[0].getParent());
   }
 
   NodeList clone(Node parent) {
@@ -112,31 +156,31 @@ public class NodeList implements Iterable<Node>, Serializable, Cloneable {
 
   private class NodeItr implements Iterator<Node> {
 
-    Node cursor;
-
-    NodeItr() {
-      cursor = head;
-    }
+    int cursor;
+    int last = -1;
 
     @Override
     public boolean hasNext() {
-      return cursor != null;
+      return cursor < size;
     }
 
     @Override
     public Node next() {
-      Node temp = cursor;
-      if (cursor != tail) {
-        cursor = cursor.getSuccessor();
-      } else {
-        cursor = null;
+      if (cursor >= size) {
+        throw new NoSuchElementException();
       }
-      return temp;
+      last = cursor++;
+      return nodes[last];
     }
 
     @Override
     public void remove() {
-      NodeList.this.remove(cursor);
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      NodeList.this.remove(last);
+      cursor = last;
+      last = -1;
     }
 
   }
@@ -22,8 +22,24 @@ public class RootNode extends Node {
   private static final long serialVersionUID = 97675838726004658L;
   public static final String TREE_ROOT_END = "anysome";
 
+  private transient Boolean usesInheritance;
+
   RootNode() {
-    super(null, 0);
+    super(null);
+  }
+
+  /**
+   * @return whether the tree contains block or extends tags, as found by
+   *   {@link JinjavaInterpreter#usesInheritance(Node)} the first time this is called; the tree
+   *   shouldn't be modified after being rendered
+   */
+  public boolean usesInheritance() {
+    Boolean result = usesInheritance;
+    if (result == null) {
+      result = JinjavaInterpreter.usesInheritance(this);
+      usesInheritance = result;
+    }
+    return result;
   }
 
   @Override
@@ -15,53 +15,97 @@ limitations under the License.
  **********************************************************************/
 package com.hubspot.jinjava.tree;
 
+import java.io.IOException;
+
 import com.hubspot.jinjava.interpret.InterpretException;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.RenderProfiler;
 import com.hubspot.jinjava.interpret.UnknownTagException;
+import com.hubspot.jinjava.lib.LibraryBinding;
+import com.hubspot.jinjava.lib.tag.PreparedTag;
+import com.hubspot.jinjava.lib.tag.StreamingTag;
 import com.hubspot.jinjava.lib.tag.Tag;
+import com.hubspot.jinjava.lib.tag.TagLibrary;
 import com.hubspot.jinjava.parse.TagToken;
 
 public class TagNode extends Node {
 
   private static final long serialVersionUID = 2405693063353887509L;
 
-  private TagToken master;
   private String endName = null;
+  private transient volatile LibraryBinding<BoundTag> bound;
 
   public TagNode(TagToken token, JinjavaInterpreter interpreter) {
-    super(token, token.getLineNumber());
-    master = token;
-    Tag tag = interpreter.getContext().getTag(master.getTagName());
-    if (tag == null) {
-      throw new UnknownTagException(master.getTagName(), master.getImage(), token.getLineNumber());
+    super(token);
+    BoundTag tag = bind(interpreter);
+    if (tag.tag == null) {
+      throw new UnknownTagException(token.getTagName(), token.getImage(), token.getLineNumber());
     }
-    endName = tag.getEndTagName();
+    endName = tag.tag.getEndTagName();
+    tag.prepare(this, interpreter);
   }
   
   private TagNode(TagNode n) {
-    super(n.master, n.getLineNumber());
-    master = n.master;
+    super(n.getMaster());
     endName = n.endName;
+    bound = n.bound;
+  }
+
+  @Override
+  public TagToken getMaster() {
+    return (TagToken) super.getMaster();
   }
 
   @Override
   public String render(JinjavaInterpreter interpreter) {
-    Tag tag = interpreter.getContext().getTag(master.getTagName());
+    Tag tag = getTag(interpreter);
+    RenderProfiler profiler = interpreter.getProfiler();
+    if (profiler != null) {
+      profiler.start(RenderProfiler.Kind.TAG, getName(), getLineNumber());
+    }
     try {
       return tag.interpret(this, interpreter);
     } catch (Exception e) {
-      throw new InterpretException("Error rendering tag", e, master.getLineNumber());
+      throw new InterpretException("Error rendering tag", e, getLineNumber());
+    } finally {
+      if (profiler != null) {
+        profiler.stop();
+      }
+    }
+  }
+
+  @Override
+  public void render(JinjavaInterpreter interpreter, Appendable out) throws IOException {
+    Tag tag = getTag(interpreter);
+    RenderProfiler profiler = interpreter.getProfiler();
+    if (profiler != null) {
+      profiler.start(RenderProfiler.Kind.TAG, getName(), getLineNumber());
+    }
+    try {
+      if (tag instanceof StreamingTag) {
+        ((StreamingTag) tag).interpret(this, interpreter, out);
+      } else {
+        out.append(tag.interpret(this, interpreter));
+      }
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new InterpretException("Error rendering tag", e, getLineNumber());
+    } finally {
+      if (profiler != null) {
+        profiler.stop();
+      }
     }
   }
 
   @Override
   public String toString() {
-    return master.toString();
+    return getMaster().toString();
   }
 
   @Override
   public String getName() {
-    return master.getTagName();
+    return getMaster().getTagName();
   }
   
   public String getEndName() {
@@ -69,7 +113,60 @@ public class TagNode extends Node {
   }
 
   public String getHelpers() {
-    return master.getHelpers();
+    return getMaster().getHelpers();
+  }
+  
+  /**
+   * @return the value prepared for this node by the {@link PreparedTag} implementing it, or null
+   *   if the tag isn't a prepared tag or couldn't prepare its helpers. The value is prepared at parse
+   *   time, and again whenever the node is bound to another tag.
+   */
+  public Object getPrepared(JinjavaInterpreter interpreter) {
+    return bind(interpreter).prepare(this, interpreter);
+  }
+  
+  /**
+   * @return the tag implementing this node. The tag is resolved when the node is parsed and kept
+   *   for as long as it is rendered against the same tag library, and no other tag has been
+   *   registered in it; otherwise it is looked up again in the rendering interpreter's context.
+   */
+  public Tag getTag(JinjavaInterpreter interpreter) {
+    return bind(interpreter).tag;
+  }
+  
+  private BoundTag bind(JinjavaInterpreter interpreter) {
+    TagLibrary library = interpreter.getContext().getSharedTagLibrary();
+    LibraryBinding<BoundTag> b = bound;
+    if (b != null && b.isCurrent(library)) {
+      return b.getValue();
+    }
+    
+    long version = library == null ? 0 : library.getVersion();
+    Tag tag = interpreter.getContext().getTag(getMaster().getTagName());
+    // keep the prepared value while the lookup finds the same tag
+    BoundTag boundTag = b != null && b.getValue().tag == tag ? b.getValue() : new BoundTag(tag);
+    bound = new LibraryBinding<BoundTag>(library, version, boundTag);
+    return boundTag;
+  }
+  
+  private static final class BoundTag {
+    private static final Object UNPREPARED = new Object();
+    
+    private final Tag tag;
+    private volatile Object prepared = UNPREPARED;
+    
+    BoundTag(Tag tag) {
+      this.tag = tag;
+    }
+    
+    Object prepare(TagNode node, JinjavaInterpreter interpreter) {
+      Object p = prepared;
+      if (p == UNPREPARED) {
+        p = tag instanceof PreparedTag ? ((PreparedTag) tag).prepare(node, interpreter) : null;
+        prepared = p;
+      }
+      return p;
+    }
   }
   
   @Override
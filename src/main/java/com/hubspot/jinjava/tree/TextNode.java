@@ -15,6 +15,8 @@ limitations under the License.
  **********************************************************************/
 package com.hubspot.jinjava.tree;
 
+import java.io.IOException;
+
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.parse.FixedToken;
 
@@ -22,21 +24,28 @@ public class TextNode extends Node {
   private static final String NAME = "Text_Node";
   private static final long serialVersionUID = 8488738480534354216L;
 
-  private FixedToken master;
-
   public TextNode(FixedToken token) {
-    super(token, token.getLineNumber());
-    master = token;
+    super(token);
+  }
+
+  @Override
+  public FixedToken getMaster() {
+    return (FixedToken) super.getMaster();
   }
 
   @Override
   public String render(JinjavaInterpreter interpreter) {
-    return master.output();
+    return getMaster().output();
+  }
+
+  @Override
+  public void render(JinjavaInterpreter interpreter, Appendable out) throws IOException {
+    getMaster().output(out);
   }
 
   @Override
   public String toString() {
-    return master.toString();
+    return getMaster().toString();
   }
 
   @Override
@@ -46,7 +55,7 @@ public class TextNode extends Node {
 
   @Override
   public Node clone() {
-    Node clone = new TextNode(master);
+    Node clone = new TextNode(getMaster());
     clone.setChildren(this.getChildren().clone(clone));
     return clone;
   }
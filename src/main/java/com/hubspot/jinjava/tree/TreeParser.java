@@ -43,38 +43,12 @@ public final class TreeParser {
 
   private static void tree(Node node, TokenParser parser, String endName) {
     Token token;
-    TagToken tag;
     while (parser.hasNext()) {
       token = parser.next();
-      switch (token.getType()) {
-      case TOKEN_FIXED:
-        TextNode tn = new TextNode((FixedToken) token);
-        node.add(tn);
-        break;
-      case TOKEN_NOTE:
-        break;
-      case TOKEN_ECHO:
-        VariableNode vn = new VariableNode((EchoToken) token);
-        node.add(vn);
-        break;
-      case TOKEN_TAG:
-        tag = (TagToken) token;
-        if (tag.getTagName().equalsIgnoreCase(endName)) {
-          return;
-        }
-        try {
-          TagNode tg = new TagNode((TagToken) token, parser.getInterpreter());
-          node.add(tg);
-          if (tg.getEndName() != null) {
-            tree(tg, parser, tg.getEndName());
-          }
-        } catch (UnknownTagException e) {
-          parser.getInterpreter().addError(TemplateError.fromException(e));
-        }
-        break;
-      default:
-        parser.getInterpreter().addError(TemplateError.fromException(new UnexpectedTokenException(token.getImage(), node.getLineNumber())));
+      if (isEndTag(token, endName)) {
+        return;
       }
+      parse(node, token, parser);
     }
     // can't reach end tag
     if (endName != null && !endName.equals(RootNode.TREE_ROOT_END)) {
@@ -82,4 +56,41 @@ public final class TreeParser {
           new MissingEndTagException(endName, node.toString(), node.getLineNumber())));
     }
   }
+
+  static boolean isEndTag(Token token, String endName) {
+    return token.getType() == TOKEN_TAG && ((TagToken) token).getTagName().equalsIgnoreCase(endName);
+  }
+
+  /**
+   * Parse the node starting with the given token, adding it to node. A tag with an end tag is parsed
+   * along with everything up to its end tag.
+   */
+  static void parse(Node node, Token token, TokenParser parser) {
+    switch (token.getType()) {
+    case TOKEN_FIXED:
+      TextNode tn = new TextNode((FixedToken) token);
+      node.add(tn);
+      break;
+    case TOKEN_NOTE:
+      break;
+    case TOKEN_ECHO:
+      EchoToken echo = (EchoToken) token;
+      VariableNode vn = new VariableNode(echo, parser.getInterpreter().compileELExpression(echo.getExpr()));
+      node.add(vn);
+      break;
+    case TOKEN_TAG:
+      try {
+        TagNode tg = new TagNode((TagToken) token, parser.getInterpreter());
+        node.add(tg);
+        if (tg.getEndName() != null) {
+          tree(tg, parser, tg.getEndName());
+        }
+      } catch (UnknownTagException e) {
+        parser.getInterpreter().addError(TemplateError.fromException(e));
+      }
+      break;
+    default:
+      parser.getInterpreter().addError(TemplateError.fromException(new UnexpectedTokenException(token.getImage(), node.getLineNumber())));
+    }
+  }
 }
@@ -17,7 +17,9 @@ package com.hubspot.jinjava.tree;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.hubspot.jinjava.el.CompiledExpression;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.RenderProfiler;
 import com.hubspot.jinjava.parse.EchoToken;
 import com.hubspot.jinjava.util.Logging;
 import com.hubspot.jinjava.util.ObjectValue;
@@ -27,19 +29,48 @@ public class VariableNode extends Node {
   private static final String NAME = "Variable_Node";
 
   private static final long serialVersionUID = 341642231109911346L;
-  private EchoToken master;
+  private transient CompiledExpression expression;
 
   public VariableNode(EchoToken token) {
-    super(token, token.getLineNumber());
-    master = token;
+    this(token, null);
+  }
+
+  public VariableNode(EchoToken token, CompiledExpression expression) {
+    super(token);
+    this.expression = expression;
+  }
+
+  @Override
+  public EchoToken getMaster() {
+    return (EchoToken) super.getMaster();
   }
 
   @Override
   public String render(JinjavaInterpreter interpreter) {
-    Object var = interpreter.resolveELExpression(master.getExpr(), getLineNumber());
+    RenderProfiler profiler = interpreter.getProfiler();
+    if(profiler == null) {
+      return resolve(interpreter);
+    }
+    
+    profiler.start(RenderProfiler.Kind.EXPRESSION, getMaster().getExpr(), getLineNumber());
+    try {
+      return resolve(interpreter);
+    }
+    finally {
+      profiler.stop();
+    }
+  }
+
+  private String resolve(JinjavaInterpreter interpreter) {
+    if(expression == null) {
+      expression = interpreter.compileELExpression(getMaster().getExpr());
+    }
+    
+    Object var = interpreter.resolveELExpression(expression, getLineNumber());
     
     String result = ObjectValue.printable(var);
-    if(!StringUtils.equals(result, master.getImage()) && StringUtils.contains(result, "{{")) {
+    if(interpreter.getConfig().isNestedInterpretationEnabled()
+        && !StringUtils.equals(result, getMaster().getImage()) && StringUtils.contains(result, "{{")) {
       try {
         return interpreter.renderString(result);
       }
@@ -53,7 +84,7 @@ public class VariableNode extends Node {
 
   @Override
   public String toString() {
-    return master.toString();
+    return getMaster().toString();
   }
 
   @Override
@@ -63,7 +94,7 @@ public class VariableNode extends Node {
 
   @Override
   public Node clone() {
-    Node clone = new VariableNode(master);
+    Node clone = new VariableNode(getMaster(), expression);
     clone.setChildren(this.getChildren().clone(clone));
     return clone;
   }
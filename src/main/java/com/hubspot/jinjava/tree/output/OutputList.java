@@ -0,0 +1,76 @@
+package com.hubspot.jinjava.tree.output;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Render output made up of text segments and placeholders for named blocks. Blocks are resolved
+ * once the whole template (including any templates it extends) has been rendered, by walking the
+ * segments, rather than by searching the rendered text for marker strings.
+ */
+public class OutputList implements Appendable {
+
+  private final List<Object> segments = new ArrayList<Object>();
+  private StringBuilder current;
+  private boolean hasBlocks = false;
+
+  @Override
+  public OutputList append(CharSequence csq) {
+    currentText().append(csq);
+    return this;
+  }
+
+  @Override
+  public OutputList append(CharSequence csq, int start, int end) {
+    currentText().append(csq, start, end);
+    return this;
+  }
+
+  @Override
+  public OutputList append(char c) {
+    currentText().append(c);
+    return this;
+  }
+
+  /**
+   * Add a slot which will be filled with the final content of the named block.
+   */
+  public void addBlockPlaceholder(String blockName) {
+    segments.add(new BlockPlaceholder(blockName));
+    current = null;
+    hasBlocks = true;
+  }
+
+  public boolean hasBlockPlaceholders() {
+    return hasBlocks;
+  }
+
+  /**
+   * @return text segments, as CharSequences, and {@link BlockPlaceholder}s in output order
+   */
+  public List<Object> getSegments() {
+    return Collections.unmodifiableList(segments);
+  }
+
+  private StringBuilder currentText() {
+    if(current == null) {
+      current = new StringBuilder();
+      segments.add(current);
+    }
+    return current;
+  }
+
+  public static final class BlockPlaceholder {
+    private final String blockName;
+
+    BlockPlaceholder(String blockName) {
+      this.blockName = blockName;
+    }
+
+    public String getBlockName() {
+      return blockName;
+    }
+  }
+
+}
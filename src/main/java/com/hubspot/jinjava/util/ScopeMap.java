@@ -1,16 +1,53 @@
 package com.hubspot.jinjava.util;
 
-import java.util.ArrayList;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+import com.google.common.collect.ForwardingIterator;
+import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.ForwardingMapEntry;
+
+/**
+ * A map of variables, which falls back to its parent scope for keys it doesn't define itself.
+ *
+ * Lookups of keys a scope doesn't define are remembered, so that reading a variable from an
+ * outer scope costs the same however deeply nested the reading scope is. Every scope below the
+ * same child of a root scope shares one modification stamp, and a record of the latest
+ * modification at each depth; a remembered lookup is kept until some scope shallower than the one
+ * holding it is modified. Modifications of the root scope itself, which may be shared by many
+ * scope trees, are counted separately.
+ *
+ * Like the maps it is made of, a scope tree isn't safe for concurrent modification.
+ */
 public class ScopeMap<K, V> implements Map<K, V> {
 
+  private static final Object MISSING = new Object();
+
   private final Map<K, V> scope;
   private final ScopeMap<K, V> parent;
+  private final ScopeMap<K, V> root;
+  private final int depth;
+  private final Stamps stamps;
+
+  // modifications of a root scope; scopes below it check this before using remembered lookups
+  private volatile long rootModCount;
+
+  private Map<Object, Object> inherited;
+  private long inheritedStamp;
+  private long inheritedRootModCount;
+
+  private Map<K, V> scopeView;
+  private Set<K> keySet;
+  private Collection<V> values;
+  private Set<Map.Entry<K, V>> entrySet;
 
   public ScopeMap() {
     this(null);
@@ -19,8 +56,20 @@ public class ScopeMap<K, V> implements Map<K, V> {
   public ScopeMap(ScopeMap<K, V> parent) {
     this.scope = new HashMap<K, V>();
     this.parent = parent;
+
+    if(parent == null) {
+      this.root = this;
+      this.depth = 0;
+      this.stamps = null;
+    }
+    else {
+      this.root = parent.root;
+      this.depth = parent.depth + 1;
+      this.stamps = parent.stamps == null ? new Stamps() : parent.stamps;
+      this.stamps.ensureDepth(depth);
+    }
   }
-  
+
   public ScopeMap(ScopeMap<K, V> parent, Map<K, V> scope) {
     this(parent);
     this.scope.putAll(scope);
@@ -29,10 +78,27 @@ public class ScopeMap<K, V> implements Map<K, V> {
   public ScopeMap<K, V> getParent() {
     return parent;
   }
-  
+
+  /**
+   * @return this scope's own variables; changes made through the returned map are seen by lookups
+   *   from nested scopes
+   */
   public Map<K, V> getScope() {
-    return scope;
+    if(scopeView == null) {
+      scopeView = new ScopeView();
+    }
+    return scopeView;
+  }
+
+  private void modified() {
+    if(stamps == null) {
+      rootModCount++;
+    }
+    else {
+      stamps.modified(depth);
+    }
   }
+
   @Override
   public int size() {
     return keySet().size();
@@ -40,7 +106,12 @@ public class ScopeMap<K, V> implements Map<K, V> {
 
   @Override
   public boolean isEmpty() {
-    return size() == 0;
+    for(ScopeMap<K, V> s = this; s != null; s = s.parent) {
+      if(!s.scope.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
@@ -53,7 +124,7 @@ public class ScopeMap<K, V> implements Map<K, V> {
     if(scope.containsValue(value)) {
       return true;
     }
-    
+
     if(parent != null) {
       return parent.containsValue(value);
     }
@@ -67,91 +138,368 @@ public class ScopeMap<K, V> implements Map<K, V> {
     if(val != null) {
       return val;
     }
-    
+
     return defVal;
   }
-  
+
   @Override
+  @SuppressWarnings("unchecked")
   public V get(Object key) {
     V val = scope.get(key);
-    if(val != null) {
+    if(val != null || parent == null) {
       return val;
     }
-    
-    if(parent != null) {
-      return parent.get(key);
+
+    long rootMods = root.rootModCount;
+    if(inherited == null || inheritedStamp < stamps.invalidatedAt(depth) || inheritedRootModCount != rootMods) {
+      if(inherited == null) {
+        inherited = new HashMap<Object, Object>();
+      }
+      else {
+        inherited.clear();
+      }
+      inheritedStamp = stamps.stamp;
+      inheritedRootModCount = rootMods;
     }
-    
-    return null;
+    else {
+      Object cached = inherited.get(key);
+      if(cached != null) {
+        return cached == MISSING ? null : (V) cached;
+      }
+    }
+
+    val = parent.get(key);
+    inherited.put(key, val == null ? MISSING : val);
+    return val;
   }
 
   @Override
   public V put(K key, V value) {
+    modified();
     return scope.put(key, value);
   }
 
   @Override
   public V remove(Object key) {
+    modified();
     return scope.remove(key);
   }
 
   @Override
   public void putAll(Map<? extends K, ? extends V> m) {
+    modified();
     scope.putAll(m);
   }
 
   @Override
   public void clear() {
+    modified();
     scope.clear();
   }
 
+  /**
+   * @return a read-only view of the keys defined in this scope and its parents
+   */
   @Override
   public Set<K> keySet() {
-    Set<K> keys = new HashSet<K>();
-    
-    if(parent != null) {
-      keys.addAll(parent.keySet());
+    if(keySet == null) {
+      keySet = new KeySet();
     }
-    
-    keys.addAll(scope.keySet());
-    
-    return keys;
+    return keySet;
   }
 
+  /**
+   * @return a read-only view of the values visible from this scope
+   */
   @Override
   public Collection<V> values() {
-    Set<java.util.Map.Entry<K, V>> entrySet = entrySet();
-    Collection<V> values = new ArrayList<V>(entrySet.size());
-    
-    for(Map.Entry<K, V> entry : entrySet) {
-      values.add(entry.getValue());
+    if(values == null) {
+      values = new Values();
     }
-    
     return values;
   }
 
+  /**
+   * @return a view of the entries visible from this scope; setting an entry's value puts it in
+   *   this scope
+   */
   @Override
   public Set<java.util.Map.Entry<K, V>> entrySet() {
-    Set<java.util.Map.Entry<K, V>> entries = new HashSet<java.util.Map.Entry<K, V>>();
-    
-    for(K key : keySet()) {
-      entries.add(new ScopeMapEntry<K, V>(key, get(key), this));
+    if(entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  private long currentStamp() {
+    return stamps == null ? rootModCount : stamps.stamp;
+  }
+
+  private class KeySet extends AbstractSet<K> {
+    private int size = -1;
+    private long sizeStamp;
+    private long sizeRootModCount;
+
+    @Override
+    public Iterator<K> iterator() {
+      return new KeyIterator();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      for(ScopeMap<K, V> s = ScopeMap.this; s != null; s = s.parent) {
+        if(s.scope.containsKey(o)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int size() {
+      long stamp = currentStamp();
+      long rootMods = root.rootModCount;
+      if(size < 0 || sizeStamp != stamp || sizeRootModCount != rootMods) {
+        int count = 0;
+        for(Iterator<K> it = iterator(); it.hasNext(); it.next()) {
+          count++;
+        }
+        size = count;
+        sizeStamp = stamp;
+        sizeRootModCount = rootMods;
+      }
+      return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return ScopeMap.this.isEmpty();
+    }
+  }
+
+  private class KeyIterator implements Iterator<K> {
+    private final Set<Object> seen = new HashSet<Object>();
+    private ScopeMap<K, V> current = ScopeMap.this;
+    private Iterator<K> keys = scope.keySet().iterator();
+    private K next;
+    private boolean hasNext;
+
+    @Override
+    public boolean hasNext() {
+      while(!hasNext) {
+        if(keys.hasNext()) {
+          K key = keys.next();
+          if(seen.add(key)) {
+            next = key;
+            hasNext = true;
+          }
+        }
+        else if(current.parent != null) {
+          current = current.parent;
+          keys = current.scope.keySet().iterator();
+        }
+        else {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public K next() {
+      if(!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      hasNext = false;
+      return next;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private class Values extends AbstractCollection<V> {
+    @Override
+    public Iterator<V> iterator() {
+      final Iterator<K> keys = keySet().iterator();
+      return new Iterator<V>() {
+        @Override
+        public boolean hasNext() {
+          return keys.hasNext();
+        }
+
+        @Override
+        public V next() {
+          return get(keys.next());
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return keySet().size();
+    }
+  }
+
+  private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      final Iterator<K> keys = keySet().iterator();
+      return new Iterator<Map.Entry<K, V>>() {
+        @Override
+        public boolean hasNext() {
+          return keys.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+          K key = keys.next();
+          return new ScopeMapEntry<K, V>(key, get(key), ScopeMap.this);
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return keySet().size();
+    }
+  }
+
+  /**
+   * This scope's own variables, counting changes made through the map and its views as
+   * modifications of the scope.
+   */
+  private class ScopeView extends ForwardingMap<K, V> {
+    @Override
+    protected Map<K, V> delegate() {
+      return scope;
+    }
+
+    @Override
+    public V put(K key, V value) {
+      modified();
+      return scope.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+      modified();
+      scope.putAll(map);
+    }
+
+    @Override
+    public V remove(Object key) {
+      modified();
+      return scope.remove(key);
+    }
+
+    @Override
+    public void clear() {
+      modified();
+      scope.clear();
+    }
+
+    @Override
+    public Set<K> keySet() {
+      return new StandardKeySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+      return new StandardValues();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+      return new StandardEntrySet() {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+          final Iterator<Map.Entry<K, V>> entries = scope.entrySet().iterator();
+          return new ForwardingIterator<Map.Entry<K, V>>() {
+            @Override
+            protected Iterator<Map.Entry<K, V>> delegate() {
+              return entries;
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+              final Map.Entry<K, V> entry = entries.next();
+              return new ForwardingMapEntry<K, V>() {
+                @Override
+                protected Map.Entry<K, V> delegate() {
+                  return entry;
+                }
+
+                @Override
+                public V setValue(V value) {
+                  modified();
+                  return entry.setValue(value);
+                }
+              };
+            }
+
+            @Override
+            public void remove() {
+              modified();
+              entries.remove();
+            }
+          };
+        }
+      };
+    }
+  }
+
+  /**
+   * Modification stamps shared by the scopes below one child of a root scope.
+   */
+  private static final class Stamps {
+    private long stamp;
+    // the stamp of the latest modification of any scope shallower than each depth
+    private long[] invalidatedAt = new long[8];
+
+    void ensureDepth(int depth) {
+      if(depth >= invalidatedAt.length) {
+        int length = invalidatedAt.length;
+        invalidatedAt = Arrays.copyOf(invalidatedAt, Math.max(depth + 1, length * 2));
+        Arrays.fill(invalidatedAt, length, invalidatedAt.length, stamp);
+      }
+    }
+
+    void modified(int depth) {
+      stamp++;
+      for(int d = depth + 1; d < invalidatedAt.length; d++) {
+        invalidatedAt[d] = stamp;
+      }
+    }
+
+    long invalidatedAt(int depth) {
+      return invalidatedAt[depth];
     }
-    
-    return entries;
   }
 
   public static class ScopeMapEntry<K, V> implements Map.Entry<K, V> {
     private final Map<K, V> map;
     private final K key;
     private V value;
-    
+
     public ScopeMapEntry(K key, V value, Map<K, V> map) {
       this.key = key;
       this.value = value;
       this.map = map;
     }
-    
+
     @Override
     public K getKey() {
       return key;
@@ -169,7 +517,7 @@ public class ScopeMap<K, V> implements Map<K, V> {
       map.put(key, value);
       return old;
     }
-    
+
   }
-  
+
 }
@@ -27,9 +27,15 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 
+/**
+ * Resolves a chain of property names against an object, e.g. the {@code user.name} in
+ * {@code article.user.name}. How a given property is read from a given class (bean getter, map key,
+ * list or array index) is worked out once and kept in a per-class accessor table, so repeated
+ * lookups cost two hash lookups and a call.
+ */
 public class VariableChain {
 
   private List<String> chain;
@@ -45,81 +51,73 @@ public class VariableChain {
       if (value == null) {
         return null;
       } else {
-        value = resolveInternal(name);
+        value = resolveProperty(value, name);
       }
     }
     return value;
   }
 
-  private static final ConcurrentMap<String, Method> METHOD_CACHE = Maps.newConcurrentMap();
+  /**
+   * Resolve a single property against the given non-null object.
+   * 
+   * @throws JinjavaPropertyNotResolvedException if the object has no such property
+   */
+  public static Object resolveProperty(Object value, String name) {
+    return accessorFor(value.getClass(), name).get(value, name);
+  }
+
+  private static final ConcurrentMap<Class<?>, ConcurrentMap<String, PropertyAccessor>> ACCESSORS = Maps.newConcurrentMap();
   
-  private Object resolveInternal(String name) {
-    Class<?> clazz = value.getClass();
-    Method getter = findGetterMethodCached(clazz, name);
-    
-    if(getter != null && getter != NULL_METHOD) {
-      try {
-        return getter.invoke(value);
-      } catch (IllegalAccessException e) {
-        ENGINE_LOG.error("resolve variable trigger error.", e);
-      } catch (IllegalArgumentException e){
-        ENGINE_LOG.error("resolve variable trigger error.", e);  
-      } catch (InvocationTargetException e){
-        ENGINE_LOG.error("resolve variable trigger error.", e); 
+  private static PropertyAccessor accessorFor(Class<?> clazz, String name) {
+    ConcurrentMap<String, PropertyAccessor> classAccessors = ACCESSORS.get(clazz);
+    if(classAccessors == null) {
+      classAccessors = Maps.newConcurrentMap();
+      ConcurrentMap<String, PropertyAccessor> existing = ACCESSORS.putIfAbsent(clazz, classAccessors);
+      if(existing != null) {
+        classAccessors = existing;
       }
     }
     
-    // map
-    if (value instanceof Map) {
-      Map<?, ?> map = (Map<?, ?>) value;
-      return map.get(name);
+    PropertyAccessor accessor = classAccessors.get(name);
+    if(accessor == null) {
+      accessor = createAccessor(clazz, name);
+      classAccessors.put(name, accessor);
     }
-
-    try {
-      int index = Integer.parseInt(name);
-      // array
-      if (value.getClass().isArray()) {
-        return Array.get(value, index);
-      }
-      // list
-      if (value instanceof List) {
-        return ((List<?>) value).get(index);
-      }
-      // collection
-      if (value instanceof Collection) {
-        return ((Collection<?>) value).toArray()[index];
-      }
-    } catch (Exception e) { /* no-op */ }
-
-    throw new JinjavaPropertyNotResolvedException(value, name);
+    return accessor;
   }
 
-  private Method findGetterMethodCached(Class<?> clazz, String name) {
-    Method m = METHOD_CACHE.get(clazz.getName() + ":" + name);
+  private static PropertyAccessor createAccessor(Class<?> clazz, String name) {
+    Method getter = findGetterMethod(clazz, name);
+    if(getter != null) {
+      return new GetterAccessor(getter);
+    }
     
-    if(m == null) {
-      m = findGetterMethod(clazz, name);
-      
-      if(m != null) {
-        METHOD_CACHE.put(clazz.getName() + ":" + name, m);
-      }
+    if(Map.class.isAssignableFrom(clazz)) {
+      return MAP_ACCESSOR;
     }
-
-    return m;
-  }
-
-  private static final String[] METHOD_PREFIXES = { "get", "is", "" };
-  private static final Method NULL_METHOD;
-  static {
+    
+    int index;
     try {
-      NULL_METHOD = VariableChain.class.getDeclaredMethod("resolve");
+      index = Integer.parseInt(name);
+    } catch (NumberFormatException e) {
+      return UNRESOLVED_ACCESSOR;
     }
-    catch(NoSuchMethodException e){
-      throw Throwables.propagate(e);
+    
+    if(clazz.isArray()) {
+      return new ArrayAccessor(index);
+    }
+    if(List.class.isAssignableFrom(clazz)) {
+      return new ListAccessor(index);
+    }
+    if(Collection.class.isAssignableFrom(clazz)) {
+      return new CollectionAccessor(index);
     }
+    return UNRESOLVED_ACCESSOR;
   }
+
+  private static final String[] METHOD_PREFIXES = { "get", "is", "" };
   
-  private Method findGetterMethod(Class<?> clazz, String name) {
+  private static Method findGetterMethod(Class<?> clazz, String name) {
     String transformedName = transformName(name);
 
     for (String prefix : METHOD_PREFIXES) {
@@ -134,12 +132,12 @@ public class VariableChain {
       }
     }
     
-    return NULL_METHOD;
+    return null;
   }
 
   private static final Pattern SNAKE_CASE = Pattern.compile("_([^_]?)");
 
-  private String transformName(String name) {
+  private static String transformName(String name) {
     Matcher m = SNAKE_CASE.matcher(name);
 
     StringBuffer result = new StringBuffer();
@@ -152,7 +150,10 @@ public class VariableChain {
     return upperFirst(result.toString());
   }
 
-  private String upperFirst(String name) {
+  private static String upperFirst(String name) {
+    if (name.isEmpty()) {
+      return name;
+    }
     char c = name.charAt(0);
     if (Character.isLowerCase(c)) {
       return String.valueOf(c).toUpperCase().concat(name.substring(1));
@@ -161,4 +162,113 @@ public class VariableChain {
     }
   }
 
+  private abstract static class PropertyAccessor {
+    abstract Object get(Object value, String name);
+  }
+
+  private static class GetterAccessor extends PropertyAccessor {
+    private final Method getter;
+
+    GetterAccessor(Method getter) {
+      this.getter = getter;
+    }
+
+    @Override
+    Object get(Object value, String name) {
+      try {
+        return getter.invoke(value);
+      } catch (IllegalAccessException e) {
+        ENGINE_LOG.error("resolve variable trigger error.", e);
+      } catch (IllegalArgumentException e){
+        ENGINE_LOG.error("resolve variable trigger error.", e);  
+      } catch (InvocationTargetException e){
+        ENGINE_LOG.error("resolve variable trigger error.", e); 
+      }
+      
+      // fall back to what the value would have resolved to without a getter
+      PropertyAccessor fallback = value instanceof Map ? MAP_ACCESSOR : createIndexAccessor(value.getClass(), name);
+      return fallback.get(value, name);
+    }
+
+    private static PropertyAccessor createIndexAccessor(Class<?> clazz, String name) {
+      try {
+        int index = Integer.parseInt(name);
+        if(clazz.isArray()) {
+          return new ArrayAccessor(index);
+        }
+        if(List.class.isAssignableFrom(clazz)) {
+          return new ListAccessor(index);
+        }
+        if(Collection.class.isAssignableFrom(clazz)) {
+          return new CollectionAccessor(index);
+        }
+      } catch (NumberFormatException e) { /* no-op */ }
+      return UNRESOLVED_ACCESSOR;
+    }
+  }
+
+  private static final PropertyAccessor MAP_ACCESSOR = new PropertyAccessor() {
+    @Override
+    Object get(Object value, String name) {
+      return ((Map<?, ?>) value).get(name);
+    }
+  };
+
+  private static final PropertyAccessor UNRESOLVED_ACCESSOR = new PropertyAccessor() {
+    @Override
+    Object get(Object value, String name) {
+      throw new JinjavaPropertyNotResolvedException(value, name);
+    }
+  };
+
+  private static class ArrayAccessor extends PropertyAccessor {
+    private final int index;
+
+    ArrayAccessor(int index) {
+      this.index = index;
+    }
+
+    @Override
+    Object get(Object value, String name) {
+      if(index < 0 || index >= Array.getLength(value)) {
+        throw new JinjavaPropertyNotResolvedException(value, name);
+      }
+      return Array.get(value, index);
+    }
+  }
+
+  private static class ListAccessor extends PropertyAccessor {
+    private final int index;
+
+    ListAccessor(int index) {
+      this.index = index;
+    }
+
+    @Override
+    Object get(Object value, String name) {
+      List<?> list = (List<?>) value;
+      if(index < 0 || index >= list.size()) {
+        throw new JinjavaPropertyNotResolvedException(value, name);
+      }
+      return list.get(index);
+    }
+  }
+
+  private static class CollectionAccessor extends PropertyAccessor {
+    private final int index;
+
+    CollectionAccessor(int index) {
+      this.index = index;
+    }
+
+    @Override
+    Object get(Object value, String name) {
+      Collection<?> collection = (Collection<?>) value;
+      if(index < 0 || index >= collection.size()) {
+        throw new JinjavaPropertyNotResolvedException(value, name);
+      }
+      return Iterables.get(collection, index);
+    }
+  }
+
 }
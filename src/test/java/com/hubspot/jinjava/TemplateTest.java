@@ -0,0 +1,365 @@
+package com.hubspot.jinjava;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.RenderResult;
+import com.hubspot.jinjava.lib.filter.Filter;
+import com.hubspot.jinjava.lib.fn.ELFunctionDefinition;
+import com.hubspot.jinjava.loader.FileLocator;
+import com.hubspot.jinjava.loader.ResourceNotFoundException;
+import com.hubspot.jinjava.loader.VersionedResourceLocator;
+import com.hubspot.jinjava.util.StandardCharsets;
+
+
+public class TemplateTest {
+
+  Jinjava jinjava;
+
+  @Before
+  public void setup() {
+    jinjava = new Jinjava();
+  }
+
+  @Test
+  public void itReusesParsedTemplateForSameSource() {
+    Template template = jinjava.compile("hello {{ name }}");
+
+    assertThat(jinjava.compile("hello {{ name }}")).isSameAs(template);
+    assertThat(template.render(ImmutableMap.of("name", "jared"))).isEqualTo("hello jared");
+    assertThat(template.render(ImmutableMap.of("name", "world"))).isEqualTo("hello world");
+  }
+
+  @Test
+  public void itReparsesWhenCacheDisabled() {
+    jinjava = new Jinjava(JinjavaConfig.newBuilder().withTemplateCacheSize(0).build());
+
+    assertThat(jinjava.compile("hello")).isNotSameAs(jinjava.compile("hello"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void itRejectsNegativeCacheSize() {
+    JinjavaConfig.newBuilder().withTemplateCacheSize(-1);
+  }
+
+  @Test
+  public void itReportsParseErrorsOnEachRender() {
+    Template template = jinjava.compile("{% unknowntag %}hello");
+    assertThat(template.getErrors()).hasSize(1);
+
+    RenderResult first = template.renderForResult(ImmutableMap.<String, Object> of());
+    RenderResult second = jinjava.renderForResult("{% unknowntag %}hello", ImmutableMap.<String, Object> of());
+
+    assertThat(first.getOutput()).isEqualTo("hello");
+    assertThat(first.getErrors()).hasSize(1);
+    assertThat(second.getErrors()).hasSize(1);
+  }
+
+  @Test
+  public void itLoadsNamedTemplates() throws IOException {
+    Template template = jinjava.getTemplate("tags/includetag/d.jinja");
+    assertThat(template.render(ImmutableMap.<String, Object> of()).trim()).isEqualTo("hello");
+  }
+
+  @Test
+  public void itStreamsOutputToWriter() throws IOException {
+    Template template = jinjava.compile("{% for i in items %}{% if i > 1 %}<{{ i }}>{% endif %}{% endfor %}{% include 'tags/includetag/d.jinja' %}");
+    Map<String, Object> bindings = ImmutableMap.<String, Object> of("items", Lists.newArrayList(1, 2, 3));
+
+    StringWriter out = new StringWriter();
+    template.render(bindings, out);
+
+    assertThat(out.toString()).isEqualTo(template.render(bindings)).startsWith("<2><3>hello");
+  }
+
+  @Test
+  public void itStreamsBlocksOfImportedMacros() throws IOException {
+    MapResourceLocator locator = new MapResourceLocator();
+    locator.put("macros.jinja", "{% macro m() %}[{% block b %}inner{% endblock %}]{% endmacro %}");
+    String source = "{% import 'macros.jinja' as t %}A{{ t.m() }}B";
+
+    for(Jinjava jinjava : Lists.newArrayList(new Jinjava(), new Jinjava(JinjavaConfig.newBuilder().withTemplateCompilation(true).build()))) {
+      jinjava.setResourceLocator(locator);
+      Template template = jinjava.compile(source);
+
+      StringWriter out = new StringWriter();
+      template.render(ImmutableMap.<String, Object> of(), out);
+
+      assertThat(template.render(ImmutableMap.<String, Object> of())).isEqualTo("A[inner]B");
+      assertThat(out.toString()).isEqualTo("A[inner]B");
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void itPropagatesWriterFailures() throws IOException {
+    Writer failing = new Writer() {
+      @Override
+      public void write(char[] cbuf, int off, int len) throws IOException {
+        throw new IOException("connection reset");
+      }
+      @Override
+      public void flush() {}
+      @Override
+      public void close() {}
+    };
+
+    jinjava.compile("{% if true %}hello{% endif %}").render(ImmutableMap.<String, Object> of(), failing);
+  }
+
+  @Test
+  public void itRendersSharedTemplateConcurrently() throws Exception {
+    final Template template = jinjava.compile("{% for i in items %}{% if i > 1 %}{{ prefix }}{{ i }}{% endif %}{% endfor %}");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for(int i = 0; i < 100; i++) {
+        final String prefix = "p" + i;
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            Map<String, Object> bindings = ImmutableMap.<String, Object> of("prefix", prefix, "items", Lists.newArrayList(1, 2, 3));
+            return template.render(bindings);
+          }
+        }));
+      }
+
+      for(int i = 0; i < 100; i++) {
+        assertThat(results.get(i).get()).isEqualTo("p" + i + "2p" + i + "3");
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void itRendersBatchLazilyInOrder() {
+    Template template = jinjava.compile("hello {{ name }}");
+    final List<String> requested = new ArrayList<String>();
+    Iterable<Map<String, Object>> bindings = Iterables.transform(Lists.newArrayList("jared", "world"), new Function<String, Map<String, Object>>() {
+      @Override
+      public Map<String, Object> apply(String name) {
+        requested.add(name);
+        return ImmutableMap.<String, Object> of("name", name);
+      }
+    });
+
+    Iterator<RenderResult> results = template.renderAll(bindings);
+    assertThat(results.next().getOutput()).isEqualTo("hello jared");
+    assertThat(requested).containsExactly("jared");
+    assertThat(results.next().getOutput()).isEqualTo("hello world");
+    assertThat(results.hasNext()).isFalse();
+  }
+
+  @Test
+  public void itRendersBatchOnExecutorInOrder() {
+    List<Map<String, Object>> bindings = new ArrayList<Map<String, Object>>();
+    for(int i = 0; i < 100; i++) {
+      bindings.add(ImmutableMap.<String, Object> of("prefix", "p" + i, "items", Lists.newArrayList(1, 2, 3)));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      Iterator<RenderResult> results = jinjava.renderAll("{% for i in items %}{% if i > 1 %}{{ prefix }}{{ i }}{% endif %}{% endfor %}", bindings, executor, 8);
+      for(int i = 0; i < 100; i++) {
+        assertThat(results.next().getOutput()).isEqualTo("p" + i + "2p" + i + "3");
+      }
+      assertThat(results.hasNext()).isFalse();
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void itSeesFunctionsRegisteredAfterFirstRender() {
+    assertThat(jinjava.render("{{ fn:list(1, 2) }}", ImmutableMap.<String, Object> of())).isEqualTo("[1, 2]");
+
+    jinjava.getGlobalContext().registerFunction(new ELFunctionDefinition("fn", "max", Math.class, "max", int.class, int.class));
+    assertThat(jinjava.render("{{ fn:max(1, 2) }}", ImmutableMap.<String, Object> of())).isEqualTo("2");
+  }
+
+  @Test
+  public void itRegistersFiltersWhileOtherThreadsRender() throws Exception {
+    final Template template = jinjava.compile("{{ name|upper }}");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for(int i = 0; i < 200; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            return template.render(ImmutableMap.<String, Object> of("name", "jared"));
+          }
+        }));
+      }
+      for(int i = 0; i < 100; i++) {
+        jinjava.getGlobalContext().registerFilter(new SuffixFilter("suffix" + i));
+      }
+
+      for(Future<String> result : results) {
+        assertThat(result.get()).isEqualTo("JARED");
+      }
+      assertThat(jinjava.render("{{ name|suffix99 }}", ImmutableMap.<String, Object> of("name", "jared"))).isEqualTo("jared-suffix99");
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static class SuffixFilter implements Filter {
+    private final String name;
+
+    SuffixFilter(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public Object filter(Object var, JinjavaInterpreter interpreter, String... args) {
+      return var + "-" + name;
+    }
+  }
+
+  @Test
+  public void itLeavesGlobalContextUnchangedByRenders() {
+    jinjava.compile("{% macro m() %}{% endmacro %}{{ m() }}{{ missing() }}").renderForResult(ImmutableMap.<String, Object> of());
+
+    assertThat(jinjava.getGlobalContext().getScope()).isEmpty();
+  }
+
+  @Test
+  public void itWarmsUpListedTemplatesInParallel() throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      WarmUpResult result = jinjava.warmUp("tags/includetag", executor);
+
+      assertThat(result.getTemplates()).hasSize(6);
+      assertThat(result.hasErrors()).isFalse();
+      for(WarmUpResult.TemplateResult template : result.getTemplates()) {
+        assertThat(template.isReferenced()).isFalse();
+        assertThat(jinjava.getTemplate(template.getName())).isSameAs(template.getTemplate());
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void itWarmsUpReferencedTemplatesAndReportsFailures() throws IOException {
+    File dir = Files.createTempDir();
+    new File(dir, "pages").mkdir();
+    new File(dir, "partials").mkdir();
+    Files.write("{% extends 'partials/base.jinja' %}{% include \"partials/missing.jinja\" %}{% include name %}", new File(dir, "pages/home.jinja"), StandardCharsets.UTF_8);
+    Files.write("{% import 'partials/macros.jinja' as m %}{% unknowntag %}", new File(dir, "partials/base.jinja"), StandardCharsets.UTF_8);
+    Files.write("{% macro hello() %}hello{% endmacro %}", new File(dir, "partials/macros.jinja"), StandardCharsets.UTF_8);
+    Files.write("unused", new File(dir, "partials/unused.jinja"), StandardCharsets.UTF_8);
+    jinjava.setResourceLocator(new FileLocator(dir));
+
+    WarmUpResult result = jinjava.warmUp("pages", null);
+
+    List<String> names = new ArrayList<String>();
+    for(WarmUpResult.TemplateResult template : result.getTemplates()) {
+      names.add(template.getName());
+    }
+    assertThat(names).containsExactly("pages/home.jinja", "partials/base.jinja", "partials/macros.jinja", "partials/missing.jinja");
+    assertThat(result.getTemplates().get(0).isReferenced()).isFalse();
+    assertThat(result.getTemplates().get(1).isReferenced()).isTrue();
+    assertThat(result.getTemplates().get(1).getErrors()).hasSize(1);
+    assertThat(result.getTemplates().get(3).getFailure()).isInstanceOf(ResourceNotFoundException.class);
+    assertThat(result.hasErrors()).isTrue();
+  }
+
+  @Test
+  public void itReusesIncludedTemplateWhileVersionUnchanged() throws IOException {
+    MapResourceLocator locator = new MapResourceLocator();
+    locator.put("header.jinja", "<h1>{{ title }}</h1>");
+    jinjava.setResourceLocator(locator);
+
+    Template template = jinjava.compile("{% for title in titles %}{% include 'header.jinja' %}{% endfor %}");
+    Map<String, Object> bindings = ImmutableMap.<String, Object> of("titles", Lists.newArrayList("a", "b"));
+
+    assertThat(template.render(bindings)).isEqualTo("<h1>a</h1><h1>b</h1>");
+    assertThat(template.render(bindings)).isEqualTo("<h1>a</h1><h1>b</h1>");
+    assertThat(locator.reads).isEqualTo(1);
+    assertThat(jinjava.getTemplate("header.jinja")).isSameAs(jinjava.getTemplate("header.jinja"));
+
+    locator.put("header.jinja", "<h2>{{ title }}</h2>");
+    assertThat(template.render(bindings)).isEqualTo("<h2>a</h2><h2>b</h2>");
+    assertThat(locator.reads).isEqualTo(2);
+  }
+
+  @Test
+  public void itDropsCachedTemplatesWhenLocatorChanges() throws IOException {
+    MapResourceLocator first = new MapResourceLocator();
+    first.put("header.jinja", "first");
+    jinjava.setResourceLocator(first);
+    assertThat(jinjava.render("{% include 'header.jinja' %}", new HashMap<String, Object>())).isEqualTo("first");
+
+    MapResourceLocator second = new MapResourceLocator();
+    second.put("header.jinja", "second");
+    jinjava.setResourceLocator(second);
+    assertThat(jinjava.render("{% include 'header.jinja' %}", new HashMap<String, Object>())).isEqualTo("second");
+  }
+
+  private static class MapResourceLocator implements VersionedResourceLocator {
+    private final Map<String, String> resources = new HashMap<String, String>();
+    private final Map<String, Long> versions = new HashMap<String, Long>();
+    int reads = 0;
+
+    void put(String name, String content) {
+      resources.put(name, content);
+      Long version = versions.get(name);
+      versions.put(name, version == null ? 0 : version + 1);
+    }
+
+    @Override
+    public String getString(String fullName, Charset encoding, JinjavaInterpreter interpreter) throws IOException {
+      if(!resources.containsKey(fullName)) {
+        throw new ResourceNotFoundException("Couldn't find resource: " + fullName);
+      }
+      reads++;
+      return resources.get(fullName);
+    }
+
+    @Override
+    public long getVersion(String fullName, JinjavaInterpreter interpreter) throws IOException {
+      if(!versions.containsKey(fullName)) {
+        throw new ResourceNotFoundException("Couldn't find resource: " + fullName);
+      }
+      return versions.get(fullName);
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+package com.hubspot.jinjava.compile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.JinjavaConfig;
+import com.hubspot.jinjava.Template;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.RenderResult;
+import com.hubspot.jinjava.lib.tag.Tag;
+import com.hubspot.jinjava.tree.TagNode;
+
+public class TemplateCompilerTest {
+
+  Jinjava interpreted;
+  Jinjava compiled;
+  Map<String, Object> bindings;
+
+  @Before
+  public void setup() {
+    interpreted = new Jinjava();
+    compiled = new Jinjava(JinjavaConfig.newBuilder().withTemplateCompilation(true).build());
+
+    bindings = ImmutableMap.<String, Object> of(
+        "items", Lists.newArrayList(1, 2, 3, 4),
+        "dict", ImmutableMap.of("a", "x", "b", "y"),
+        "name", "jared");
+  }
+
+  @Test
+  public void itCompilesTemplatesWithoutInheritance() {
+    assertThat(compiled.compile("hello {{ name }}").getCompiled()).isNotNull();
+    assertThat(compiled.compile("{% extends 'foo.jinja' %}").getCompiled()).isNull();
+    assertThat(interpreted.compile("hello {{ name }}").getCompiled()).isNull();
+  }
+
+  @Test
+  public void itRendersTextAndVariables() {
+    assertSameOutput("hello {{ name }}, {{ name|upper }}!");
+  }
+
+  @Test
+  public void itRendersIfElifElseChains() {
+    assertSameOutput("{% for i in items %}{% if i == 1 %}one{% elif i == 2 %}two{% elif i == 3 %}three{% else %}many{% endif %};{% endfor %}");
+    assertSameOutput("{% if name %}yes{% endif %}{% if missing %}no{% else %}else{% endif %}");
+    assertSameOutput("{% if false %}a{% else %}b{% else %}c{% endif %}");
+  }
+
+  @Test
+  public void itRendersNestedLoops() {
+    assertSameOutput("{% for i in items %}{% for j in items %}{{ i * j }}{% if not loop.last %},{% endif %}{% endfor %}|{{ loop.index }}{% endfor %}");
+    assertSameOutput("{% for key, value in dict.items() %}{{ key }}={{ value }};{% endfor %}{{ key }}");
+  }
+
+  @Test
+  public void itFallsBackToNodesForOtherTags() {
+    assertSameOutput("{% macro greet(who) %}hi {{ who }}{% endmacro %}{% for i in items %}{% set x = i + 1 %}{{ greet(x) }}{% endfor %}");
+    assertSameOutput("{% include 'tags/includetag/d.jinja' %}{% unless name %}no{% endunless %}");
+  }
+
+  @Test
+  public void itCompilesLargeLoopAndIfBodies() {
+    String body = StringUtils.repeat("<{{ i }}>", 3000);
+    assertSameOutput("{% for i in items %}" + body + "{% endfor %}");
+    assertSameOutput("{% for i in items %}{% if i > 2 %}" + body + "{% else %}" + body + "{% endif %}{% endfor %}");
+  }
+
+  @Test
+  public void itStreamsCompiledOutput() throws Exception {
+    Template template = compiled.compile("{% for i in items %}<{{ i }}>{% endfor %}");
+    StringWriter out = new StringWriter();
+    template.render(bindings, out);
+
+    assertThat(out.toString()).isEqualTo("<1><2><3><4>");
+  }
+
+  @Test
+  public void itReportsErrorsLikeInterpreter() {
+    String template = "{% for i in items %}{{ i }}{% if i > 2 %}{% for x %}{% endfor %}{% endif %}{% endfor %}";
+    RenderResult expected = interpreted.renderForResult(template, bindings);
+    RenderResult actual = compiled.renderForResult(template, bindings);
+
+    assertThat(actual.getOutput()).isEqualTo(expected.getOutput());
+    assertThat(actual.getErrors()).hasSize(expected.getErrors().size());
+    assertThat(actual.getErrors().get(0).getMessage()).isEqualTo(expected.getErrors().get(0).getMessage());
+    assertThat(actual.getErrors().get(0).getLineno()).isEqualTo(expected.getErrors().get(0).getLineno());
+  }
+
+  @Test
+  public void itInterpretsOnceAnotherTagIsRegistered() {
+    Template template = compiled.compile("{% if name %}yes{% endif %}");
+    assertThat(template.render(bindings)).isEqualTo("yes");
+
+    compiled.getGlobalContext().registerTag(new ReplacementIfTag());
+
+    assertThat(template.render(bindings)).isEqualTo("replaced");
+  }
+
+  @Test
+  public void itIsNotCurrentForContextWithItsOwnTags() {
+    CompiledTemplate template = compiled.compile("{% if name %}yes{% endif %}").getCompiled();
+    JinjavaInterpreter interpreter = new JinjavaInterpreter(compiled, new Context(compiled.getGlobalContext()), compiled.getGlobalConfig());
+    assertThat(template.isCurrent(interpreter)).isTrue();
+
+    interpreter.getContext().registerTag(new ReplacementIfTag());
+
+    assertThat(template.isCurrent(interpreter)).isFalse();
+  }
+
+  private void assertSameOutput(String template) {
+    assertThat(compiled.compile(template).getCompiled()).isNotNull();
+    assertThat(compiled.render(template, bindings)).isEqualTo(interpreted.render(template, bindings));
+  }
+
+  private static class ReplacementIfTag implements Tag {
+    @Override
+    public String getName() {
+      return "if";
+    }
+
+    @Override
+    public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+      return "replaced";
+    }
+
+    @Override
+    public String getEndTagName() {
+      return "endif";
+    }
+  }
+
+}
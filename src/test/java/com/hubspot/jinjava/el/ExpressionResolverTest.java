@@ -18,6 +18,7 @@ import com.hubspot.jinjava.interpret.Context;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.interpret.TemplateError;
 import com.hubspot.jinjava.interpret.TemplateError.ErrorReason;
+import com.hubspot.jinjava.objects.collections.PyList;
 import com.hubspot.jinjava.objects.date.PyishDate;
 
 
@@ -164,6 +165,28 @@ public class ExpressionResolverTest {
     assertThat(e.getMessage()).contains("invalid character");
   }
   
+  @Test
+  public void itResolvesCompiledExpressionAgainstCurrentContext() throws Exception {
+    CompiledExpression expr = interpreter.compileELExpression("foo ~ '!'");
+
+    context.put("foo", "white");
+    assertThat(interpreter.resolveELExpression(expr, -1)).isEqualTo("white!");
+    context.put("foo", "black");
+    assertThat(interpreter.resolveELExpression(expr, -1)).isEqualTo("black!");
+  }
+
+  @Test
+  public void compiledSyntaxErrorReportedOnEachResolve() throws Exception {
+    CompiledExpression expr = interpreter.compileELExpression("(*&W");
+    assertThat(interpreter.getErrors()).isEmpty();
+
+    interpreter.resolveELExpression(expr, 123);
+    interpreter.resolveELExpression(expr, 124);
+    assertThat(interpreter.getErrors()).hasSize(2);
+    assertThat(interpreter.getErrors().get(1).getReason()).isEqualTo(ErrorReason.SYNTAX_ERROR);
+    assertThat(interpreter.getErrors().get(1).getLineno()).isEqualTo(124);
+  }
+
   @Test
   public void itWrapsDates() throws Exception {
     context.put("myobj", new MyClass(new DateTime(0, DateTimeZone.UTC).toDate()));
@@ -172,6 +195,25 @@ public class ExpressionResolverTest {
     assertThat(result.toString()).isEqualTo("1970-01-01 00:00:00");
   }
 
+  @Test
+  public void itReusesWrappersWithinRender() throws Exception {
+    context.put("thelist", Lists.newArrayList(1L, 2L));
+    Object first = interpreter.resolveELExpression("thelist", -1);
+    
+    assertThat(first).isInstanceOf(PyList.class);
+    assertThat(interpreter.resolveELExpression("thelist", -1)).isSameAs(first);
+  }
+  
+  @Test
+  public void itRewrapsDatesChangedSinceWrapped() throws Exception {
+    Date date = new DateTime(0, DateTimeZone.UTC).toDate();
+    context.put("thedate", date);
+    assertThat(interpreter.resolveELExpression("thedate.year", -1)).isEqualTo(1970);
+    
+    date.setTime(new DateTime(2015, 1, 1, 0, 0, DateTimeZone.UTC).getMillis());
+    assertThat(interpreter.resolveELExpression("thedate.year", -1)).isEqualTo(2015);
+  }
+  
   public static final class MyClass {
     private Date date;
     
@@ -20,6 +20,7 @@ import com.google.common.io.Resources;
 import com.hubspot.jinjava.Jinjava;
 import com.hubspot.jinjava.interpret.Context;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.lib.filter.Filter;
 
 @SuppressWarnings("unchecked")
 public class ExtendedSyntaxBuilderTest {
@@ -214,8 +215,68 @@ public class ExtendedSyntaxBuilderTest {
     assertThat(val("mylist[2]")).isEqualTo(3);
   }
   
+  @Test
+  public void filterRegisteredAfterFirstUseIsResolved() throws Exception {
+    context.put("foo", "bar");
+    assertThat(val("foo|shout")).isNull();
+    
+    context.registerFilter(new ShoutFilter("shout"));
+    assertThat(val("foo|shout")).isEqualTo("BAR!");
+  }
+  
+  @Test
+  public void filterRegisteredInScopeShadowsSharedFilter() throws Exception {
+    context.put("foo", "Bar");
+    assertThat(val("foo|lower")).isEqualTo("bar");
+    
+    interpreter.enterScope();
+    try {
+      interpreter.getContext().registerFilter(new ShoutFilter("lower"));
+      assertThat(val("foo|lower")).isEqualTo("BAR!");
+    }
+    finally {
+      interpreter.leaveScope();
+    }
+    assertThat(val("foo|lower")).isEqualTo("bar");
+  }
+  
+  @Test
+  public void filterRegisteredInEnclosingScopeAfterLookupShadowsSharedFilter() throws Exception {
+    context.put("foo", "Bar");
+    interpreter.enterScope();
+    interpreter.enterScope();
+    try {
+      assertThat(val("foo|lower")).isEqualTo("bar");
+      
+      interpreter.getContext().getParent().registerFilter(new ShoutFilter("lower"));
+      assertThat(val("foo|lower")).isEqualTo("BAR!");
+    }
+    finally {
+      interpreter.leaveScope();
+      interpreter.leaveScope();
+    }
+  }
+  
   private Object val(String expr) {
     return interpreter.resolveELExpression(expr, -1);
   }
 
+  private static class ShoutFilter implements Filter {
+    private final String name;
+    
+    ShoutFilter(String name) {
+      this.name = name;
+    }
+    
+    @Override
+    public String getName() {
+      return name;
+    }
+    
+    @Override
+    public Object filter(Object var, JinjavaInterpreter interpreter, String... args) {
+      return var.toString().toUpperCase() + "!";
+    }
+  }
+
 }
@@ -2,10 +2,17 @@ package com.hubspot.jinjava.interpret;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.IOException;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.JinjavaConfig;
+import com.hubspot.jinjava.interpret.TemplateError.ErrorReason;
+import com.hubspot.jinjava.interpret.TemplateError.ErrorType;
 import com.hubspot.jinjava.parse.FixedToken;
 import com.hubspot.jinjava.tree.NodeList;
 import com.hubspot.jinjava.tree.TextNode;
@@ -22,29 +29,78 @@ public class JinjavaInterpreterTest {
     interpreter = new JinjavaInterpreter(jinjava, jinjava.getGlobalContext(), jinjava.getGlobalConfig());
   }
   
+  @Test
+  public void itReportsUnknownPropertyOncePerLine() {
+    RenderResult result = jinjava.renderForResult("{% for i in items %}{{ i.missing }}\n{{ i.missing }}{% endfor %}",
+        ImmutableMap.<String, Object> of("items", Lists.newArrayList(new Object(), new Object(), new Object())));
+    
+    assertThat(result.getErrors()).hasSize(2);
+    assertThat(result.getErrors().get(0).getLineno()).isEqualTo(1);
+    assertThat(result.getErrors().get(1).getLineno()).isEqualTo(2);
+  }
+  
+  @Test
+  public void itStopsCollectingErrorsAtConfiguredLimit() {
+    JinjavaConfig config = JinjavaConfig.newBuilder().withMaxErrors(2).build();
+    interpreter = new JinjavaInterpreter(jinjava, jinjava.getGlobalContext(), config);
+    for(int i = 0; i < 5; i++) {
+      interpreter.addError(new TemplateError(ErrorType.WARNING, ErrorReason.OTHER, "error " + i, null, i, null));
+    }
+    interpreter.addError(TemplateError.fromException(new RuntimeException("fatal")));
+    
+    assertThat(interpreter.getErrors()).hasSize(4);
+    assertThat(interpreter.getErrors().get(1).getMessage()).contains("error 1");
+    assertThat(interpreter.getErrors().get(2).getReason()).isEqualTo(ErrorReason.OTHER);
+    assertThat(interpreter.getErrors().get(2).getMessage()).contains("only the first 2");
+    assertThat(interpreter.getErrors().get(3).getSeverity()).isEqualTo(ErrorType.FATAL);
+  }
+  
+  @Test(expected = FatalTemplateErrorsException.class)
+  public void itFailsRenderWithFatalErrorAfterErrorLimit() {
+    jinjava = new Jinjava(JinjavaConfig.newBuilder().withMaxErrors(2).build());
+    jinjava.render("{{ a.x }}\n{{ a.y }}\n{{ a.z }}\n{{ 1 % 0 }}",
+        ImmutableMap.<String, Object> of("a", new Object()));
+  }
+  
   @Test
   public void resolveBlockStubsWithNoStubs() {
     assertThat(interpreter.resolveBlockStubs("foo")).isEqualTo("foo");
   }
   
   @Test
-  public void resolveBlockStubsWithMissingNamedBlock() {
-    String content = String.format("this is %sfoobar%s!", JinjavaInterpreter.BLOCK_STUB_START, JinjavaInterpreter.BLOCK_STUB_END);
-    assertThat(interpreter.resolveBlockStubs(content)).isEqualTo("this is !");
+  public void resolveBlockStubsWithMissingNamedBlock() throws Exception {
+    assertThat(interpreter.resolveBlockStubs(contentReferencing("foobar"))).isEqualTo("this is !");
   }
   
   @Test
   public void resolveBlockStubs() throws Exception {
     interpreter.addBlock("foobar", new NodeList(new TextNode(new FixedToken("sparta", -1))));
-    String content = String.format("this is %sfoobar%s!", JinjavaInterpreter.BLOCK_STUB_START, JinjavaInterpreter.BLOCK_STUB_END);
-    assertThat(interpreter.resolveBlockStubs(content)).isEqualTo("this is sparta!");
+    assertThat(interpreter.resolveBlockStubs(contentReferencing("foobar"))).isEqualTo("this is sparta!");
   }
   
   @Test
   public void resolveBlockStubsWithSpecialChars() throws Exception {
     interpreter.addBlock("foobar", new NodeList(new TextNode(new FixedToken("$150.00", -1))));
-    String content = String.format("this is %sfoobar%s!", JinjavaInterpreter.BLOCK_STUB_START, JinjavaInterpreter.BLOCK_STUB_END);
-    assertThat(interpreter.resolveBlockStubs(content)).isEqualTo("this is $150.00!");
+    assertThat(interpreter.resolveBlockStubs(contentReferencing("foobar"))).isEqualTo("this is $150.00!");
+  }
+  
+  @Test
+  public void resolveBlockStubsLeavesMarkersNotMadeByInterpreter() throws Exception {
+    interpreter.addBlock("foobar", new NodeList(new TextNode(new FixedToken("sparta", -1))));
+    String reference = contentReferencing("foobar");
+    String forged = String.format("%sfoobar%s", JinjavaInterpreter.BLOCK_STUB_START, JinjavaInterpreter.BLOCK_STUB_END);
+    String fromOtherInterpreter = new JinjavaInterpreter(interpreter).resolveBlockStubs(reference);
+    String unterminated = reference.substring(0, reference.length() - 2);
+    
+    assertThat(interpreter.resolveBlockStubs(forged)).isEqualTo(forged);
+    assertThat(fromOtherInterpreter).isEqualTo(reference);
+    assertThat(interpreter.resolveBlockStubs(unterminated)).isEqualTo(unterminated);
+  }
+  
+  private String contentReferencing(String blockName) throws IOException {
+    StringBuilder content = new StringBuilder("this is ");
+    interpreter.appendBlockReference(blockName, content);
+    return content.append("!").toString();
   }
   
 }
@@ -0,0 +1,129 @@
+package com.hubspot.jinjava.interpret;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.JinjavaConfig;
+import com.hubspot.jinjava.Template;
+import com.hubspot.jinjava.interpret.RenderProfile.Entry;
+import com.hubspot.jinjava.interpret.RenderProfiler.Kind;
+import com.hubspot.jinjava.loader.ResourceLocator;
+import com.hubspot.jinjava.loader.ResourceNotFoundException;
+
+
+public class RenderProfilerTest {
+
+  private static final Map<String, String> TEMPLATES = ImmutableMap.of(
+      "item.jinja", "<li>{{ item|upper }}</li>",
+      "macros.jinja", "{% macro greet(name) %}hi {{ name }}{% endmacro %}");
+
+  private Jinjava jinjava;
+  private JinjavaConfig profiled;
+  private Map<String, ?> bindings;
+
+  @Before
+  public void setup() {
+    jinjava = new Jinjava(JinjavaConfig.newBuilder().withTemplateCompilation(true).build());
+    jinjava.setResourceLocator(new ResourceLocator() {
+      @Override
+      public String getString(String fullName, Charset encoding, JinjavaInterpreter interpreter) throws IOException {
+        if(!TEMPLATES.containsKey(fullName)) {
+          throw new ResourceNotFoundException(fullName);
+        }
+        return TEMPLATES.get(fullName);
+      }
+    });
+    profiled = JinjavaConfig.newBuilder().withProfilingEnabled(true).build();
+    bindings = ImmutableMap.of("items", Lists.newArrayList("a", "b", "c"), "title", "list");
+  }
+
+  @Test
+  public void itOnlyProfilesWhenEnabled() {
+    Template template = jinjava.compile("{{ title }}");
+    assertThat(template.renderForResult(bindings).getProfile()).isNull();
+    assertThat(template.renderForResult(bindings, profiled).getProfile()).isNotNull();
+  }
+
+  @Test
+  public void itRecordsTreeOfCalls() {
+    Template template = jinjava.compile("{{ title|upper }}\n{% for item in items %}{% if item %}{{ item }}{% endif %}{% endfor %}");
+    RenderResult result = template.renderForResult(bindings, profiled);
+
+    assertThat(result.getOutput()).isEqualTo("LIST\nabc");
+    List<Entry> top = result.getProfile().getRoot().getChildren();
+    assertThat(top).hasSize(2);
+    assertEntry(top.get(0), Kind.EXPRESSION, "title|upper", 1, 1);
+    assertEntry(top.get(0).getChildren().get(0), Kind.FILTER, "upper", -1, 1);
+
+    Entry forTag = top.get(1);
+    assertEntry(forTag, Kind.TAG, "for", 2, 1);
+    assertEntry(forTag.getChildren().get(0), Kind.TAG, "if", 2, 3);
+    assertEntry(forTag.getChildren().get(0).getChildren().get(0), Kind.EXPRESSION, "item", 2, 3);
+    assertThat(forTag.getTotalNanos()).isGreaterThanOrEqualTo(forTag.getChildren().get(0).getTotalNanos());
+    assertThat(forTag.getSelfNanos()).isEqualTo(forTag.getTotalNanos() - forTag.getChildren().get(0).getTotalNanos());
+    assertThat(result.getProfile().getRoot().getTotalNanos()).isEqualTo(top.get(0).getTotalNanos() + forTag.getTotalNanos());
+  }
+
+  @Test
+  public void itRecordsIncludedAndImportedTemplates() {
+    Template template = jinjava.compile("{% import 'macros.jinja' as m %}{% for item in items %}{% include 'item.jinja' %}{% endfor %}{{ m.greet(title) }}");
+    RenderResult result = template.renderForResult(bindings, profiled);
+
+    assertThat(result.getOutput()).isEqualTo("<li>A</li><li>B</li><li>C</li>hi list");
+    RenderProfile profile = result.getProfile();
+    Entry importTag = profile.getRoot().getChildren().get(0);
+    assertEntry(importTag, Kind.TAG, "import", 1, 1);
+    assertEntry(importTag.getChildren().get(0), Kind.RESOURCE, "macros.jinja", -1, 1);
+
+    Entry include = profile.getRoot().getChildren().get(1).getChildren().get(0);
+    assertEntry(include, Kind.TAG, "include", 1, 3);
+    assertEntry(include.getChildren().get(0), Kind.RESOURCE, "item.jinja", -1, 3);
+
+    assertThat(profile.getAggregates(Kind.FILTER)).hasSize(1);
+    assertEntry(profile.getAggregates(Kind.FILTER).get(0), Kind.FILTER, "upper", -1, 3);
+    assertThat(profile.getAggregates(Kind.RESOURCE)).hasSize(2);
+    // import, macro, for and include tags, the two templates, three expressions and the filter
+    assertThat(profile.getAggregates()).hasSize(10);
+  }
+
+  @Test
+  public void itAddsUpCallsOfPartFromDifferentPlaces() {
+    Template template = jinjava.compile("{{ title|upper }}{% if title %}{{ title|upper }}{% endif %}");
+    RenderProfile profile = template.renderForResult(bindings, profiled).getProfile();
+
+    List<Entry> filters = profile.getAggregates(Kind.FILTER);
+    assertThat(filters).hasSize(1);
+    assertThat(filters.get(0).getCount()).isEqualTo(2);
+    assertThat(filters.get(0).getChildren()).isEmpty();
+    assertThat(profile.getAggregates(Kind.EXPRESSION)).hasSize(1);
+    assertThat(profile.getAggregates(Kind.EXPRESSION).get(0).getCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void itKeepsProfileOfFailedRender() {
+    Template template = jinjava.compile("{% for item in items %}{{ item }}{% endfor %}{% include 'missing.jinja' %}");
+    RenderResult result = template.renderForResult(bindings, profiled);
+
+    assertThat(result.hasErrors()).isTrue();
+    assertEntry(result.getProfile().getRoot().getChildren().get(0), Kind.TAG, "for", 1, 1);
+    assertEntry(result.getProfile().getRoot().getChildren().get(1), Kind.TAG, "include", 1, 1);
+  }
+
+  private static void assertEntry(Entry entry, Kind kind, String name, int lineNumber, int count) {
+    assertThat(entry.getKind()).isEqualTo(kind);
+    assertThat(entry.getName()).isEqualTo(name);
+    assertThat(entry.getLineNumber()).isEqualTo(lineNumber);
+    assertThat(entry.getCount()).isEqualTo(count);
+  }
+
+}
@@ -20,5 +20,20 @@ public class TemplateErrorTest {
     TemplateError e = TemplateError.fromUnknownProperty(ImmutableMap.of("foo", "bar"), "other", 123);
     assertThat(e.getMessage()).isEqualTo("Cannot resolve property 'other' in '{foo=bar}'");
   }
-  
+
+  @Test
+  public void itFormatsUnknownPropertyMessageWhenMade() {
+    final StringBuilder state = new StringBuilder("before");
+    Object base = new Object() {
+      @Override
+      public String toString() {
+        return state.toString();
+      }
+    };
+
+    TemplateError e = TemplateError.fromUnknownProperty(base, "foo", 123);
+    state.replace(0, state.length(), "after");
+    assertThat(e.getMessage()).isEqualTo("Cannot resolve property 'foo' in 'before'");
+  }
+
 }
@@ -3,10 +3,12 @@ package com.hubspot.jinjava.lib.tag;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.charset.Charset;
 import com.hubspot.jinjava.util.StandardCharsets;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -65,6 +67,36 @@ public class ExtendsTagTest {
     assertThat(dom.select(".sidebar h3").text()).isEqualTo("Table Of Contents");
   }
   
+  @Test
+  public void blockMarkerTextInContentIsLeftAlone() throws Exception {
+    Map<String, Object> bindings = new HashMap<String, Object>();
+    bindings.put("marker", JinjavaInterpreter.BLOCK_STUB_START + "footer" + JinjavaInterpreter.BLOCK_STUB_END);
+
+    Document dom = Jsoup.parse(application.render("{% extends \"base1.jinja\" %}{% block content %}{{ marker }}{% endblock %}", bindings));
+
+    assertThat(dom.select("#content").text()).isEqualTo("___bl0ck___~footer~");
+  }
+
+  @Test
+  public void blockMarkerTextInContentDoesNotReferenceBlocksInMacros() throws Exception {
+    String child = "{% extends \"macro-block-base.jinja\" %}{% block a %}[{{ marker }}]{% endblock %}";
+    Map<String, Object> bindings = new HashMap<String, Object>();
+    
+    bindings.put("marker", JinjavaInterpreter.BLOCK_STUB_START + "b" + JinjavaInterpreter.BLOCK_STUB_END);
+    assertThat(application.render(child, bindings)).isEqualTo("<[___bl0ck___~b~]><B>");
+    
+    bindings.put("marker", JinjavaInterpreter.BLOCK_STUB_START + "a");
+    assertThat(application.render(child, bindings)).isEqualTo("<[___bl0ck___~a]><B>");
+  }
+  
+  @Test
+  public void itStreamsSameOutputAsStringRender() throws Exception {
+    StringWriter out = new StringWriter();
+    application.render(locator.fixture("extends-base2.jinja"), new HashMap<String, Object>(), out);
+    
+    assertThat(out.toString()).isEqualTo(application.render(locator.fixture("extends-base2.jinja"), new HashMap<String, Object>()));
+  }
+  
   private static class ExtendsTagTestResourceLocator implements ResourceLocator {
     @Override
     public String getString(String fullName, Charset encoding, JinjavaInterpreter interpreter) throws IOException {
@@ -73,6 +73,16 @@ public class ForTagTest {
     assertThat(dom.select("p")).hasSize(2);
   }
   
+  @Test
+  public void forLoopUnpacksBeanPropertiesForEachItem() throws Exception {
+    context.put("people", Lists.newArrayList(new Person("jared", 30), new Person("ana", 41)));
+    TagNode tagNode = (TagNode) TreeParser.parseTree(new TokenParser(interpreter,
+        "{% for name, age, missing in people %}{{ name }}:{{ age }}{{ missing }};{% endfor %}")).getChildren().getFirst();
+    
+    assertThat(tag.interpret(tagNode, interpreter)).isEqualTo("jared:30;ana:41;");
+    assertThat(tag.interpret(tagNode, interpreter)).isEqualTo("jared:30;ana:41;");
+  }
+  
   @Test
   public void forLoopLiteralLoopExpr() throws Exception {
     TagNode tagNode = (TagNode) fixture("literal-loop-expr");
@@ -128,4 +138,22 @@ public class ForTagTest {
     }
   }
 
+  public static class Person {
+    private final String name;
+    private final int age;
+    
+    public Person(String name, int age) {
+      this.name = name;
+      this.age = age;
+    }
+    
+    public String getName() {
+      return name;
+    }
+    
+    public int getAge() {
+      return age;
+    }
+  }
+
 }
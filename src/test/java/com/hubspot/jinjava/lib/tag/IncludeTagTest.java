@@ -6,13 +6,21 @@ import java.io.IOException;
 import com.hubspot.jinjava.util.StandardCharsets;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.io.Resources;
 import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.JinjavaConfig;
 
 
 public class IncludeTagTest {
@@ -44,5 +52,92 @@ public class IncludeTagTest {
         new HashMap<String, Object>());
     assertThat(Splitter.on('\n').omitEmptyStrings().trimResults().split(result)).containsExactly("hello", "hello");
   }
+
+  @Test
+  public void itRendersFollowingIncludesOnIncludeExecutor() throws IOException {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    CountingExecutor executor = new CountingExecutor(pool);
+    try {
+      jinjava = new Jinjava(JinjavaConfig.newBuilder().withIncludeExecutor(executor).build());
+      String result = jinjava.render(Resources.toString(Resources.getResource("tags/includetag/c-includes-d-twice.jinja"), StandardCharsets.UTF_8), 
+          new HashMap<String, Object>());
+      
+      assertThat(Splitter.on('\n').omitEmptyStrings().trimResults().split(result)).containsExactly("hello", "hello");
+      assertThat(executor.executed.get()).isEqualTo(1);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+  
+  @Test
+  public void itRendersIncludesCallingMethodsInTurn() {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    CountingExecutor executor = new CountingExecutor(pool);
+    try {
+      jinjava = new Jinjava(JinjavaConfig.newBuilder().withIncludeExecutor(executor).build());
+      List<Object> items = Lists.newArrayList();
+      String result = jinjava.render("{% include 'tags/includetag/d.jinja' %}{% include 'tags/includetag/appends-item.jinja' %}{% include 'tags/includetag/appends-item.jinja' %}",
+          ImmutableMap.<String, Object> of("items", items));
+      
+      assertThat(result).isEqualTo("hello12");
+      assertThat(executor.executed.get()).isEqualTo(0);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+  
+  @Test
+  public void itRendersIncludesCallingOuterMacrosInTurn() {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    CountingExecutor executor = new CountingExecutor(pool);
+    try {
+      jinjava = new Jinjava(JinjavaConfig.newBuilder().withIncludeExecutor(executor).build());
+      List<Object> items = Lists.newArrayList();
+      String result = jinjava.render("{% macro append() %}{% set ignored = items.append(1) %}{{ items|length }}{% endmacro %}"
+          + "{% include 'tags/includetag/d.jinja' %}{% include 'tags/concurrentinclude/calls-macro.jinja' %}{% include 'tags/concurrentinclude/calls-macro-with-call.jinja' %}",
+          ImmutableMap.<String, Object> of("items", items));
+      
+      assertThat(result).isEqualTo("hello12");
+      assertThat(items).hasSize(2);
+      assertThat(executor.executed.get()).isEqualTo(0);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+  
+  @Test
+  public void itRendersIncludesCallingOwnMacrosOnIncludeExecutor() {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    CountingExecutor executor = new CountingExecutor(pool);
+    try {
+      jinjava = new Jinjava(JinjavaConfig.newBuilder().withIncludeExecutor(executor).build());
+      String result = jinjava.render("{% include 'tags/includetag/d.jinja' %} {% include 'tags/concurrentinclude/calls-own-macro.jinja' %}",
+          ImmutableMap.<String, Object> of("title", "world"));
+      
+      assertThat(result).isEqualTo("hello hello WORLD");
+      assertThat(executor.executed.get()).isEqualTo(1);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+  
+  private static class CountingExecutor implements Executor {
+    private final Executor delegate;
+    final AtomicInteger executed = new AtomicInteger();
+    
+    CountingExecutor(Executor delegate) {
+      this.delegate = delegate;
+    }
+    
+    @Override
+    public void execute(Runnable command) {
+      executed.incrementAndGet();
+      delegate.execute(command);
+    }
+  }
   
 }
@@ -0,0 +1,154 @@
+package com.hubspot.jinjava.loader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.base.Ticker;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.util.StandardCharsets;
+
+@RunWith(MockitoJUnitRunner.class)
+@SuppressWarnings("unchecked")
+public class CachingResourceLocatorTest {
+
+  @Mock VersionedResourceLocator versioned;
+  @Mock ResourceLocator plain;
+  @Mock JinjavaInterpreter interpreter;
+
+  FakeTicker ticker;
+
+  @Before
+  public void setup() {
+    ticker = new FakeTicker();
+  }
+
+  @Test
+  public void itReadsEachResourceOnce() throws Exception {
+    when(plain.getString("foo", StandardCharsets.UTF_8, interpreter)).thenReturn("bar");
+    CachingResourceLocator locator = CachingResourceLocator.newBuilder(plain).withTicker(ticker).build();
+
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("bar");
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("bar");
+    verify(plain, times(1)).getString("foo", StandardCharsets.UTF_8, interpreter);
+  }
+
+  @Test
+  public void itCachesMisses() throws Exception {
+    when(plain.getString("foo", StandardCharsets.UTF_8, interpreter)).thenThrow(ResourceNotFoundException.class);
+    CachingResourceLocator locator = CachingResourceLocator.newBuilder(plain).withTicker(ticker).build();
+
+    assertNotFound(locator);
+    assertNotFound(locator);
+    verify(plain, times(1)).getString("foo", StandardCharsets.UTF_8, interpreter);
+  }
+
+  @Test
+  public void itRetriesMissesWhenNegativeCachingDisabled() throws Exception {
+    when(plain.getString("foo", StandardCharsets.UTF_8, interpreter)).thenThrow(ResourceNotFoundException.class);
+    CachingResourceLocator locator = CachingResourceLocator.newBuilder(plain).withTicker(ticker).withNegativeCaching(false).build();
+
+    assertNotFound(locator);
+    assertNotFound(locator);
+    verify(plain, times(2)).getString("foo", StandardCharsets.UTF_8, interpreter);
+  }
+
+  @Test
+  public void itExpiresEntriesAfterTimeToLive() throws Exception {
+    when(plain.getString("foo", StandardCharsets.UTF_8, interpreter)).thenReturn("bar", "baz");
+    CachingResourceLocator locator = CachingResourceLocator.newBuilder(plain).withTicker(ticker).withTimeToLive(1, TimeUnit.MINUTES).build();
+
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("bar");
+    ticker.advance(61, TimeUnit.SECONDS);
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("baz");
+  }
+
+  @Test
+  public void itRevalidatesAgainstVersionAfterInterval() throws Exception {
+    when(versioned.getVersion("foo", interpreter)).thenReturn(1L, 1L, 2L);
+    when(versioned.getString("foo", StandardCharsets.UTF_8, interpreter)).thenReturn("bar", "baz");
+    CachingResourceLocator locator = CachingResourceLocator.newBuilder(versioned).withTicker(ticker)
+        .withRevalidateInterval(1, TimeUnit.SECONDS).build();
+
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("bar");
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("bar");
+    verify(versioned, times(1)).getVersion("foo", interpreter);
+
+    ticker.advance(2, TimeUnit.SECONDS);
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("bar");
+
+    ticker.advance(2, TimeUnit.SECONDS);
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("baz");
+    verify(versioned, times(2)).getString("foo", StandardCharsets.UTF_8, interpreter);
+  }
+
+  @Test
+  public void itPicksUpCreatedResourceAfterCachedMiss() throws Exception {
+    when(versioned.getVersion("foo", interpreter)).thenThrow(new ResourceNotFoundException("foo")).thenReturn(1L);
+    when(versioned.getString("foo", StandardCharsets.UTF_8, interpreter)).thenReturn("bar");
+    CachingResourceLocator locator = CachingResourceLocator.newBuilder(versioned).withTicker(ticker)
+        .withRevalidateInterval(1, TimeUnit.SECONDS).build();
+
+    assertNotFound(locator);
+    ticker.advance(2, TimeUnit.SECONDS);
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("bar");
+  }
+
+  @Test
+  public void itReloadsInvalidatedResource() throws Exception {
+    when(plain.getString("foo", StandardCharsets.UTF_8, interpreter)).thenReturn("bar", "baz");
+    CachingResourceLocator locator = CachingResourceLocator.newBuilder(plain).withTicker(ticker).build();
+
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("bar");
+    locator.invalidate("foo");
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("baz");
+  }
+
+  @Test
+  public void itInvalidatesEveryCharsetOfOnlyTheNamedResource() throws Exception {
+    when(plain.getString("foo", StandardCharsets.UTF_8, interpreter)).thenReturn("bar", "baz");
+    when(plain.getString("foo", StandardCharsets.ISO_8859_1, interpreter)).thenReturn("latin bar", "latin baz");
+    when(plain.getString("other", StandardCharsets.UTF_8, interpreter)).thenReturn("other", "changed");
+    CachingResourceLocator locator = CachingResourceLocator.newBuilder(plain).withTicker(ticker).build();
+
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("bar");
+    assertThat(locator.getString("foo", StandardCharsets.ISO_8859_1, interpreter)).isEqualTo("latin bar");
+    assertThat(locator.getString("other", StandardCharsets.UTF_8, interpreter)).isEqualTo("other");
+
+    locator.invalidate("foo");
+    assertThat(locator.getString("foo", StandardCharsets.UTF_8, interpreter)).isEqualTo("baz");
+    assertThat(locator.getString("foo", StandardCharsets.ISO_8859_1, interpreter)).isEqualTo("latin baz");
+    assertThat(locator.getString("other", StandardCharsets.UTF_8, interpreter)).isEqualTo("other");
+  }
+
+  private void assertNotFound(CachingResourceLocator locator) throws Exception {
+    try {
+      locator.getString("foo", StandardCharsets.UTF_8, interpreter);
+      throw new AssertionError("expected ResourceNotFoundException");
+    } catch(ResourceNotFoundException e) {
+      assertThat(e.getMessage()).contains("foo");
+    }
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos = 0;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+}
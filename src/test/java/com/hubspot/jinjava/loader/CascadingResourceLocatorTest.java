@@ -1,8 +1,14 @@
 package com.hubspot.jinjava.loader;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.charset.Charset;
+
 import com.hubspot.jinjava.util.StandardCharsets;
 
 
@@ -20,6 +26,8 @@ public class CascadingResourceLocatorTest {
 
   @Mock ResourceLocator first;
   @Mock ResourceLocator second;
+  @Mock VersionedResourceLocator versioned;
+  @Mock VersionedResourceLocator otherVersioned;
   @Mock JinjavaInterpreter interpreter;
 
   CascadingResourceLocator locator;
@@ -48,4 +56,23 @@ public class CascadingResourceLocatorTest {
     when(second.getString("foo", StandardCharsets.UTF_8, interpreter)).thenThrow(ResourceNotFoundException.class);
     locator.getString("foo", StandardCharsets.UTF_8, interpreter);
   }
+
+  @Test
+  public void itReportsVersionFromFirstVersionedLocatorWithResource() throws Exception {
+    when(versioned.getVersion("foo", interpreter)).thenThrow(ResourceNotFoundException.class);
+    when(otherVersioned.getVersion("foo", interpreter)).thenReturn(42L);
+    locator = new CascadingResourceLocator(versioned, otherVersioned, first);
+
+    assertThat(locator.getVersion("foo", interpreter)).isEqualTo(42L);
+  }
+
+  @Test
+  public void itReportsUnknownVersionWithoutReadingUnversionedLocator() throws Exception {
+    when(versioned.getVersion("foo", interpreter)).thenThrow(ResourceNotFoundException.class);
+    locator = new CascadingResourceLocator(versioned, first, second);
+
+    assertThat(locator.getVersion("foo", interpreter)).isEqualTo(VersionedResourceLocator.UNKNOWN_VERSION);
+    verify(first, never()).getString(anyString(), any(Charset.class), any(JinjavaInterpreter.class));
+    verify(second, never()).getString(anyString(), any(Charset.class), any(JinjavaInterpreter.class));
+  }
 }
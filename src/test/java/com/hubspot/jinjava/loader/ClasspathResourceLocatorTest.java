@@ -29,6 +29,13 @@ public class ClasspathResourceLocatorTest {
     assertThat(new ClasspathResourceLocator().getString("loader/cp/foo/bar.jinja", StandardCharsets.UTF_8, interpreter)).isEqualTo("hello world.");
   }
   
+  @Test
+  public void itListsResourcesBelowDirectory() throws Exception {
+    assertThat(new ClasspathResourceLocator().list("loader/cp/")).containsExactly("loader/cp/foo/bar.jinja");
+    assertThat(new ClasspathResourceLocator().list("/loader/cp/foo")).containsExactly("loader/cp/foo/bar.jinja");
+    assertThat(new ClasspathResourceLocator().list("loader/nothing")).isEmpty();
+  }
+  
   @Test(expected=ResourceNotFoundException.class)
   public void itThrowsNotFoundWhenNotFound() throws Exception {
     new ClasspathResourceLocator().getString("foo", StandardCharsets.UTF_8, interpreter);
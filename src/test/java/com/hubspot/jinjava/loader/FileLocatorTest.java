@@ -79,6 +79,14 @@ public class FileLocatorTest {
     assertThat(locatorTmpDir.getString(first.getAbsolutePath(), StandardCharsets.UTF_8, interpreter)).isEqualTo("first");
   }
   
+  @Test
+  public void itListsFilesBelowDir() throws Exception {
+    assertThat(locatorTmpDir.list("")).containsExactly("foo/first.jinja");
+    assertThat(locatorTmpDir.list("foo/")).containsExactly("foo/first.jinja");
+    assertThat(locatorWorkingDir.list("target/loader-test-data")).containsExactly("target/loader-test-data/second.jinja");
+    assertThat(locatorTmpDir.list("bar")).isEmpty();
+  }
+  
   @Test(expected=FileNotFoundException.class)
   public void testInvalidBaseDir() throws Exception {
     new FileLocator(new File("/blarghhh"));
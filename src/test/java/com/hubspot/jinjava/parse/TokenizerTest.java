@@ -72,6 +72,52 @@ public class TokenizerTest {
     assertThat(tokens.get(0).content.trim()).isEqualTo("widget_block rich_text \"module\" overrideable=True, label='<p>We\\'ve included a great symbol</p>'");
   }
   
+  @Test
+  public void itMakesSameTokensReferencingSource() throws Exception {
+    for(String fixture : new String[] {"comment-with-tags", "comment-plus", "multiline-comment", "tag-with-quot-in-attr", "html-with-tag-in-attr"}) {
+      String template = Resources.toString(Resources.getResource(String.format("parse/tokenizer/%s.jinja", fixture)), StandardCharsets.UTF_8);
+      List<Token> copied = tokens(new Tokenizer(), template);
+      List<Token> referenced = tokens(new Tokenizer(true), new StringBuilder(template));
+
+      assertThat(referenced).hasSameSizeAs(copied);
+      for(int i = 0; i < copied.size(); i++) {
+        assertThat(referenced.get(i).getType()).isEqualTo(copied.get(i).getType());
+        assertThat(referenced.get(i).getImage()).isEqualTo(copied.get(i).getImage());
+        assertThat(referenced.get(i).toString()).isEqualTo(copied.get(i).toString());
+      }
+    }
+  }
+
+  @Test
+  public void itOnlyCopiesTextOfReferencingTokensWhenAsked() throws Exception {
+    List<Token> tokens = tokens(new Tokenizer(true), "hello {{- name -}}{% if x %}");
+    assertThat(tokens).hasSize(3);
+    assertThat(tokens.get(0).image).isNull();
+    assertThat(tokens.get(1).image).isNull();
+
+    StringBuilder out = new StringBuilder();
+    ((FixedToken) tokens.get(0)).output(out);
+    assertThat(out.toString()).isEqualTo("hello ");
+    assertThat(tokens.get(0).image).isNull();
+
+    EchoToken echo = (EchoToken) tokens.get(1);
+    assertThat(echo.getExpr()).isEqualTo("name");
+    assertThat(echo.isLeftTrim()).isTrue();
+    assertThat(echo.isRightTrim()).isTrue();
+    assertThat(((TagToken) tokens.get(2)).getTagName()).isEqualTo("if");
+    assertThat(((TagToken) tokens.get(2)).getHelpers().trim()).isEqualTo("x");
+  }
+
+  private List<Token> tokens(Tokenizer t, CharSequence template) {
+    t.init(template);
+    List<Token> tokens = Lists.newArrayList();
+    Token token;
+    while((token = t.getNextToken()) != null) {
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
   private List<Token> tokens(String fixture) {
     Tokenizer t = fixture(fixture);
     
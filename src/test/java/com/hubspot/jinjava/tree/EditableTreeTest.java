@@ -0,0 +1,178 @@
+package com.hubspot.jinjava.tree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.Template;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.TemplateError;
+import com.hubspot.jinjava.lib.tag.PreparedTag;
+
+
+public class EditableTreeTest {
+
+  private static final String[] FRAGMENTS = {
+    "text", " ", "\n", "{{ x }}", "{{ y|upper }}", "{% if a %}", "{% else %}", "{% endif %}", "{% for i in items %}",
+    "{% endfor %}", "{# note #}", "{% raw %}", "{% endraw %}", "{% unknown %}", "{{", "}}", "{%", "%}", "{#", "#}",
+    "{", "}", "%", "'", "\"", "{{ 'a}}' }}", "{% set v = \"%}\" %}"
+  };
+
+  private Jinjava jinjava;
+
+  @Before
+  public void setup() {
+    jinjava = new Jinjava();
+  }
+
+  @Test
+  public void itReusesNodesAwayFromEdit() {
+    String source = "a{{ x }}b{% if y %}c{{ z }}{% endif %}d";
+    EditableTree tree = EditableTree.parse(interpreter(), source);
+    EditableTree edited = tree.edit(interpreter(), source.indexOf('x'), 1, "w");
+
+    Node ifNode = tree.getRoot().getChildren().getLast().getPredecessor();
+    Node editedIfNode = edited.getRoot().getChildren().getLast().getPredecessor();
+    assertThat(edited.getSource()).isEqualTo("a{{ w }}b{% if y %}c{{ z }}{% endif %}d");
+    assertThat(editedIfNode).isNotSameAs(ifNode);
+    assertThat(editedIfNode.getChildren()).isSameAs(ifNode.getChildren());
+    assertThat(edited.getRoot().getChildren().getFirst().getSuccessor().getMaster().getImage()).isEqualTo("{{ w }}");
+    assertThat(dump(tree.getRoot())).isEqualTo(dump(interpreter().parse(source)));
+  }
+
+  @Test
+  public void itRenumbersLinesAfterAddedLine() {
+    String source = "{{ x }}\n{% if y %}\n{{ z }}{% endif %}";
+    EditableTree edited = EditableTree.parse(interpreter(), source).edit(interpreter(), 0, 0, "\n");
+
+    assertThat(edited.getRoot().getChildren().getLast().getLineNumber()).isEqualTo(3);
+    assertThat(dump(edited.getRoot())).isEqualTo(dump(interpreter().parse(edited.getSource())));
+  }
+
+  @Test
+  public void itReusesNodesAfterEditChangingLineCount() {
+    CountingTag tag = new CountingTag();
+    jinjava.getGlobalContext().registerTag(tag);
+    String source = "a\n{% count %}\n{% if y %}\n{% count %}{% endif %}\n{% count %}";
+    EditableTree tree = EditableTree.parse(interpreter(), source);
+    assertThat(tag.prepared).isEqualTo(3);
+
+    EditableTree added = tree.edit(interpreter(), 1, 0, "\n\n");
+    EditableTree removed = added.edit(interpreter(), 1, 2, "");
+    assertThat(tag.prepared).isEqualTo(3);
+
+    assertThat(added.getRoot().getChildren().getLast().getLineNumber()).isEqualTo(7);
+    assertThat(dump(added.getRoot())).isEqualTo(dump(interpreter().parse(added.getSource())));
+    assertThat(dump(removed.getRoot())).isEqualTo(dump(tree.getRoot()));
+  }
+
+  @Test
+  public void itKeepsErrorsOfReusedNodes() {
+    String source = "{% unknown %}a{{ x }}{% if y %}";
+    JinjavaInterpreter interpreter = interpreter();
+    EditableTree edited = EditableTree.parse(interpreter(), source).edit(interpreter, source.indexOf('a'), 1, "b");
+
+    JinjavaInterpreter full = interpreter();
+    full.parse(edited.getSource());
+    assertThat(edited.getErrors()).hasSize(2);
+    assertThat(dump(interpreter.getErrors())).isEqualTo(dump(full.getErrors()));
+  }
+
+  @Test
+  public void itMatchesFullParseAfterEachEdit() {
+    Random random = new Random(42);
+    String source = "";
+    EditableTree tree = EditableTree.parse(interpreter(), source);
+
+    for (int i = 0; i < 2000; i++) {
+      int offset = random.nextInt(source.length() + 1);
+      int removed = source.length() > 200 || random.nextInt(3) == 0 ? random.nextInt(Math.min(20, source.length() - offset) + 1) : 0;
+      String inserted = random.nextInt(4) == 0 ? "" : FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+
+      JinjavaInterpreter interpreter = interpreter();
+      tree = tree.edit(interpreter, offset, removed, inserted);
+      source = source.substring(0, offset) + inserted + source.substring(offset + removed);
+
+      JinjavaInterpreter full = interpreter();
+      Node expected = full.parse(source);
+      assertThat(tree.getSource()).isEqualTo(source);
+      assertThat(dump(tree.getRoot())).as(source).isEqualTo(dump(expected));
+      assertThat(dump(interpreter.getErrors())).as(source).isEqualTo(dump(full.getErrors()));
+    }
+  }
+
+  @Test
+  public void itRendersEditedTemplate() {
+    Template template = jinjava.compile("hello {{ name }}");
+    Template edited = template.edit(0, 5, "bye").edit(3, 0, ",");
+
+    assertThat(template.getSource()).isEqualTo("hello {{ name }}");
+    assertThat(edited.getSource()).isEqualTo("bye, {{ name }}");
+    assertThat(edited.render(ImmutableMap.of("name", "jared"))).isEqualTo("bye, jared");
+    assertThat(edited.edit(5, 10, "{% unknown %}").getErrors()).hasSize(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void itRejectsEditOutsideTemplate() {
+    EditableTree.parse(interpreter(), "hello").edit(interpreter(), 3, 3, "");
+  }
+
+  private static class CountingTag implements PreparedTag {
+    int prepared = 0;
+
+    @Override
+    public String getName() {
+      return "count";
+    }
+
+    @Override
+    public Object prepare(TagNode tagNode, JinjavaInterpreter interpreter) {
+      return ++prepared;
+    }
+
+    @Override
+    public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+      return "";
+    }
+
+    @Override
+    public String getEndTagName() {
+      return null;
+    }
+  }
+
+  private JinjavaInterpreter interpreter() {
+    return new JinjavaInterpreter(jinjava, new Context(jinjava.getGlobalContext()), jinjava.getGlobalConfig());
+  }
+
+  private static String dump(Node root) {
+    StringBuilder out = new StringBuilder();
+    for (Node node : root.getChildren()) {
+      dump(node, out);
+    }
+    return out.toString();
+  }
+
+  private static void dump(Node node, StringBuilder out) {
+    out.append('(').append(node.getName()).append(':').append(node.getLineNumber()).append(':').append(node);
+    for (Node child : node.getChildren()) {
+      dump(child, out);
+    }
+    out.append(')');
+  }
+
+  private static String dump(List<TemplateError> errors) {
+    StringBuilder out = new StringBuilder();
+    for (TemplateError error : errors) {
+      out.append(error.getReason()).append(':').append(error.getLineno()).append(':').append(error.getMessage()).append('\n');
+    }
+    return out.toString();
+  }
+}
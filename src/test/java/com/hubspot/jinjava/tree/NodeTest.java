@@ -0,0 +1,93 @@
+package com.hubspot.jinjava.tree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+
+
+public class NodeTest {
+
+  private static final String TEMPLATE = "a{% for i in items %}{{ i }}, {% endfor %}b{% if x %}{{ x|upper }}{% endif %}";
+
+  private Jinjava jinjava;
+  private JinjavaInterpreter interpreter;
+
+  @Before
+  public void setup() {
+    jinjava = new Jinjava();
+    interpreter = new JinjavaInterpreter(jinjava, new Context(jinjava.getGlobalContext()), jinjava.getGlobalConfig());
+  }
+
+  @Test
+  public void itFindsSiblingsAndLevelThroughParent() {
+    Node root = interpreter.parse(TEMPLATE);
+    Node text = root.getChildren().getFirst();
+    Node forNode = text.getSuccessor();
+    Node echo = forNode.getChildren().getFirst();
+
+    assertThat(text.getPredecessor()).isNull();
+    assertThat(forNode.getPredecessor()).isSameAs(text);
+    assertThat(forNode.getSuccessor().getSuccessor()).isSameAs(root.getChildren().getLast());
+    assertThat(root.getChildren().getLast().getSuccessor()).isNull();
+    assertThat(echo.getParent()).isSameAs(forNode);
+    assertThat(echo.getLevel()).isEqualTo(2);
+    assertThat(echo.getLineNumber()).isEqualTo(1);
+  }
+
+  @Test
+  public void itFindsInheritanceAnywhereInTheTree() {
+    assertThat(((RootNode) interpreter.parse(TEMPLATE)).usesInheritance()).isFalse();
+    assertThat(((RootNode) interpreter.parse("{% extends 'base.jinja' %}")).usesInheritance()).isTrue();
+    assertThat(((RootNode) interpreter.parse("{% if x %}{% for i in y %}{% block b %}{% endblock %}{% endfor %}{% endif %}")).usesInheritance()).isTrue();
+  }
+
+  @Test
+  public void itSharesEmptyChildListsOnceCompact() {
+    Node root = interpreter.parse(TEMPLATE);
+    root.compact();
+
+    Node text = root.getChildren().getFirst();
+    Node echo = text.getSuccessor().getChildren().getFirst();
+    assertThat(text.getChildren()).isSameAs(NodeList.EMPTY);
+    assertThat(echo.getChildren()).isSameAs(text.getChildren());
+    assertThat(root.getChildren().size()).isEqualTo(4);
+  }
+
+  @Test
+  public void itRendersCompactTreeLikeParsedTree() {
+    Node parsed = interpreter.parse(TEMPLATE);
+    Node compact = interpreter.parse(TEMPLATE);
+    compact.compact();
+
+    interpreter.getContext().putAll(ImmutableMap.of("items", new String[] {"x", "y"}, "x", "z"));
+    assertThat(interpreter.render(compact)).isEqualTo(interpreter.render(parsed)).isEqualTo("ax, y, bZ");
+    assertThat(compact.getChildren().getLast().toString()).isEqualTo(parsed.getChildren().getLast().toString());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void itRejectsChangesToCompactTree() {
+    Iterator<Node> children = jinjava.compile(TEMPLATE).getRoot().getChildren().iterator();
+    children.next();
+    children.remove();
+  }
+
+  @Test
+  public void itRemovesNodesFromParsedTree() {
+    Node root = interpreter.parse(TEMPLATE);
+    Iterator<Node> children = root.getChildren().iterator();
+    children.next();
+    children.remove();
+
+    assertThat(root.getChildren().size()).isEqualTo(3);
+    assertThat(root.getChildren().getFirst().getName()).isEqualTo("for");
+  }
+
+}
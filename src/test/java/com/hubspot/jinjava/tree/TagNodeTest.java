@@ -0,0 +1,141 @@
+package com.hubspot.jinjava.tree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.Template;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.lib.tag.PreparedTag;
+import com.hubspot.jinjava.lib.tag.Tag;
+
+
+public class TagNodeTest {
+
+  private Jinjava jinjava;
+  
+  @Before
+  public void setup() {
+    jinjava = new Jinjava();
+  }
+  
+  @Test
+  public void itKeepsTagBoundAtParseTime() throws Exception {
+    Tag greet = new GreetTag("hello");
+    jinjava.getGlobalContext().registerTag(greet);
+    
+    Template template = jinjava.compile("{% greet %}");
+    TagNode node = (TagNode) template.getRoot().getChildren().getFirst();
+    JinjavaInterpreter interpreter = new JinjavaInterpreter(jinjava, jinjava.getGlobalContext(), jinjava.getGlobalConfig());
+    
+    assertThat(node.getTag(interpreter)).isSameAs(greet);
+    assertThat(template.render(new HashMap<String, Object>())).isEqualTo("hello");
+  }
+  
+  @Test
+  public void itRebindsTagWhenTagsAreRegistered() throws Exception {
+    jinjava.getGlobalContext().registerTag(new GreetTag("hello"));
+    Template template = jinjava.compile("{% greet %}");
+    assertThat(template.render(new HashMap<String, Object>())).isEqualTo("hello");
+    
+    jinjava.getGlobalContext().registerTag(new GreetTag("hi"));
+    assertThat(template.render(new HashMap<String, Object>())).isEqualTo("hi");
+  }
+  
+  @Test
+  public void itRebindsTagRegisteredInEnclosingScopeAfterLookup() throws Exception {
+    Tag hello = new GreetTag("hello");
+    jinjava.getGlobalContext().registerTag(hello);
+    Template template = jinjava.compile("{% greet %}");
+    TagNode node = (TagNode) template.getRoot().getChildren().getFirst();
+    
+    Context scope = new Context(jinjava.getGlobalContext());
+    JinjavaInterpreter interpreter = new JinjavaInterpreter(jinjava, new Context(new Context(scope)), jinjava.getGlobalConfig());
+    assertThat(node.getTag(interpreter)).isSameAs(hello);
+    
+    Tag hi = new GreetTag("hi");
+    scope.registerTag(hi);
+    assertThat(node.getTag(interpreter)).isSameAs(hi);
+  }
+  
+  @Test
+  public void itPreparesAgainForReboundTag() throws Exception {
+    Template template = jinjava.compile("{% for x in items %}{{ x }}{% endfor %}");
+    assertThat(template.render(ImmutableMap.<String, Object> of("items", Lists.newArrayList(1, 2)))).isEqualTo("12");
+    
+    jinjava.getGlobalContext().registerTag(new PreparedGreetTag("for"));
+    assertThat(template.render(ImmutableMap.<String, Object> of("items", Lists.newArrayList(1, 2)))).isEqualTo("hello x in items");
+  }
+  
+  @Test
+  public void itPreparesOnceWhenTagPreparesNothing() throws Exception {
+    PreparedGreetTag greet = new PreparedGreetTag("greet");
+    jinjava.getGlobalContext().registerTag(greet);
+    
+    Template template = jinjava.compile("{% greet %}");
+    template.render(new HashMap<String, Object>());
+    template.render(new HashMap<String, Object>());
+    assertThat(greet.prepared).isEqualTo(1);
+  }
+  
+  private static class PreparedGreetTag implements PreparedTag {
+    private final String name;
+    int prepared = 0;
+    
+    PreparedGreetTag(String name) {
+      this.name = name;
+    }
+    
+    @Override
+    public String getName() {
+      return name;
+    }
+    
+    @Override
+    public Object prepare(TagNode tagNode, JinjavaInterpreter interpreter) {
+      prepared++;
+      return tagNode.getHelpers().trim().isEmpty() ? null : "hello " + tagNode.getHelpers().trim();
+    }
+    
+    @Override
+    public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+      return (String) tagNode.getPrepared(interpreter);
+    }
+    
+    @Override
+    public String getEndTagName() {
+      return null;
+    }
+  }
+  
+  private static class GreetTag implements Tag {
+    private final String greeting;
+    
+    GreetTag(String greeting) {
+      this.greeting = greeting;
+    }
+    
+    @Override
+    public String getName() {
+      return "greet";
+    }
+    
+    @Override
+    public String interpret(TagNode tagNode, JinjavaInterpreter interpreter) {
+      return greeting;
+    }
+    
+    @Override
+    public String getEndTagName() {
+      return null;
+    }
+  }
+  
+}
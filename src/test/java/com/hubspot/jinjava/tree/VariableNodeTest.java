@@ -11,6 +11,8 @@ import org.junit.Test;
 import com.google.common.base.Throwables;
 import com.google.common.io.Resources;
 import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.JinjavaConfig;
+import com.hubspot.jinjava.Template;
 import com.hubspot.jinjava.interpret.Context;
 import com.hubspot.jinjava.interpret.JinjavaInterpreter;
 import com.hubspot.jinjava.parse.TokenParser;
@@ -18,12 +20,13 @@ import com.hubspot.jinjava.parse.TokenParser;
 
 public class VariableNodeTest {
 
+  private Jinjava jinjava;
   private Context context;
   private JinjavaInterpreter interpreter;
   
   @Before
   public void setup() {
-    Jinjava jinjava = new Jinjava();
+    jinjava = new Jinjava();
     context = new Context();
     interpreter = new JinjavaInterpreter(jinjava, context, jinjava.getGlobalConfig());
   }
@@ -46,6 +49,31 @@ public class VariableNodeTest {
     assertThat(node.render(interpreter)).isEqualTo("hello {{ place }}");
   }
   
+  @Test
+  public void itLeavesResultAloneWhenNestedInterpretationDisabled() throws Exception {
+    interpreter = new JinjavaInterpreter(jinjava, context, JinjavaConfig.newBuilder().withNestedInterpretationEnabled(false).build());
+    context.put("myvar", "hello {{ place }}");
+    context.put("place", "world");
+    
+    VariableNode node = fixture("simplevar");
+    assertThat(node.render(interpreter)).isEqualTo("hello {{ place }}");
+  }
+  
+  @Test
+  public void itReusesParsedTreeForRecurringNestedValues() throws Exception {
+    String content = "hello {{ place }}";
+    context.put("myvar", content);
+    context.put("place", "world");
+    
+    VariableNode node = fixture("simplevar");
+    assertThat(node.render(interpreter)).isEqualTo("hello world");
+    
+    Template nested = jinjava.compileNested(content);
+    context.put("place", "there");
+    assertThat(node.render(interpreter)).isEqualTo("hello there");
+    assertThat(jinjava.compileNested(content)).isSameAs(nested);
+  }
+  
   @Test
   public void valueExprWithOr() throws Exception {
     context.put("a", "foo");
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -53,4 +54,61 @@ public class ScopeMapTest {
     assertThat(map).containsOnly(entry("a1", "vc1"), entry("a2", "vb2"), entry("a3", "vc3"), entry("a4", "vc4"));
   }
   
+  @Test
+  public void lookupsSeeChangesToParentsAfterBeingRemembered() {
+    ScopeMap<String, String> root = new ScopeMap<String, String>(null, a);
+    ScopeMap<String, String> outer = new ScopeMap<String, String>(root, b);
+    ScopeMap<String, String> inner = new ScopeMap<String, String>(new ScopeMap<String, String>(outer));
+    
+    assertThat(inner.get("a2")).isEqualTo("vb2");
+    assertThat(inner.get("a9")).isNull();
+    
+    outer.put("a2", "changed");
+    outer.getParent().put("a9", "added");
+    assertThat(inner.get("a2")).isEqualTo("changed");
+    assertThat(inner.get("a9")).isEqualTo("added");
+    
+    outer.remove("a2");
+    assertThat(inner.get("a2")).isEqualTo("va2");
+    
+    inner.put("a1", "own");
+    root.put("a1", "root");
+    assertThat(inner.get("a1")).isEqualTo("own");
+    inner.remove("a1");
+    assertThat(inner.get("a1")).isEqualTo("root");
+  }
+  
+  @Test
+  public void lookupsSeeChangesMadeThroughScopeView() {
+    ScopeMap<String, String> outer = new ScopeMap<String, String>(new ScopeMap<String, String>(), b);
+    ScopeMap<String, String> inner = new ScopeMap<String, String>(outer);
+    assertThat(inner.get("a3")).isEqualTo("vb3");
+    
+    outer.getScope().put("a3", "put");
+    assertThat(inner.get("a3")).isEqualTo("put");
+    
+    for(Map.Entry<String, String> e : outer.getScope().entrySet()) {
+      e.setValue("set " + e.getKey());
+    }
+    assertThat(inner.get("a3")).isEqualTo("set a3");
+    
+    outer.getScope().keySet().remove("a3");
+    assertThat(inner.get("a3")).isNull();
+  }
+  
+  @Test
+  public void keySetIsLiveView() {
+    ScopeMap<String, String> parent = new ScopeMap<String, String>(null, a);
+    ScopeMap<String, String> map = new ScopeMap<String, String>(parent, b);
+    Set<String> keys = map.keySet();
+    
+    assertThat(keys).containsOnly("a1", "a2", "a3");
+    assertThat(map).hasSize(3);
+    
+    parent.put("a4", "va4");
+    assertThat(keys).containsOnly("a1", "a2", "a3", "a4");
+    assertThat(keys).hasSize(4);
+    assertThat(map.isEmpty()).isFalse();
+  }
+  
 }
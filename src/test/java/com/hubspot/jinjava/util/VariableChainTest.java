@@ -2,9 +2,12 @@ package com.hubspot.jinjava.util;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Map;
+
 import org.joda.time.DateTime;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 public class VariableChainTest {
@@ -54,4 +57,30 @@ public class VariableChainTest {
     assertThat(new VariableChain(Lists.newArrayList("year"), DateTime.parse("2013-09-19T12:12:12")).resolve().toString()).isEqualTo("2013");
   }
 
+  @Test
+  public void mapKeysAndListIndexes() {
+    Map<String, Object> map = ImmutableMap.<String, Object> of("items", Lists.newArrayList("x", "y"));
+    assertThat(new VariableChain(Lists.newArrayList("items", "1"), map).resolve()).isEqualTo("y");
+    assertThat(new VariableChain(Lists.newArrayList("missing"), map).resolve()).isNull();
+    assertThat(new VariableChain(Lists.newArrayList("1"), new String[] { "a", "b" }).resolve()).isEqualTo("b");
+  }
+
+  @Test
+  public void sameNameResolvesPerClass() {
+    Map<String, Object> map = ImmutableMap.<String, Object> of("bar", "from map");
+    assertThat(VariableChain.resolveProperty(new Foo("from bean"), "bar")).isEqualTo("from bean");
+    assertThat(VariableChain.resolveProperty(map, "bar")).isEqualTo("from map");
+    assertThat(VariableChain.resolveProperty(new Foo("again"), "bar")).isEqualTo("again");
+  }
+
+  @Test(expected = JinjavaPropertyNotResolvedException.class)
+  public void indexOutOfRangeIsNotResolved() {
+    VariableChain.resolveProperty(Lists.newArrayList("x"), "3");
+  }
+
+  @Test(expected = JinjavaPropertyNotResolvedException.class)
+  public void unknownPropertyIsNotResolved() {
+    VariableChain.resolveProperty(new Foo("a"), "baz");
+  }
+
 }